@@ -12,8 +12,45 @@ repositories {
 dependencies {
     testImplementation(platform("org.junit:junit-bom:5.10.0"))
     testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
 }
 
 tasks.test {
     useJUnitPlatform()
-}
\ No newline at end of file
+}
+
+tasks.jar {
+    manifest {
+        attributes(
+            "Main-Class" to "kofer.Main",
+            "Implementation-Title" to project.name,
+            "Implementation-Version" to project.version
+        )
+    }
+}
+
+// Class-data-sharing archive of the classes a typical command loads, recorded by running one
+// against a scratch home. Start with: java -XX:SharedArchiveFile=build/kofer.jsa -jar <jar> ...
+val cdsArchive by tasks.registering(Exec::class) {
+    group = "distribution"
+    description = "Records a class-data-sharing archive to shorten JVM start-up."
+    dependsOn(tasks.jar)
+    val jar = tasks.jar.flatMap { it.archiveFile }
+    val archive = layout.buildDirectory.file("kofer.jsa")
+    val home = layout.buildDirectory.dir("cds-home")
+    inputs.file(jar)
+    outputs.file(archive)
+    doFirst {
+        delete(home, archive)
+        environment.remove("KOFER_PASSPHRASE")
+        environment.remove("KOFER_STORAGE")
+    }
+    // The archive only loads into the JVM that recorded it, which is the one on the PATH
+    executable = "java"
+    args(
+        "-XX:ArchiveClassesAtExit=${archive.get().asFile}",
+        "-Duser.home=${home.get().asFile}",
+        "-jar", jar.get().asFile,
+        "add", "transaction", "1", "training", "class-data-sharing training run"
+    )
+}
@@ -1,8 +1,11 @@
 package kofer;
 
+import kofer.cli.DaemonClient;
 import kofer.cli.KoferCLI;
 import kofer.exception.KoferException;
 
+import java.util.OptionalInt;
+
 public class Main {
     public static void main(String[] args) {
         try {
@@ -15,6 +18,19 @@ public class Main {
                 System.arraycopy(args, 1, processArgs, 0, args.length - 1);
             }
 
+            // A running daemon has the store loaded already
+            OptionalInt forwarded = DaemonClient.forward(processArgs);
+            if (forwarded.isPresent()) {
+                exit(forwarded.getAsInt());
+                return;
+            }
+
+            // A summary only needs the totals at the start of the data file when they are current
+            if (processArgs.length == 1 && "summary".equalsIgnoreCase(processArgs[0])
+                    && KoferCLI.showSummaryFromHeader()) {
+                return;
+            }
+
             KoferCLI cli = new KoferCLI(debugMode);
 
             if (processArgs.length == 0) {
@@ -22,7 +38,7 @@ public class Main {
                 return;
             }
 
-            cli.processCommand(processArgs);
+            exit(cli.processCommand(processArgs));
 
         } catch (KoferException e) {
             System.err.println("Error: " + e.getMessage());
@@ -32,4 +48,10 @@ public class Main {
             System.exit(1);
         }
     }
+
+    private static void exit(int status) {
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package kofer.cli;
 
 import kofer.exception.KoferException;
+import kofer.util.Money;
 
 import java.time.format.DateTimeParseException;
 import java.util.logging.Level;
@@ -85,16 +86,14 @@ public class CLIErrorHandler {
     
     /**
      * Validate and parse amount with proper error handling
+     *
+     * @return the exact amount in cents, or null if it is not a valid amount
      */
-    public Double parseAmount(String amountStr, String context) {
+    public Long parseAmount(String amountStr, String context) {
         try {
-            double amount = Double.parseDouble(amountStr);
-            if (Double.isNaN(amount) || Double.isInfinite(amount)) {
-                throw new NumberFormatException("Amount cannot be NaN or infinite");
-            }
-            return amount;
+            return Money.parse(amountStr);
         } catch (NumberFormatException e) {
-            handleValidationError("amount", amountStr, "decimal number (e.g., 123.45, -50.00)");
+            handleValidationError("amount", amountStr, "decimal number with at most two decimals (e.g., 123.45, -50.00)");
             return null;
         }
     }
@@ -0,0 +1,138 @@
+package kofer.cli;
+
+import kofer.store.DataStore;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.OptionalInt;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Forwards a command to a running {@link KoferDaemon} and replays its output. Nothing of the
+ * store is loaded on that path, so a forwarded command costs a JVM start and a round trip.
+ *
+ * A daemon that does not start serving the connection within {@link #READY_TIMEOUT_MILLIS}
+ * is busy or stuck. A command that only reads then runs in this process instead; one that
+ * writes fails, as the daemon would not see its change and could overwrite it later.
+ */
+public final class DaemonClient {
+    // Longer than the daemon waits for a request, so one stalled client cannot time out the next
+    static final long READY_TIMEOUT_MILLIS = 2 * KoferDaemon.REQUEST_TIMEOUT_MILLIS;
+
+    private DaemonClient() {
+    }
+
+    /**
+     * Runs the command in the daemon listening on {@link KoferDaemon#SOCKET_FILE}, if any.
+     *
+     * @return the exit status of the command, or empty if no daemon is running and the command
+     *         has to run in this process.
+     */
+    public static OptionalInt forward(String[] args) {
+        Path socket = Path.of(KoferDaemon.SOCKET_FILE);
+        if (!Files.exists(socket)) {
+            return OptionalInt.empty();
+        }
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+        } catch (IOException e) {
+            // A socket left behind by a daemon that is gone
+            return OptionalInt.empty();
+        }
+
+        try (channel) {
+            ByteBuffer ready = ByteBuffer.allocate(1);
+            try {
+                KoferDaemon.readBefore(channel, ready, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(READY_TIMEOUT_MILLIS));
+            } catch (SocketTimeoutException e) {
+                return busy(args);
+            }
+            if (ready.get(0) != KoferDaemon.READY) {
+                throw new IOException("unexpected daemon greeting " + ready.get(0));
+            }
+
+            ByteArrayOutputStream requestBytes = new ByteArrayOutputStream();
+            DataOutputStream request = new DataOutputStream(requestBytes);
+            request.writeInt(args.length);
+            for (String arg : resolvePaths(args)) {
+                request.writeUTF(arg);
+            }
+            DataOutputStream out = new DataOutputStream(Channels.newOutputStream(channel));
+            out.writeInt(requestBytes.size());
+            requestBytes.writeTo(out);
+            out.flush();
+
+            DataInputStream response = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+            byte[] buffer = new byte[8192];
+            while (true) {
+                byte stream = response.readByte();
+                int length = response.readInt();
+                if (stream == KoferDaemon.EXIT) {
+                    System.out.flush();
+                    return OptionalInt.of(length);
+                }
+                PrintStream target = stream == KoferDaemon.STDERR ? System.err : System.out;
+                if (buffer.length < length) {
+                    buffer = new byte[length];
+                }
+                response.readFully(buffer, 0, length);
+                target.write(buffer, 0, length);
+            }
+        } catch (EOFException e) {
+            System.err.println("Error: The daemon closed the connection before the command finished");
+            return OptionalInt.of(1);
+        } catch (IOException e) {
+            System.err.println("Error: Failed to reach the daemon: " + e.getMessage());
+            return OptionalInt.of(1);
+        }
+    }
+
+    /**
+     * Handles a daemon that did not get to the command in time.
+     */
+    private static OptionalInt busy(String[] args) {
+        String command = args.length == 0 ? "" : args[0].toLowerCase();
+        if (KoferCLI.accessFor(command, args) != DataStore.Access.READ_WRITE) {
+            return OptionalInt.empty();
+        }
+        System.err.println("Error: The daemon did not answer within " + READY_TIMEOUT_MILLIS / 1000
+                + "s; it may be busy with another command. Try again, or stop it with 'kofer daemon stop'.");
+        return OptionalInt.of(1);
+    }
+
+    /**
+     * @return true if a daemon accepts connections on the socket.
+     */
+    static boolean isListening(Path socket) {
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            return channel.connect(UnixDomainSocketAddress.of(socket));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Makes file arguments absolute, since the daemon resolves paths against its own working directory.
+     */
+    private static String[] resolvePaths(String[] args) {
+        String[] resolved = args.clone();
+        if (resolved.length >= 3 && resolved[0].equalsIgnoreCase("import")) {
+            resolved[2] = Path.of(resolved[2]).toAbsolutePath().toString();
+        }
+        return resolved;
+    }
+}
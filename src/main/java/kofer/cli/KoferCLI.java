@@ -3,18 +3,39 @@ package kofer.cli;
 import kofer.exception.KoferException;
 import kofer.exception.ValidationException;
 import kofer.exception.DataAccessException;
+import kofer.manager.ExportManager;
 import kofer.manager.LoanManager;
 import kofer.manager.TransactionsManager;
 import kofer.model.Loan;
 import kofer.model.Repayment;
 import kofer.model.Transaction;
+import kofer.query.QueryPlan;
+import kofer.store.AggregationEngine;
+import kofer.store.Aggregates;
 import kofer.store.DataStore;
+import kofer.store.RollupCube;
+import kofer.store.SearchQuery;
+import kofer.store.StorageStats;
+import kofer.util.Csv;
+import kofer.util.Money;
+import kofer.util.SymbolTable;
 import kofer.util.TransactionType;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Scanner;
 
@@ -25,8 +46,16 @@ import java.util.Scanner;
  */
 public class KoferCLI {
 
-    private final TransactionsManager transactionsManager;
-    private final LoanManager loanManager;
+    private static final int IMPORT_BATCH_SIZE = 10_000;
+    private static final int DEFAULT_PAGE_SIZE = 20;
+
+    // Opened on first use with the access the running command declared, so that a command that
+    // needs no data, or fails validation before reading any, never loads the store
+    private DataStore.Access access = DataStore.Access.READ_WRITE;
+    private DataStore dataStore;
+    private TransactionsManager transactionsManager;
+    private LoanManager loanManager;
+    private ExportManager exportManager;
     private final Scanner scanner;
     private final CLIErrorHandler errorHandler;
 
@@ -37,52 +66,100 @@ public class KoferCLI {
     public KoferCLI(boolean debugMode) throws KoferException {
         this.scanner = new Scanner(System.in);
         this.errorHandler = new CLIErrorHandler(debugMode);
-        DataStore dataStore = new DataStore();
-        this.transactionsManager = new TransactionsManager(dataStore);
-        this.loanManager = new LoanManager(dataStore);
+    }
+
+    private DataStore dataStore() {
+        if (dataStore == null) {
+            dataStore = new DataStore(access);
+            transactionsManager = new TransactionsManager(dataStore);
+            loanManager = new LoanManager(dataStore);
+            exportManager = new ExportManager(dataStore);
+        }
+        return dataStore;
+    }
+
+    private TransactionsManager transactionsManager() {
+        dataStore();
+        return transactionsManager;
+    }
+
+    private LoanManager loanManager() {
+        dataStore();
+        return loanManager;
+    }
+
+    private ExportManager exportManager() {
+        dataStore();
+        return exportManager;
+    }
+
+    /**
+     * The access a command needs to the store. Commands that only read open it read-only, and
+     * those about loans alone skip the transactions. Anything else may write.
+     */
+    static DataStore.Access accessFor(String command, String[] args) {
+        String subCommand = args.length < 2 ? "" : args[1].toLowerCase();
+        boolean loans = subCommand.equals("loans") || subCommand.equals("loan") || subCommand.equals("lenders");
+        return switch (command) {
+            case "show", "list", "export", "stats" -> loans ? DataStore.Access.LOANS_ONLY : DataStore.Access.READ_ONLY;
+            case "summary", "report", "query" -> DataStore.Access.READ_ONLY;
+            default -> DataStore.Access.READ_WRITE;
+        };
     }
 
     /**
      * Process command line arguments and execute the appropriate command
+     *
+     * @return the exit status: 0 on success, 1 if the command failed or was not recognized
      */
-    public void processCommand(String[] args) {
+    public int processCommand(String[] args) {
         if (args.length == 0) {
             showHelp();
-            return;
+            return 0;
         }
 
         String command = args[0].toLowerCase();
+        if (dataStore == null) {
+            access = accessFor(command, args);
+        }
 
         try {
             switch (command) {
                 case "help", "--help", "-h" -> showHelp();
+                case "version", "--version" -> showVersion();
                 case "add" -> handleAddCommand(args);
                 case "show", "list" -> handleShowCommand(args);
                 case "repay" -> handleRepayCommand(args);
                 case "summary" -> showSummary();
+                case "import" -> handleImportCommand(args);
+                case "export" -> handleExportCommand(args);
+                case "stats" -> handleStatsCommand(args);
+                case "report" -> handleReportCommand(args);
+                case "query" -> handleQueryCommand(args);
+                case "search" -> handleSearchCommand(args);
+                case "rebuild" -> handleRebuildCommand(args);
                 case "interactive" -> startInteractiveMode();
+                case "daemon" -> handleDaemonCommand(args);
                 default -> {
                     System.err.println("Unknown command: " + command);
                     System.err.println("Use 'kofer help' to see available commands.");
-                    System.exit(1);
+                    return 1;
                 }
             }
+            return 0;
         } catch (ValidationException e) {
             System.err.println("Input validation failed: " + e.getMessage());
             if (e.isRetryable()) {
                 System.err.println("Please correct your input and try again.");
             }
-            System.exit(1);
         } catch (DataAccessException e) {
             errorHandler.handleDataError(command, e);
-            System.exit(1);
         } catch (KoferException e) {
             System.err.println("Error: " + e.getMessage());
-            System.exit(1);
         } catch (Exception e) {
             errorHandler.handleError("command processing", e);
-            System.exit(1);
         }
+        return 1;
     }
 
     /**
@@ -96,6 +173,7 @@ public class KoferCLI {
         System.out.println();
         System.out.println("COMMANDS:");
         System.out.println("    help                           Show this help message");
+        System.out.println("    version                        Show the version of kofer and of the Java runtime");
         System.out.println("    add transaction <amount> <category> [description]");
         System.out.println("                                   Add a new transaction");
         System.out.println("                                   Examples:");
@@ -112,10 +190,34 @@ public class KoferCLI {
         System.out.println("                                   Example:");
         System.out.println("                                     kofer repay loan abc123 200.00 \"Partial payment\"");
         System.out.println();
-        System.out.println("    show transactions              List all transactions");
-        System.out.println("    show loans                     List all loans");
+        System.out.println("    show transactions [--from YYYY-MM-DD] [--to YYYY-MM-DD] [--category <name>]");
+        System.out.println("                                   List transactions, optionally within a date range or category");
+        System.out.println("                      [--limit N] [--offset N | --page N] [--reverse]");
+        System.out.println("                                   Show one page (default size " + DEFAULT_PAGE_SIZE + " with --page),");
+        System.out.println("                                   latest date first with --reverse");
+        System.out.println("    show loans [--lender <name>]   List all loans, or those from one lender (any case)");
+        System.out.println("    import csv <file>              Import transactions from a CSV file");
+        System.out.println("                                   Columns: date,amount,category[,description]");
+        System.out.println("                                   An empty date means today; a header row is skipped");
+        System.out.println("    export <transactions|loans> [--format csv|ndjson] [--from YYYY-MM-DD] [--to YYYY-MM-DD]");
+        System.out.println("                                   Stream records to standard output (default: csv)");
+        System.out.println("    stats storage                  Show on-disk size and compression ratio of the data files");
+        System.out.println("    stats categories [--from YYYY-MM-DD] [--to YYYY-MM-DD]");
+        System.out.println("                                   Count, total, min, max and average per category and type");
+        System.out.println("    stats lenders                  Count, total, min, max and average borrowed per lender");
+        System.out.println("    report <monthly|daily> [--category <name>] [--from YYYY-MM-DD] [--to YYYY-MM-DD]");
+        System.out.println("                                   Count, credit, debit and net per period and category");
+        System.out.println("    query [--explain] \"<expression>\"");
+        System.out.println("                                   List transactions matching an expression, e.g.");
+        System.out.println("                                     kofer query \"type=debit and category=grocery and amount>50\"");
+        System.out.println("                                   Fields: type, category, amount, date; combine with and, or, not");
+        System.out.println("    search [--limit N] <terms>     Find transactions and loans holding every term in their");
+        System.out.println("                                   description, category, lender or notes; term* matches a prefix");
+        System.out.println("    rebuild aggregates             Recompute the stored totals and rollups from every record");
         System.out.println("    summary                        Show financial summary");
         System.out.println("    interactive                    Start interactive mode");
+        System.out.println("    daemon [start|stop]            Keep the store loaded and run later commands in that process,");
+        System.out.println("                                   reached over a local socket");
         System.out.println();
         System.out.println("NOTES:");
         System.out.println("    - Positive amounts are credits (income)");
@@ -124,6 +226,15 @@ public class KoferCLI {
         System.out.println("    - Dates default to today if not specified");
     }
 
+    /**
+     * Show the version recorded in the jar manifest, without touching the store
+     */
+    public void showVersion() {
+        String version = KoferCLI.class.getPackage().getImplementationVersion();
+        System.out.println("kofer " + (version == null ? "(development build)" : version));
+        System.out.println("Java " + Runtime.version());
+    }
+
     /**
      * Handle 'add' command
      */
@@ -156,8 +267,8 @@ public class KoferCLI {
 
         String subCommand = args[1].toLowerCase();
         switch (subCommand) {
-            case "transactions", "transaction" -> showTransactions();
-            case "loans", "loan" -> showLoans();
+            case "transactions", "transaction" -> showTransactionsFromArgs(args);
+            case "loans", "loan" -> showLoans(parseOption(args, "--lender"));
             default -> {
                 System.err.println("Unknown show command: " + subCommand);
                 System.err.println("Available: transactions, loans");
@@ -165,6 +276,285 @@ public class KoferCLI {
         }
     }
 
+    /**
+     * Handle 'stats' command
+     */
+    private void handleStatsCommand(String[] args) {
+        String subCommand = args.length < 2 ? "storage" : args[1].toLowerCase();
+        switch (subCommand) {
+            case "storage" -> showStorageStats();
+            case "categories" -> showCategoryStats(parseDateOption(args, "--from"), parseDateOption(args, "--to"));
+            case "lenders" -> showLenderStats();
+            default -> {
+                System.err.println("Unknown stats command: " + subCommand);
+                System.err.println("Available: storage, categories, lenders");
+            }
+        }
+    }
+
+    private void showCategoryStats(LocalDate from, LocalDate to) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new ValidationException("--from", from.toString(), "a date on or before --to " + to);
+        }
+
+        AggregationEngine.Result result = transactionsManager().getCategoryBreakdown(from, to);
+        if (result.getTransactionCount() == 0) {
+            System.out.println("No transactions found.");
+            return;
+        }
+
+        System.out.println("Category Statistics:");
+        System.out.println("====================");
+        printStatsHeader("Category");
+        AggregationEngine.GroupStats byCategory = result.byCategory();
+        for (int category : byCategory.keys()) {
+            String name = SymbolTable.CATEGORIES.name(category);
+            printStatsRow(name == null ? "(none)" : name, byCategory, category);
+        }
+        System.out.println();
+        AggregationEngine.GroupStats byType = result.byType();
+        for (int type : byType.keys()) {
+            printStatsRow(TransactionType.values()[type].name().toLowerCase(), byType, type);
+        }
+    }
+
+    private void showLenderStats() {
+        AggregationEngine.Result result = loanManager().getLenderBreakdown();
+        if (result.getLoanCount() == 0) {
+            System.out.println("No loans recorded.");
+            return;
+        }
+
+        System.out.println("Lender Statistics (amounts borrowed):");
+        System.out.println("=====================================");
+        printStatsHeader("Lender");
+        AggregationEngine.GroupStats byLender = result.byLender();
+        for (int lender : byLender.keys()) {
+            printStatsRow(SymbolTable.LENDERS.name(lender), byLender, lender);
+        }
+    }
+
+    private static void printStatsHeader(String label) {
+        System.out.printf("  %-20s %8s %14s %12s %12s %12s%n", label, "Count", "Total", "Min", "Max", "Average");
+    }
+
+    private static void printStatsRow(String label, AggregationEngine.GroupStats stats, int key) {
+        System.out.printf("  %-20s %8d %14s %12s %12s %12s%n", label, stats.count(key),
+                Money.format(stats.sum(key)), Money.format(stats.min(key)), Money.format(stats.max(key)),
+                Money.format(Math.round(stats.average(key))));
+    }
+
+    /**
+     * Handle 'report' command
+     */
+    private void handleReportCommand(String[] args) {
+        String subCommand = args.length < 2 ? "" : args[1].toLowerCase();
+        switch (subCommand) {
+            case "monthly" -> showPeriodReport(RollupCube.Period.MONTHLY, parseDateOption(args, "--from"),
+                    parseDateOption(args, "--to"), parseOption(args, "--category"));
+            case "daily" -> showPeriodReport(RollupCube.Period.DAILY, parseDateOption(args, "--from"),
+                    parseDateOption(args, "--to"), parseOption(args, "--category"));
+            default -> {
+                System.err.println("Unknown report command: " + subCommand);
+                System.err.println("Available: monthly, daily");
+            }
+        }
+    }
+
+    private void showPeriodReport(RollupCube.Period period, LocalDate from, LocalDate to, String category) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new ValidationException("--from", from.toString(), "a date on or before --to " + to);
+        }
+
+        List<RollupCube.Row> rows = transactionsManager().getPeriodReport(period, from, to, category);
+        if (rows.isEmpty()) {
+            System.out.println("No transactions found.");
+            return;
+        }
+
+        String heading = period == RollupCube.Period.MONTHLY ? "Monthly Report" : "Daily Report";
+        System.out.println(category == null ? heading + ":" : heading + " for '" + category + "':");
+        System.out.println("=".repeat(heading.length() + 1));
+        System.out.printf("  %-10s %-20s %8s %14s %14s %14s%n", "Period", "Category", "Count", "Credit", "Debit", "Net");
+        for (RollupCube.Row row : rows) {
+            String label = period == RollupCube.Period.MONTHLY
+                    ? YearMonth.from(row.getPeriodStart()).toString()
+                    : row.getPeriodStart().toString();
+            String name = SymbolTable.CATEGORIES.name(row.getCategoryId());
+            long credit = row.getTotal(TransactionType.CREDIT);
+            long debit = row.getTotal(TransactionType.DEBIT);
+            System.out.printf("  %-10s %-20s %8d %14s %14s %14s%n", label, name == null ? "(none)" : name,
+                    row.getCount(), Money.format(credit), Money.format(debit), Money.format(credit - debit));
+        }
+    }
+
+    /**
+     * Handle 'query' command. Words after the command are joined, so the expression need not be quoted.
+     */
+    private void handleQueryCommand(String[] args) {
+        boolean explain = false;
+        List<String> words = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--explain")) {
+                explain = true;
+            } else {
+                words.add(args[i]);
+            }
+        }
+        if (words.isEmpty()) {
+            System.err.println("Usage: kofer query [--explain] \"<expression>\"");
+            return;
+        }
+
+        QueryPlan plan = transactionsManager().planQuery(String.join(" ", words));
+        if (explain) {
+            plan.describe().forEach(System.out::println);
+            System.out.println();
+        }
+
+        List<Transaction> transactions = transactionsManager().query(plan);
+        if (transactions.isEmpty()) {
+            System.out.println("No transactions found.");
+            return;
+        }
+        System.out.printf("Transactions matching %s (%d):%n", plan.getQuery(), transactions.size());
+        System.out.println("=================");
+        transactions.forEach(System.out::println);
+    }
+
+    /**
+     * Handle 'search' command. Every word is a term, so several terms need not be quoted.
+     */
+    private void handleSearchCommand(String[] args) {
+        long limit = Long.MAX_VALUE;
+        List<String> words = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equalsIgnoreCase("--limit")) {
+                if (++i >= args.length) {
+                    throw new ValidationException("--limit", "", "a value after --limit");
+                }
+                limit = parseCount("--limit", args[i], 1);
+            } else {
+                words.add(args[i]);
+            }
+        }
+        if (words.isEmpty()) {
+            System.err.println("Usage: kofer search [--limit N] <terms>");
+            return;
+        }
+
+        SearchQuery query = SearchQuery.parse(words);
+        List<Transaction> transactions = transactionsManager().search(query);
+        List<Loan> loans = loanManager().search(query);
+        if (transactions.isEmpty() && loans.isEmpty()) {
+            System.out.println("No transactions or loans found.");
+            return;
+        }
+
+        if (!transactions.isEmpty()) {
+            System.out.printf("Transactions matching '%s' (%d):%n", query, transactions.size());
+            System.out.println("=================");
+            int shown = (int) Math.min(transactions.size(), limit);
+            transactions.subList(0, shown).forEach(System.out::println);
+            if (shown < transactions.size()) {
+                System.out.printf("%nShowing 1 to %d.%n", shown);
+            }
+        }
+        if (!loans.isEmpty()) {
+            if (!transactions.isEmpty()) {
+                System.out.println();
+            }
+            System.out.printf("Loans matching '%s' (%d):%n", query, loans.size());
+            System.out.println("==========");
+            for (Loan loan : loans) {
+                System.out.println(loan);
+                loan.getRepayments().stream()
+                        .filter(repayment -> query.matchesAny(repayment.getNote()))
+                        .forEach(repayment -> System.out.println("    " + repayment));
+            }
+        }
+    }
+
+    /**
+     * Handle 'daemon' command. A running daemon answers 'daemon stop' itself, so reaching it here
+     * means there is none to stop.
+     */
+    private void handleDaemonCommand(String[] args) {
+        String subCommand = args.length < 2 ? "start" : args[1].toLowerCase();
+        switch (subCommand) {
+            case "start" -> {
+                try {
+                    // Loaded before listening, so that the first forwarded command finds it ready
+                    dataStore();
+                    new KoferDaemon(this, Path.of(KoferDaemon.SOCKET_FILE)).run();
+                } catch (IOException e) {
+                    throw new DataAccessException("daemon socket", e.getMessage(), e);
+                }
+            }
+            case "stop" -> throw new KoferException("No daemon is running on " + KoferDaemon.SOCKET_FILE);
+            default -> {
+                System.err.println("Unknown daemon command: " + subCommand);
+                System.err.println("Available: start, stop");
+            }
+        }
+    }
+
+    /**
+     * Handle 'rebuild' command
+     */
+    private void handleRebuildCommand(String[] args) {
+        String subCommand = args.length < 2 ? "" : args[1].toLowerCase();
+        switch (subCommand) {
+            case "aggregates" -> rebuildAggregates();
+            default -> {
+                System.err.println("Unknown rebuild command: " + subCommand);
+                System.err.println("Available: aggregates");
+            }
+        }
+    }
+
+    private void rebuildAggregates() {
+        if (dataStore().rebuildAggregates()) {
+            System.out.println("✓ Aggregates verified: the stored totals and rollups match every record.");
+        } else {
+            System.out.println("✓ Aggregates rebuilt: the stored totals or rollups were out of date and have been replaced.");
+        }
+    }
+
+    private void showStorageStats() {
+        StorageStats stats = dataStore().getStorageStats();
+
+        System.out.println("Storage Statistics:");
+        System.out.println("===================");
+        System.out.printf("Data file:     %s (%s%s)%n", DataStore.APP_DATA_FILE,
+                formatBytes(stats.getDataFileBytes()), stats.isEncrypted() ? ", encrypted" : "");
+        System.out.printf("Format:        version %d, compression on next write: %s%n",
+                stats.getFormatVersion(), stats.getCompression().name().toLowerCase());
+        for (StorageStats.Section section : stats.getSections()) {
+            System.out.printf("  %-18s %10s stored %10s raw%s%n", section.getName(),
+                    formatBytes(section.getStoredBytes()), formatBytes(section.getRawBytes()),
+                    section.isCompressed() ? " (deflate)" : "");
+        }
+        System.out.printf("Compression:   %.2fx (%s raw in %s)%n", stats.getCompressionRatio(),
+                formatBytes(stats.getRawBytes()), formatBytes(stats.getStoredBytes()));
+        System.out.printf("Journal:       %s (%d record(s))%n",
+                formatBytes(stats.getJournalBytes()), stats.getJournalEntries());
+        if (stats.getPartitionCount() > 0) {
+            System.out.printf("Segments:      %s in %d partition(s)%n",
+                    formatBytes(stats.getSegmentBytes()), stats.getPartitionCount());
+        }
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format("%.1f KB", bytes / 1024.0);
+        }
+        return String.format("%.1f MB", bytes / (1024.0 * 1024));
+    }
+
     /**
      * Handle 'repay' command
      */
@@ -183,6 +573,150 @@ public class KoferCLI {
         }
     }
 
+    /**
+     * Handle 'import' command
+     */
+    private void handleImportCommand(String[] args) {
+        if (args.length < 3 || !"csv".equalsIgnoreCase(args[1])) {
+            errorHandler.handleMissingArguments("import", "kofer import csv <file>");
+            throw new ValidationException("Insufficient arguments for import command");
+        }
+        importCsv(Path.of(args[2]));
+    }
+
+    /**
+     * Stream transactions from a CSV file and persist them in batches of {@link #IMPORT_BATCH_SIZE}.
+     * Invalid rows are reported with their line number and skipped.
+     */
+    private void importCsv(Path file) {
+        if (!Files.isReadable(file)) {
+            throw new ValidationException("file", file.toString(), "a readable CSV file");
+        }
+
+        long started = System.nanoTime();
+        long imported = 0;
+        int errors = 0;
+        List<Transaction> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || (lineNumber == 1 && isCsvHeader(line))) {
+                    continue;
+                }
+
+                Transaction transaction = parseCsvTransaction(line, lineNumber);
+                if (transaction == null) {
+                    errors++;
+                    continue;
+                }
+
+                batch.add(transaction);
+                if (batch.size() == IMPORT_BATCH_SIZE) {
+                    transactionsManager().addTransactions(batch);
+                    imported += batch.size();
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                transactionsManager().addTransactions(batch);
+                imported += batch.size();
+            }
+        } catch (IOException e) {
+            throw new DataAccessException("import csv", e.getMessage(), e);
+        }
+
+        double seconds = Math.max((System.nanoTime() - started) / 1e9, 1e-9);
+        System.out.printf("✓ Imported %d transaction(s) in %.2fs (%.0f rows/s)%n", imported, seconds, imported / seconds);
+        errorHandler.printErrorSummary("import", errors);
+    }
+
+    private boolean isCsvHeader(String line) {
+        return line.trim().toLowerCase().startsWith("date");
+    }
+
+    /**
+     * Parse one CSV row with the same validation as 'add transaction'
+     *
+     * @return the transaction, or null if the row is invalid
+     */
+    private Transaction parseCsvTransaction(String line, long lineNumber) {
+        List<String> fields;
+        try {
+            fields = Csv.parseLine(line);
+        } catch (IllegalArgumentException e) {
+            System.err.printf("Line %d: %s%n", lineNumber, e.getMessage());
+            return null;
+        }
+        if (fields.size() < 3) {
+            System.err.printf("Line %d: expected date,amount,category[,description]%n", lineNumber);
+            return null;
+        }
+
+        LocalDate date = LocalDate.now();
+        String dateField = fields.get(0).trim();
+        if (!dateField.isEmpty()) {
+            try {
+                date = LocalDate.parse(dateField);
+            } catch (DateTimeParseException e) {
+                errorHandler.handleValidationError("date", dateField, "YYYY-MM-DD");
+                System.err.printf("  (line %d)%n", lineNumber);
+                return null;
+            }
+        }
+
+        Long amount = errorHandler.parseAmount(fields.get(1).trim(), "line " + lineNumber);
+        if (amount == null) {
+            System.err.printf("  (line %d)%n", lineNumber);
+            return null;
+        }
+
+        String category = errorHandler.parseString(fields.get(2), "category", true);
+        if (category == null) {
+            System.err.printf("  (line %d)%n", lineNumber);
+            return null;
+        }
+
+        String description = fields.size() > 3 ? String.join(",", fields.subList(3, fields.size())).trim() : "";
+        TransactionType type = amount >= 0 ? TransactionType.CREDIT : TransactionType.DEBIT;
+        return new Transaction(date, Math.abs(amount), type, category, description);
+    }
+
+    /**
+     * Handle 'export' command
+     * Usage: kofer export <transactions|loans> [--format csv|ndjson] [--from YYYY-MM-DD] [--to YYYY-MM-DD]
+     */
+    private void handleExportCommand(String[] args) {
+        if (args.length < 2) {
+            errorHandler.handleMissingArguments("export",
+                "kofer export <transactions|loans> [--format csv|ndjson] [--from YYYY-MM-DD] [--to YYYY-MM-DD]");
+            throw new ValidationException("Insufficient arguments for export command");
+        }
+
+        String formatOption = parseOption(args, "--format");
+        ExportManager.Format format = formatOption == null ? ExportManager.Format.CSV : ExportManager.Format.parse(formatOption);
+        LocalDate from = parseDateOption(args, "--from");
+        LocalDate to = parseDateOption(args, "--to");
+
+        // Records go to stdout through one large buffer; progress and errors stay on stderr
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+        try {
+            String subCommand = args[1].toLowerCase();
+            switch (subCommand) {
+                case "transactions", "transaction" -> exportManager().exportTransactions(out, format, from, to);
+                case "loans", "loan" -> exportManager().exportLoans(out, format, from, to);
+                default -> {
+                    System.err.println("Unknown export command: " + subCommand);
+                    System.err.println("Available: transactions, loans");
+                }
+            }
+        } catch (IOException e) {
+            throw new DataAccessException("export", e.getMessage(), e);
+        }
+    }
+
     /**
      * Add transaction from command line arguments
      * Usage: kofer add transaction <amount> <category> [description]
@@ -195,7 +729,7 @@ public class KoferCLI {
         }
 
         // Validate and parse amount
-        Double amount = errorHandler.parseAmount(args[2], "transaction amount");
+        Long amount = errorHandler.parseAmount(args[2], "transaction amount");
         if (amount == null) {
             throw new ValidationException("amount", args[2], "decimal number (use negative for expenses)");
         }
@@ -216,16 +750,16 @@ public class KoferCLI {
         try {
             // Determine transaction type based on amount sign
             TransactionType type = amount >= 0 ? TransactionType.CREDIT : TransactionType.DEBIT;
-            double absAmount = Math.abs(amount); // Store as positive value
+            long absAmount = Math.abs(amount); // Store as positive value
 
             LocalDate date = LocalDate.now();
             Transaction transaction = new Transaction(date, absAmount, type, category, description);
 
-            transactionsManager.addTransaction(transaction);
+            transactionsManager().addTransaction(transaction);
 
             System.out.println("✓ Transaction added successfully!");
-            System.out.printf("  %s: $%.2f in category '%s'%s%n",
-                type.name().toLowerCase(), absAmount, category,
+            System.out.printf("  %s: $%s in category '%s'%s%n",
+                type.name().toLowerCase(), Money.format(absAmount), category,
                 description.isEmpty() ? "" : " - " + description);
 
         } catch (KoferException e) {
@@ -247,7 +781,7 @@ public class KoferCLI {
         }
 
         // Validate and parse amount
-        Double amount = errorHandler.parseAmount(args[2], "loan amount");
+        Long amount = errorHandler.parseAmount(args[2], "loan amount");
         if (amount == null || amount <= 0) {
             throw new ValidationException("amount", args[2], "positive number");
         }
@@ -267,11 +801,11 @@ public class KoferCLI {
 
         try {
             LocalDate date = LocalDate.now();
-            Loan loan = loanManager.createLoan(lender, amount, date, description);
+            Loan loan = loanManager().createLoan(lender, amount, date, description);
 
             System.out.println("✓ Loan recorded successfully!");
             System.out.printf("  Loan ID: %s%n", loan.getId());
-            System.out.printf("  Amount: $%.2f from %s%s%n", amount, lender,
+            System.out.printf("  Amount: $%s from %s%s%n", Money.format(amount), lender,
                 description.isEmpty() ? "" : " - " + description);
 
         } catch (KoferException e) {
@@ -299,7 +833,7 @@ public class KoferCLI {
         }
 
         // Validate and parse amount
-        Double amount = errorHandler.parseAmount(args[3], "repayment amount");
+        Long amount = errorHandler.parseAmount(args[3], "repayment amount");
         if (amount == null || amount <= 0) {
             throw new ValidationException("amount", args[3], "positive number");
         }
@@ -313,10 +847,10 @@ public class KoferCLI {
 
         try {
             LocalDate date = LocalDate.now();
-            loanManager.addRepayment(loanId, amount, date, description);
+            loanManager().addRepayment(loanId, amount, date, description);
 
             System.out.println("✓ Loan repayment recorded successfully!");
-            System.out.printf("  Repaid $%.2f towards loan %s%s%n", amount, loanId,
+            System.out.printf("  Repaid $%s towards loan %s%s%n", Money.format(amount), loanId,
                 description.isEmpty() ? "" : " - " + description);
 
         } catch (KoferException e) {
@@ -326,37 +860,137 @@ public class KoferCLI {
         }
     }
 
+    /**
+     * Read the value of an optional {@code --name value} option
+     */
+    private String parseOption(String[] args, String option) {
+        for (int i = 2; i < args.length; i++) {
+            if (option.equalsIgnoreCase(args[i])) {
+                if (i + 1 >= args.length) {
+                    throw new ValidationException(option, "", "a value after " + option);
+                }
+                return args[i + 1];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read an optional date option such as {@code --from 2024-01-01}
+     */
+    private LocalDate parseDateOption(String[] args, String option) {
+        String value = parseOption(args, option);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new ValidationException(option, value, "YYYY-MM-DD");
+        }
+    }
+
+    /**
+     * Read an optional whole-number option such as {@code --limit 20}
+     */
+    private Long parseCountOption(String[] args, String option, long minimum) {
+        String value = parseOption(args, option);
+        return value == null ? null : parseCount(option, value, minimum);
+    }
+
+    /**
+     * Read the value of a whole-number option, wherever it was given
+     */
+    private long parseCount(String option, String value, long minimum) {
+        try {
+            long count = Long.parseLong(value);
+            if (count >= minimum) {
+                return count;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new ValidationException(option, value, "a whole number of at least " + minimum);
+    }
+
+    /**
+     * Usage: kofer show transactions [--from] [--to] [--category] [--limit N] [--offset N | --page N] [--reverse]
+     */
+    private void showTransactionsFromArgs(String[] args) {
+        Long limit = parseCountOption(args, "--limit", 1);
+        Long offset = parseCountOption(args, "--offset", 0);
+        Long page = parseCountOption(args, "--page", 1);
+        if (page != null && offset != null) {
+            throw new ValidationException("Use either --page or --offset, not both");
+        }
+        if (page != null) {
+            limit = limit == null ? DEFAULT_PAGE_SIZE : limit;
+            offset = Math.multiplyExact(page - 1, limit);
+        }
+        boolean reverse = Arrays.stream(args).anyMatch("--reverse"::equalsIgnoreCase);
+
+        showTransactions(parseDateOption(args, "--from"), parseDateOption(args, "--to"), parseOption(args, "--category"),
+                reverse, offset == null ? 0 : offset, limit == null ? Long.MAX_VALUE : limit);
+    }
+
     /**
      * Show all transactions
      */
     private void showTransactions() {
-        List<Transaction> transactions = transactionsManager.getAllTransaction();
-        if (transactions.isEmpty()) {
+        showTransactions(null, null, null, false, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Show transactions dated within an optional, inclusive range, one page at a time.
+     * Records are printed as they are read from storage.
+     */
+    private void showTransactions(LocalDate from, LocalDate to, String category, boolean reverse, long offset, long limit) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new ValidationException("--from", from.toString(), "a date on or before --to " + to);
+        }
+
+        Iterator<Transaction> transactions =
+                transactionsManager().listTransactions(from, to, category, reverse, offset, limit).iterator();
+        if (!transactions.hasNext()) {
             System.out.println("No transactions found.");
             return;
         }
 
-        System.out.println("All Transactions:");
+        String heading = category == null ? "Transactions" : "Transactions in '" + category + "'";
+        String order = reverse ? " (newest first)" : "";
+        if (from != null || to != null) {
+            System.out.printf("%s from %s to %s%s:%n", heading,
+                    from == null ? "the beginning" : from, to == null ? "the latest" : to, order);
+        } else {
+            System.out.println((category == null ? "All Transactions" : heading) + order + ":");
+        }
         System.out.println("=================");
-        transactions.forEach(System.out::println);
+        long shown = 0;
+        while (transactions.hasNext()) {
+            System.out.println(transactions.next());
+            shown++;
+        }
+        if (offset > 0 || limit != Long.MAX_VALUE) {
+            System.out.printf("%nShowing %d to %d.%n", offset + 1, offset + shown);
+        }
     }
 
     /**
-     * Show all loans
+     * Show all loans, or only those from one lender
      */
-    private void showLoans() {
-        List<Loan> loans = loanManager.getAllLoans();
+    private void showLoans(String lender) {
+        List<Loan> loans = lender == null ? loanManager().getAllLoans() : loanManager().getLoansByLender(lender);
         if (loans.isEmpty()) {
             System.out.println("No loans found.");
             return;
         }
 
-        System.out.println("All Loans:");
+        System.out.println(lender == null ? "All Loans:" : "Loans from " + lender + ":");
         System.out.println("==========");
         loans.forEach(System.out::println);
 
         // Show summary
-        LoanManager.LoanSummary summary = loanManager.getLoanSummary();
+        LoanManager.LoanSummary summary = loanManager().getLoanSummary();
         System.out.println("\n" + summary);
     }
 
@@ -364,23 +998,40 @@ public class KoferCLI {
      * Show financial summary
      */
     private void showSummary() {
-        double credit = transactionsManager.getTotalByType(TransactionType.CREDIT);
-        double debit = transactionsManager.getTotalByType(TransactionType.DEBIT);
+        printSummary(transactionsManager().getTotalByType(TransactionType.CREDIT),
+                transactionsManager().getTotalByType(TransactionType.DEBIT),
+                loanManager().getLoanSummary());
+    }
 
+    /**
+     * Print the summary from the totals at the start of the data file, without loading the store
+     *
+     * @return false if the data file holds no current totals; the store has to be loaded instead
+     */
+    public static boolean showSummaryFromHeader() {
+        Aggregates aggregates = DataStore.readSummaryHeader();
+        if (aggregates == null) {
+            return false;
+        }
+        printSummary(aggregates.getTotal(TransactionType.CREDIT), aggregates.getTotal(TransactionType.DEBIT),
+                LoanManager.LoanSummary.of(aggregates));
+        return true;
+    }
+
+    private static void printSummary(long credit, long debit, LoanManager.LoanSummary loanSummary) {
         System.out.println("Financial Summary:");
         System.out.println("==================");
-        System.out.printf("Total Income (Credit): $%.2f%n", credit);
-        System.out.printf("Total Expenses (Debit): $%.2f%n", debit);
-        System.out.printf("Net Balance: $%.2f%n", credit - debit);
+        System.out.printf("Total Income (Credit): $%s%n", Money.format(credit));
+        System.out.printf("Total Expenses (Debit): $%s%n", Money.format(debit));
+        System.out.printf("Net Balance: $%s%n", Money.format(credit - debit));
 
         // Add loan summary
-        LoanManager.LoanSummary loanSummary = loanManager.getLoanSummary();
         if (loanSummary.getTotalLoans() > 0) {
             System.out.println("\n" + loanSummary);
 
             // Calculate net worth including loans
-            double netWorthWithLoans = (credit - debit) - loanSummary.getTotalRemaining();
-            System.out.printf("%nNet Worth (including outstanding loans): $%.2f%n", netWorthWithLoans);
+            long netWorthWithLoans = (credit - debit) - loanSummary.getTotalRemaining();
+            System.out.printf("%nNet Worth (including outstanding loans): $%s%n", Money.format(netWorthWithLoans));
         } else {
             System.out.println("\nNo loans recorded.");
         }
@@ -392,18 +1043,24 @@ public class KoferCLI {
     public void startInteractiveMode() {
         System.out.println("\nWelcome to Kofer CLI - Interactive Mode\n");
 
-        boolean running = true;
-        while (running) {
-            printMenu();
-            String input = scanner.nextLine().trim();
-
-            switch (input) {
-                case "1" -> addTransactionInteractive();
-                case "2" -> showTransactions();
-                case "3" -> showSummary();
-                case "0" -> running = false;
-                default -> System.out.println("Invalid option. Try again.");
+        // Entries made during the session are synced to disk in groups rather than one by one
+        dataStore().beginGroupCommit();
+        try {
+            boolean running = true;
+            while (running) {
+                printMenu();
+                String input = scanner.nextLine().trim();
+
+                switch (input) {
+                    case "1" -> addTransactionInteractive();
+                    case "2" -> showTransactions();
+                    case "3" -> showSummary();
+                    case "0" -> running = false;
+                    default -> System.out.println("Invalid option. Try again.");
+                }
             }
+        } finally {
+            dataStore().endGroupCommit();
         }
     }
 
@@ -424,11 +1081,11 @@ public class KoferCLI {
         String category = scanner.nextLine();
 
         System.out.print("Enter amount: ");
-        double amount;
+        long amount;
 
         while(true) {
             try {
-                amount = Double.parseDouble(scanner.nextLine());
+                amount = Money.parse(scanner.nextLine());
                 break;
             } catch (NumberFormatException e){
                 System.out.println("Invalid amount. Please enter a valid number.");
@@ -470,7 +1127,7 @@ public class KoferCLI {
         }
 
         Transaction transaction = new Transaction(date, amount, type, category, description);
-        transactionsManager.addTransaction(transaction);
+        transactionsManager().addTransaction(transaction);
         System.out.println("Transaction added successfully!");
     }
 }
@@ -0,0 +1,300 @@
+package kofer.cli;
+
+import kofer.exception.KoferException;
+import kofer.store.DataStore;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps one {@link KoferCLI}, with its loaded store, resident and runs the commands that
+ * {@link DaemonClient} forwards over a Unix domain socket, so that a command costs neither a
+ * store load nor a warm-up of the code that runs it.
+ *
+ * Requests are served one at a time, in the order they connect, since the store is not safe for
+ * concurrent use. A client that does not send its whole request within
+ * {@link #REQUEST_TIMEOUT_MILLIS} of being served is dropped, so it cannot hold up the others.
+ * While a request runs, {@code System.out} and {@code System.err} are redirected into the
+ * response, so commands print exactly as they do in their own process. The socket lives in a
+ * directory only its owner can enter, as the daemon answers with the store's contents,
+ * decrypted if {@link DataStore#PASSPHRASE_ENV} was set.
+ *
+ * Protocol (all integers big-endian):
+ * <pre>
+ *   daemon:   [byte READY] once it serves the connection
+ *   request:  [int byte length] then [int argument count] and per argument [modified UTF-8 string as by writeUTF]
+ *   response: repeated [byte STDOUT or STDERR][int length][bytes], then [byte EXIT][int exit status]
+ * </pre>
+ * A client that gives up before READY has sent nothing, so its command never runs here.
+ */
+public class KoferDaemon {
+    public static final String SOCKET_FILE = DataStore.APP_DATA_DIR + "/daemon/kofer.sock";
+    static final long REQUEST_TIMEOUT_MILLIS = 5_000;
+
+    static final byte EXIT = 0;
+    static final byte STDOUT = 1;
+    static final byte STDERR = 2;
+    static final byte READY = 3;
+
+    private static final int MAX_REQUEST_BYTES = 1 << 20;
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rwx------");
+
+    private final KoferCLI cli;
+    private final Path socket;
+    private boolean running;
+
+    public KoferDaemon(KoferCLI cli, Path socket) {
+        this.cli = cli;
+        this.socket = socket;
+    }
+
+    /**
+     * Serves requests until one asks the daemon to stop.
+     *
+     * @throws KoferException if another daemon is already listening on the socket, or its
+     *         directory can be written by other users.
+     */
+    public void run() throws IOException {
+        secureDirectory(socket.getParent());
+        if (Files.exists(socket)) {
+            if (DaemonClient.isListening(socket)) {
+                throw new KoferException("A daemon is already running on " + socket);
+            }
+            // Left behind by a daemon that did not shut down cleanly
+            Files.delete(socket);
+        }
+
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket));
+            Files.setPosixFilePermissions(socket, PosixFilePermissions.fromString("rw-------"));
+            Thread removeSocket = new Thread(this::deleteSocket, "kofer-daemon-cleanup");
+            Runtime.getRuntime().addShutdownHook(removeSocket);
+
+            System.out.println("Kofer daemon listening on " + socket);
+            System.out.println("Commands from this user now run here; stop with 'kofer daemon stop'.");
+            running = true;
+            while (running) {
+                try (SocketChannel client = server.accept()) {
+                    serve(client);
+                } catch (EOFException e) {
+                    // Connected without a request, as a start does to check for a running daemon
+                } catch (SocketTimeoutException e) {
+                    System.err.println("Daemon request dropped: the client sent no complete request within "
+                            + REQUEST_TIMEOUT_MILLIS + " ms");
+                } catch (IOException e) {
+                    System.err.println("Daemon request failed: " + e.getMessage());
+                }
+            }
+
+            deleteSocket();
+            Runtime.getRuntime().removeShutdownHook(removeSocket);
+        }
+    }
+
+    /**
+     * Creates the socket's directory accessible to its owner only, so that no other user can
+     * reach the socket between binding it and restricting the socket itself.
+     */
+    private static void secureDirectory(Path directory) throws IOException {
+        Files.createDirectories(directory.getParent());
+        refuseShared(directory.getParent());
+        if (!Files.isDirectory(directory)) {
+            Files.createDirectory(directory, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+        }
+        refuseShared(directory);
+        UserPrincipal user = directory.getFileSystem().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+        if (!Files.getOwner(directory).equals(user)) {
+            throw new KoferException(directory + " belongs to another user; remove it before starting the daemon");
+        }
+        Files.setPosixFilePermissions(directory, OWNER_ONLY);
+    }
+
+    private static void refuseShared(Path directory) throws IOException {
+        Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(directory);
+        if (permissions.contains(PosixFilePermission.GROUP_WRITE) || permissions.contains(PosixFilePermission.OTHERS_WRITE)) {
+            throw new KoferException(directory + " is writable by other users; restrict it with 'chmod go-w "
+                    + directory + "' before starting the daemon");
+        }
+    }
+
+    private void serve(SocketChannel client) throws IOException {
+        try {
+            client.write(ByteBuffer.wrap(new byte[]{READY}));
+        } catch (IOException e) {
+            // The client gave up waiting, or only checked that a daemon is running
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(REQUEST_TIMEOUT_MILLIS);
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        readBefore(client, length, deadline);
+        int requestBytes = length.getInt(0);
+        if (requestBytes < 0 || requestBytes > MAX_REQUEST_BYTES) {
+            throw new IOException("request of " + requestBytes + " bytes refused");
+        }
+        ByteBuffer request = ByteBuffer.allocate(requestBytes);
+        readBefore(client, request, deadline);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(request.array()));
+        String[] args = new String[in.readInt()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = in.readUTF();
+        }
+
+        DataOutputStream response = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(client), 1 << 16));
+        PrintStream out = new PrintStream(new FrameOutputStream(response, STDOUT), false, StandardCharsets.UTF_8);
+        PrintStream err = new PrintStream(new FrameOutputStream(response, STDERR), false, StandardCharsets.UTF_8);
+        PrintStream systemOut = System.out;
+        PrintStream systemErr = System.err;
+        int status;
+        System.setOut(out);
+        System.setErr(err);
+        try {
+            status = execute(args);
+        } finally {
+            System.setOut(systemOut);
+            System.setErr(systemErr);
+            out.flush();
+            err.flush();
+        }
+
+        response.writeByte(EXIT);
+        response.writeInt(status);
+        response.flush();
+    }
+
+    /**
+     * Runs a forwarded command, answering those about the daemon itself and those that need
+     * the client's terminal here.
+     */
+    private int execute(String[] args) {
+        String command = args.length == 0 ? "" : args[0].toLowerCase();
+        String subCommand = args.length < 2 ? "start" : args[1].toLowerCase();
+        if (command.equals("daemon") && subCommand.equals("stop")) {
+            running = false;
+            System.out.println("Daemon stopped.");
+            return 0;
+        }
+        if (command.equals("daemon") && subCommand.equals("start")) {
+            System.err.println("Error: A daemon is already running on " + socket);
+            return 1;
+        }
+        if (command.equals("interactive")) {
+            System.err.println("Error: Interactive mode reads from its own terminal; stop the daemon to use it");
+            return 1;
+        }
+        return cli.processCommand(args);
+    }
+
+    /**
+     * Fills {@code buffer} from the channel, waiting no later than {@code deadline} (as of
+     * {@link System#nanoTime()}). The channel is left in blocking mode.
+     *
+     * @throws SocketTimeoutException if the deadline passes first.
+     * @throws EOFException if the peer closes the connection first.
+     */
+    static void readBefore(SocketChannel channel, ByteBuffer buffer, long deadline) throws IOException {
+        channel.configureBlocking(false);
+        try (Selector selector = Selector.open()) {
+            channel.register(selector, SelectionKey.OP_READ);
+            while (true) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("connection closed");
+                }
+                if (!buffer.hasRemaining()) {
+                    break;
+                }
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    throw new SocketTimeoutException("no complete message in time");
+                }
+                selector.select(remaining);
+            }
+        }
+        channel.configureBlocking(true);
+    }
+
+    private void deleteSocket() {
+        try {
+            Files.deleteIfExists(socket);
+        } catch (IOException e) {
+            // Replaced on the next start
+        }
+    }
+
+    /**
+     * Buffers one output stream of a command and writes it as response frames.
+     */
+    private static class FrameOutputStream extends OutputStream {
+        private final DataOutputStream response;
+        private final byte channel;
+        private final byte[] buffer = new byte[8192];
+        private int count;
+
+        FrameOutputStream(DataOutputStream response, byte channel) {
+            this.response = response;
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                flush();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (length > buffer.length - count) {
+                flush();
+            }
+            if (length > buffer.length) {
+                writeFrame(bytes, offset, length);
+            } else {
+                System.arraycopy(bytes, offset, buffer, count, length);
+                count += length;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (count > 0) {
+                writeFrame(buffer, 0, count);
+                count = 0;
+            }
+        }
+
+        private void writeFrame(byte[] bytes, int offset, int length) throws IOException {
+            // Both streams of a request write to the same connection
+            synchronized (response) {
+                response.writeByte(channel);
+                response.writeInt(length);
+                response.write(bytes, offset, length);
+            }
+        }
+    }
+}
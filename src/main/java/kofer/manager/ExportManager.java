@@ -0,0 +1,146 @@
+package kofer.manager;
+
+import kofer.exception.ValidationException;
+import kofer.model.Loan;
+import kofer.model.Transaction;
+import kofer.store.DataStore;
+import kofer.store.TransactionCursor;
+import kofer.util.Csv;
+import kofer.util.Json;
+import kofer.util.Money;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
+
+/**
+ * ExportManager streams stored records to a writer as CSV or newline-delimited JSON.
+ * Records are read from the store one at a time and written straight through,
+ * so memory use does not depend on the size of the ledger.
+ */
+public class ExportManager {
+    private final DataStore dataStore;
+
+    public enum Format {
+        CSV, NDJSON;
+
+        public static Format parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new ValidationException("format", value, "csv or ndjson");
+            }
+        }
+    }
+
+    public ExportManager(DataStore dataStore) {
+        this.dataStore = dataStore;
+    }
+
+    /**
+     * Write transactions dated between {@code from} and {@code to}, inclusive. Either bound may be null.
+     *
+     * @return the number of records written
+     */
+    public long exportTransactions(Writer out, Format format, LocalDate from, LocalDate to) throws IOException {
+        if (format == Format.CSV) {
+            out.write("id,date,type,amount,category,description\n");
+        }
+
+        long count = 0;
+        TransactionCursor cursor = dataStore.transactionCursor(from, to);
+        while (cursor.next()) {
+            Transaction transaction = cursor.materialize();
+            if (format == Format.CSV) {
+                out.write(transaction.getId());
+                out.write(',');
+                out.write(transaction.getDate().toString());
+                out.write(',');
+                out.write(transaction.getType().name());
+                out.write(',');
+                out.write(Money.format(transaction.getAmountCents()));
+                out.write(',');
+                out.write(Csv.escape(transaction.getCategory()));
+                out.write(',');
+                out.write(Csv.escape(transaction.getDescription()));
+            } else {
+                out.write("{\"id\":");
+                out.write(Json.quote(transaction.getId()));
+                out.write(",\"date\":");
+                out.write(Json.quote(transaction.getDate().toString()));
+                out.write(",\"type\":");
+                out.write(Json.quote(transaction.getType().name()));
+                out.write(",\"amount\":");
+                out.write(Money.format(transaction.getAmountCents()));
+                out.write(",\"category\":");
+                out.write(Json.quote(transaction.getCategory()));
+                out.write(",\"description\":");
+                out.write(Json.quote(transaction.getDescription()));
+                out.write('}');
+            }
+            out.write('\n');
+            count++;
+        }
+        out.flush();
+        return count;
+    }
+
+    /**
+     * Write loans borrowed between {@code from} and {@code to}, inclusive. Either bound may be null.
+     *
+     * @return the number of records written
+     */
+    public long exportLoans(Writer out, Format format, LocalDate from, LocalDate to) throws IOException {
+        if (format == Format.CSV) {
+            out.write("id,lender,date,borrowed,repaid,remaining,closed,description\n");
+        }
+
+        long count = 0;
+        for (Loan loan : dataStore.getLoans()) {
+            LocalDate borrowed = loan.getDateBorrowed();
+            if ((from != null && borrowed.isBefore(from)) || (to != null && borrowed.isAfter(to))) {
+                continue;
+            }
+
+            if (format == Format.CSV) {
+                out.write(loan.getId());
+                out.write(',');
+                out.write(Csv.escape(loan.getLenderName()));
+                out.write(',');
+                out.write(borrowed.toString());
+                out.write(',');
+                out.write(Money.format(loan.getAmountBorrowedCents()));
+                out.write(',');
+                out.write(Money.format(loan.getAmountRepaidCents()));
+                out.write(',');
+                out.write(Money.format(loan.getRemainingCents()));
+                out.write(',');
+                out.write(String.valueOf(loan.isClosed()));
+                out.write(',');
+                out.write(Csv.escape(loan.getDescription()));
+            } else {
+                out.write("{\"id\":");
+                out.write(Json.quote(loan.getId()));
+                out.write(",\"lender\":");
+                out.write(Json.quote(loan.getLenderName()));
+                out.write(",\"date\":");
+                out.write(Json.quote(borrowed.toString()));
+                out.write(",\"borrowed\":");
+                out.write(Money.format(loan.getAmountBorrowedCents()));
+                out.write(",\"repaid\":");
+                out.write(Money.format(loan.getAmountRepaidCents()));
+                out.write(",\"remaining\":");
+                out.write(Money.format(loan.getRemainingCents()));
+                out.write(",\"closed\":");
+                out.write(String.valueOf(loan.isClosed()));
+                out.write(",\"description\":");
+                out.write(Json.quote(loan.getDescription()));
+                out.write('}');
+            }
+            out.write('\n');
+            count++;
+        }
+        out.flush();
+        return count;
+    }
+}
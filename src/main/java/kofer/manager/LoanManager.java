@@ -4,9 +4,16 @@ import kofer.exception.KoferException;
 import kofer.exception.ValidationException;
 import kofer.model.Loan;
 import kofer.model.Repayment;
+import kofer.store.AggregationEngine;
+import kofer.store.Aggregates;
 import kofer.store.DataStore;
+import kofer.store.SearchQuery;
+import kofer.util.Money;
+import kofer.util.SymbolTable;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -35,15 +42,15 @@ public class LoanManager {
     /**
      * Create and add a new loan
      */
-    public Loan createLoan(String lenderName, double amount, LocalDate dateBorrowed, String description) {
+    public Loan createLoan(String lenderName, long amountCents, LocalDate dateBorrowed, String description) {
         if (lenderName == null || lenderName.trim().isEmpty()) {
             throw new ValidationException("lender", lenderName, "non-empty string");
         }
-        if (amount <= 0) {
-            throw new ValidationException("amount", String.valueOf(amount), "positive number");
+        if (amountCents <= 0) {
+            throw new ValidationException("amount", Money.format(amountCents), "positive number");
         }
         
-        Loan loan = new Loan(lenderName, amount, dateBorrowed, description);
+        Loan loan = new Loan(lenderName, amountCents, dateBorrowed, description);
         addLoan(loan);
         return loan;
     }
@@ -56,10 +63,7 @@ public class LoanManager {
             return Optional.empty();
         }
         
-        return dataStore.getLoans()
-                .stream()
-                .filter(loan -> loan.getId().equals(loanId))
-                .findFirst();
+        return Optional.ofNullable(dataStore.findLoan(loanId));
     }
 
     /**
@@ -73,8 +77,7 @@ public class LoanManager {
      * Get all active (not closed) loans
      */
     public List<Loan> getActiveLoans() {
-        return dataStore.getLoans()
-                .stream()
+        return dataStore.loanStream()
                 .filter(loan -> !loan.isClosed())
                 .collect(Collectors.toList());
     }
@@ -83,92 +86,100 @@ public class LoanManager {
      * Get all closed loans
      */
     public List<Loan> getClosedLoans() {
-        return dataStore.getLoans()
-                .stream()
+        return dataStore.loanStream()
                 .filter(Loan::isClosed)
                 .collect(Collectors.toList());
     }
 
     /**
-     * Get loans by lender name
+     * Get loans by lender name, ignoring case
      */
     public List<Loan> getLoansByLender(String lenderName) {
         if (lenderName == null || lenderName.trim().isEmpty()) {
             return List.of();
         }
-        
-        return dataStore.getLoans()
-                .stream()
-                .filter(loan -> loan.getLenderName().equalsIgnoreCase(lenderName.trim()))
+
+        int lender = SymbolTable.LENDERS.lookupFolded(lenderName.trim());
+        if (lender == SymbolTable.NO_SYMBOL) {
+            return List.of();
+        }
+
+        return dataStore.getLoansByLender(lender);
+    }
+
+    /**
+     * Get loans whose lender, description and repayment notes together hold every search term.
+     * Loans are few next to transactions, so they are scanned rather than indexed
+     */
+    public List<Loan> search(SearchQuery query) {
+        return dataStore.loanStream()
+                .filter(loan -> query.matches(searchableText(loan)))
                 .collect(Collectors.toList());
     }
 
+    private static List<String> searchableText(Loan loan) {
+        List<String> texts = new ArrayList<>();
+        texts.add(loan.getLenderName());
+        texts.add(loan.getDescription());
+        loan.getRepayments().forEach(repayment -> texts.add(repayment.getNote()));
+        return texts;
+    }
+
     /**
      * Add a repayment to a specific loan
      */
-    public void addRepayment(String loanId, double amount, LocalDate date, String note) {
+    public void addRepayment(String loanId, long amountCents, LocalDate date, String note) {
         Optional<Loan> loanOpt = findLoanById(loanId);
         if (loanOpt.isEmpty()) {
             throw new KoferException("Loan not found with ID: " + loanId);
         }
 
         Loan loan = loanOpt.get();
-        Repayment repayment = new Repayment(amount, date, note);
+        Repayment repayment = new Repayment(amountCents, date, note);
         
         try {
-            loan.addRepayment(repayment);
-            // Save the updated data store
-            dataStore.saveData();
+            dataStore.addRepayment(loan, repayment);
         } catch (Exception e) {
             throw new KoferException("Failed to add repayment: " + e.getMessage(), e);
         }
     }
 
     /**
-     * Get total amount borrowed across all loans
+     * Get total amount borrowed across all loans, in cents
      */
-    public double getTotalBorrowed() {
-        return dataStore.getLoans()
-                .stream()
-                .mapToDouble(Loan::getAmountBorrowed)
-                .sum();
+    public long getTotalBorrowed() {
+        return dataStore.getAggregates().getTotalBorrowed();
     }
 
     /**
-     * Get total amount repaid across all loans
+     * Get total amount repaid across all loans, in cents
      */
-    public double getTotalRepaid() {
-        return dataStore.getLoans()
-                .stream()
-                .mapToDouble(Loan::getAmountRepaid)
-                .sum();
+    public long getTotalRepaid() {
+        return dataStore.getAggregates().getTotalRepaid();
     }
 
     /**
-     * Get total remaining amount across all active loans
+     * Get total remaining amount across all active loans, in cents
      */
-    public double getTotalRemaining() {
-        return dataStore.getLoans()
-                .stream()
-                .filter(loan -> !loan.isClosed())
-                .mapToDouble(Loan::getRemainingAmount)
-                .sum();
+    public long getTotalRemaining() {
+        return dataStore.getAggregates().getTotalRemaining();
     }
 
     /**
-     * Get loan summary statistics
+     * Get loan summary statistics, read from the store's maintained aggregates
      */
     public LoanSummary getLoanSummary() {
-        List<Loan> allLoans = getAllLoans();
-        List<Loan> activeLoans = getActiveLoans();
-        
-        return new LoanSummary(
-                allLoans.size(),
-                activeLoans.size(),
-                getTotalBorrowed(),
-                getTotalRepaid(),
-                getTotalRemaining()
-        );
+        return LoanSummary.of(dataStore.getAggregates());
+    }
+
+    /**
+     * Get count, total, minimum, maximum and average amount borrowed per lender, ignoring case,
+     * computed in one pass over the loans
+     */
+    public AggregationEngine.Result getLenderBreakdown() {
+        AggregationEngine engine = new AggregationEngine(EnumSet.allOf(AggregationEngine.Metric.class),
+                EnumSet.of(AggregationEngine.Grouping.LENDER));
+        return dataStore.aggregateLoans(engine);
     }
 
     /**
@@ -182,25 +193,34 @@ public class LoanManager {
 
         Loan loan = loanOpt.get();
         try {
-            loan.markClosed();
-            dataStore.saveData();
+            dataStore.closeLoan(loan);
         } catch (Exception e) {
             throw new KoferException("Failed to close loan: " + e.getMessage(), e);
         }
     }
 
     /**
-     * Inner class for loan summary statistics
+     * Inner class for loan summary statistics. Amounts are in cents.
      */
     public static class LoanSummary {
         private final int totalLoans;
         private final int activeLoans;
-        private final double totalBorrowed;
-        private final double totalRepaid;
-        private final double totalRemaining;
+        private final long totalBorrowed;
+        private final long totalRepaid;
+        private final long totalRemaining;
+
+        public static LoanSummary of(Aggregates aggregates) {
+            return new LoanSummary(
+                    aggregates.getLoanCount(),
+                    aggregates.getActiveLoanCount(),
+                    aggregates.getTotalBorrowed(),
+                    aggregates.getTotalRepaid(),
+                    aggregates.getTotalRemaining()
+            );
+        }
 
-        public LoanSummary(int totalLoans, int activeLoans, double totalBorrowed, 
-                          double totalRepaid, double totalRemaining) {
+        public LoanSummary(int totalLoans, int activeLoans, long totalBorrowed,
+                          long totalRepaid, long totalRemaining) {
             this.totalLoans = totalLoans;
             this.activeLoans = activeLoans;
             this.totalBorrowed = totalBorrowed;
@@ -210,9 +230,9 @@ public class LoanManager {
 
         public int getTotalLoans() { return totalLoans; }
         public int getActiveLoans() { return activeLoans; }
-        public double getTotalBorrowed() { return totalBorrowed; }
-        public double getTotalRepaid() { return totalRepaid; }
-        public double getTotalRemaining() { return totalRemaining; }
+        public long getTotalBorrowed() { return totalBorrowed; }
+        public long getTotalRepaid() { return totalRepaid; }
+        public long getTotalRemaining() { return totalRemaining; }
 
         @Override
         public String toString() {
@@ -220,10 +240,11 @@ public class LoanManager {
                 "Loan Summary:%n" +
                 "  Total Loans: %d%n" +
                 "  Active Loans: %d%n" +
-                "  Total Borrowed: $%.2f%n" +
-                "  Total Repaid: $%.2f%n" +
-                "  Total Remaining: $%.2f",
-                totalLoans, activeLoans, totalBorrowed, totalRepaid, totalRemaining
+                "  Total Borrowed: $%s%n" +
+                "  Total Repaid: $%s%n" +
+                "  Total Remaining: $%s",
+                totalLoans, activeLoans, Money.format(totalBorrowed), Money.format(totalRepaid),
+                Money.format(totalRemaining)
             );
         }
     }
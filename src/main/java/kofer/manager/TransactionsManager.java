@@ -1,11 +1,21 @@
 package kofer.manager;
 
 import kofer.model.Transaction;
+import kofer.query.QueryParser;
+import kofer.query.QueryPlan;
+import kofer.query.QueryPlanner;
+import kofer.store.AggregationEngine;
 import kofer.store.DataStore;
+import kofer.store.RollupCube;
+import kofer.store.SearchQuery;
+import kofer.util.SymbolTable;
 import kofer.util.TransactionType;
 
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.EnumSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class TransactionsManager {
     private final DataStore dataStore;
@@ -18,30 +28,142 @@ public class TransactionsManager {
         dataStore.addTransaction(transaction);
     }
 
+    /**
+     * Add a batch of transactions, persisted together
+     */
+    public void addTransactions(List<Transaction> transactions) {
+        dataStore.addTransactions(transactions);
+    }
+
     public List<Transaction> getAllTransaction() {
         return dataStore.getTransactions();
     }
 
     public List<Transaction> getTransactionsByType(TransactionType type) {
-        return dataStore.getTransactions()
-                .stream()
-                .filter(tx -> tx.getType() == type)
-                .collect(Collectors.toList());
+        return dataStore.findTransactions(cursor -> cursor.type() == type, null, null);
+    }
+
+    /**
+     * Get transactions in one category, matched by exact name
+     */
+    public List<Transaction> getTransactionsByCategory(String category) {
+        return getTransactionsByCategory(category, null, null);
+    }
+
+    /**
+     * Get transactions in one category dated between {@code from} and {@code to}, inclusive.
+     * Either bound may be null to leave that side open.
+     */
+    public List<Transaction> getTransactionsByCategory(String category, LocalDate from, LocalDate to) {
+        int categoryId = SymbolTable.CATEGORIES.lookup(category);
+        if (categoryId == SymbolTable.NO_SYMBOL) {
+            return List.of();
+        }
+
+        return dataStore.findTransactions(cursor -> cursor.categoryId() == categoryId, from, to);
+    }
+
+    /**
+     * Get the total of one transaction type, in cents
+     */
+    public long getTotalByType(TransactionType type) {
+        return getTotalByType(type, null, null);
+    }
+
+    /**
+     * Get transactions dated between {@code from} and {@code to}, inclusive, in date order.
+     * Either bound may be null to leave that side open; with both null they are in the order added.
+     */
+    public List<Transaction> getTransactionsBetween(LocalDate from, LocalDate to) {
+        return dataStore.findTransactions(cursor -> true, from, to);
+    }
+
+    /**
+     * Stream one page of transactions, optionally within dates or one category, read lazily from
+     * storage. The order is that of {@link #getTransactionsBetween}, or its reverse; an unreversed
+     * listing of everything is in the order added. {@code limit} may be {@link Long#MAX_VALUE} for no limit.
+     */
+    public Stream<Transaction> listTransactions(LocalDate from, LocalDate to, String category,
+                                                boolean reverse, long offset, long limit) {
+        if (category == null) {
+            return dataStore.listTransactions(null, from, to, reverse, offset, limit);
+        }
+        int categoryId = SymbolTable.CATEGORIES.lookup(category);
+        if (categoryId == SymbolTable.NO_SYMBOL) {
+            return Stream.empty();
+        }
+        return dataStore.listTransactions(cursor -> cursor.categoryId() == categoryId, from, to, reverse, offset, limit);
+    }
+
+    /**
+     * Get transactions dated within one calendar month
+     */
+    public List<Transaction> getTransactionsInMonth(YearMonth month) {
+        return getTransactionsBetween(month.atDay(1), month.atEndOfMonth());
+    }
+
+    /**
+     * Get the total of one transaction type dated between {@code from} and {@code to}, inclusive,
+     * in cents. Either bound may be null to leave that side open.
+     */
+    public long getTotalByType(TransactionType type, LocalDate from, LocalDate to) {
+        return dataStore.getTotalByType(type, from, to);
+    }
+
+    /**
+     * Get count, total, minimum, maximum and average amount per category and per type,
+     * computed in one pass over the transactions dated between {@code from} and {@code to}, inclusive.
+     * Either bound may be null to leave that side open.
+     */
+    public AggregationEngine.Result getCategoryBreakdown(LocalDate from, LocalDate to) {
+        AggregationEngine engine = new AggregationEngine(EnumSet.allOf(AggregationEngine.Metric.class),
+                EnumSet.of(AggregationEngine.Grouping.TYPE, AggregationEngine.Grouping.CATEGORY));
+        return dataStore.aggregate(engine, from, to);
+    }
+
+    /**
+     * Get totals per period and category, read from the rollup without scanning the transactions.
+     * Covers the periods overlapping {@code from} to {@code to}, inclusive; either bound may be null
+     * to leave that side open. With a category, only that category matched by exact name is included.
+     */
+    public List<RollupCube.Row> getPeriodReport(RollupCube.Period period, LocalDate from, LocalDate to, String category) {
+        if (category == null) {
+            return dataStore.getRollupRows(period, from, to, null);
+        }
+        int categoryId = SymbolTable.CATEGORIES.lookup(category);
+        if (categoryId == SymbolTable.NO_SYMBOL) {
+            return List.of();
+        }
+        return dataStore.getRollupRows(period, from, to, categoryId);
+    }
+
+    /**
+     * Parse a query expression such as {@code type=debit and amount>50} and plan it against the
+     * store's indexes
+     */
+    public QueryPlan planQuery(String query) {
+        return QueryPlanner.plan(QueryParser.parse(query), dataStore);
+    }
+
+    /**
+     * Get the transactions matching a planned query
+     */
+    public List<Transaction> query(QueryPlan plan) {
+        return plan.execute(dataStore);
     }
 
-    public double getTotalByType(TransactionType type) {
-        return dataStore.getTransactions()
-                .stream()
-                .filter(tx -> tx.getType() == type)
-                .mapToDouble(Transaction::getAmount)
-                .sum();
+    /**
+     * Get the transactions whose description or category holds every search term
+     */
+    public List<Transaction> search(SearchQuery query) {
+        return dataStore.searchTransactions(query);
     }
 
-    public double getTotalCredits() {
+    public long getTotalCredits() {
         return getTotalByType(TransactionType.CREDIT);
     }
 
-    public double getTotalDebits() {
+    public long getTotalDebits() {
         return getTotalByType(TransactionType.DEBIT);
     }
 }
@@ -1,8 +1,9 @@
 package kofer.model;
 
 import kofer.exception.KoferException;
+import kofer.util.Money;
+import kofer.util.SymbolTable;
 
-import java.io.Serializable;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
@@ -12,41 +13,73 @@ import java.util.UUID;
  * Represents a loan taken from a lender.
  * This class manages the loan details, repayments, and status.
  * It allows adding repayments, checking remaining amounts, and marking the loan as closed.
+ * Amounts are held in cents (see {@link Money}) and the lender name as an id in
+ * {@link SymbolTable#LENDERS}.
  */
-public class Loan implements Serializable {
+public class Loan {
     private String id;               // Unique loan ID
-    private String lenderName;       // Who you borrowed from
-    private double amountBorrowed;   // Total amount borrowed
-    private double amountRepaid;     // Automatically updated
+    private int lenderId;            // Who you borrowed from
+    private long amountBorrowedCents; // Total amount borrowed, in cents
+    private long amountRepaidCents;   // Automatically updated
     private LocalDate dateBorrowed;   // When the loan was taken
     private String description;      // Optional notes
     private List<Repayment> repayments;
     private boolean isClosed;
 
-    public Loan(String lenderName, double amountBorrowed, LocalDate dateBorrowed, String description) {
-        this.id = UUID.randomUUID().toString();
-        this.lenderName = lenderName;
-        this.amountBorrowed = amountBorrowed;
+    public Loan(String lenderName, long amountBorrowedCents, LocalDate dateBorrowed, String description) {
+        this(UUID.randomUUID().toString(), lenderName, amountBorrowedCents, dateBorrowed, description);
+    }
+
+    /**
+     * Recreates a previously persisted loan with its original identifier.
+     * Repayments are replayed separately through {@link #addRepayment(Repayment)}.
+     */
+    public Loan(String id, String lenderName, long amountBorrowedCents, LocalDate dateBorrowed, String description) {
+        this.id = id;
+        this.lenderId = SymbolTable.LENDERS.intern(lenderName);
+        this.amountBorrowedCents = amountBorrowedCents;
         this.dateBorrowed = dateBorrowed != null ? dateBorrowed : LocalDate.now();
         this.description = description;
         this.repayments = new ArrayList<>();
         this.isClosed = false;
     }
 
+    /**
+     * Recreates a previously persisted loan together with its repayment history.
+     * The repayments are trusted as-is; they were validated when first recorded.
+     */
+    public Loan(String id, String lenderName, long amountBorrowedCents, LocalDate dateBorrowed, String description,
+                List<Repayment> repayments, boolean isClosed) {
+        this(id, lenderName, amountBorrowedCents, dateBorrowed, description);
+        this.repayments.addAll(repayments);
+        for (Repayment repayment : repayments) {
+            this.amountRepaidCents += repayment.getAmountCents();
+        }
+        this.isClosed = isClosed;
+    }
+
     public String getId() {
         return id;
     }
 
     public String getLenderName() {
-        return lenderName;
+        return SymbolTable.LENDERS.name(lenderId);
+    }
+
+    /**
+     * @return the lender's id in {@link SymbolTable#LENDERS}. Lenders whose names differ
+     * only in case share {@link SymbolTable#fold(int)}.
+     */
+    public int getLenderId() {
+        return lenderId;
     }
 
-    public double getAmountBorrowed() {
-        return amountBorrowed;
+    public long getAmountBorrowedCents() {
+        return amountBorrowedCents;
     }
 
-    public double getAmountRepaid() {
-        return amountRepaid;
+    public long getAmountRepaidCents() {
+        return amountRepaidCents;
     }
 
     public LocalDate getDateBorrowed() {
@@ -75,12 +108,12 @@ public class Loan implements Serializable {
             }
 
             // Validate repayment details
-            if (repayment.getAmount() <= 0) {
+            if (repayment.getAmountCents() <= 0) {
                 throw new KoferException("Repayment amount must be positive.");
             }
 
             // Check if repayment exceeds the remaining amount
-            if (getRemainingAmount() < repayment.getAmount()) {
+            if (getRemainingCents() < repayment.getAmountCents()) {
                 throw new KoferException("Repayment exceeds remaining loan amount.");
             }
 
@@ -96,17 +129,30 @@ public class Loan implements Serializable {
 
             // Add the repayment to the list and update the total repaid amount
             repayments.add(repayment);
-            amountRepaid += repayment.getAmount();
-            if (getRemainingAmount() <= 0) {
+            amountRepaidCents += repayment.getAmountCents();
+            if (getRemainingCents() <= 0) {
                 markClosed();
             }
         } catch (Exception e) {
             throw new KoferException("Failed to add repayment: " + e.getMessage(), e);
         }
     }
+
+    /**
+     * Reverts {@link #addRepayment(Repayment)} for the most recent repayment, reopening the
+     * loan it closed. Used when the repayment could not be persisted.
+     */
+    public void undoRepayment(Repayment repayment) {
+        if (repayments.isEmpty() || repayments.get(repayments.size() - 1) != repayment) {
+            throw new IllegalStateException("Only the most recent repayment can be undone.");
+        }
+        repayments.remove(repayments.size() - 1);
+        amountRepaidCents -= repayment.getAmountCents();
+        isClosed = false;
+    }
  
-    public double getRemainingAmount() {
-        return amountBorrowed - amountRepaid;
+    public long getRemainingCents() {
+        return amountBorrowedCents - amountRepaidCents;
     }
  
     public void markClosed() {
@@ -116,9 +162,17 @@ public class Loan implements Serializable {
         isClosed = true;
     }
 
+    /**
+     * Reverts {@link #markClosed()}. Used when the closure could not be persisted.
+     */
+    public void undoClose() {
+        isClosed = false;
+    }
+
     @Override
     public String toString() {
-        return String.format("[Loan] %s: %.2f borrowed from %s on %s. Repaid: %.2f. Remaining: %.2f. Description: %s",
-                id, amountBorrowed, lenderName, dateBorrowed.toString(), amountRepaid, getRemainingAmount(), description == null ? "" : description);
+        return String.format("[Loan] %s: %s borrowed from %s on %s. Repaid: %s. Remaining: %s. Description: %s",
+                id, Money.format(amountBorrowedCents), getLenderName(), dateBorrowed.toString(),
+                Money.format(amountRepaidCents), Money.format(getRemainingCents()), description == null ? "" : description);
     }
 }
@@ -1,26 +1,31 @@
 package kofer.model;
 
-import java.io.Serializable;
+import kofer.util.Money;
+
 import java.time.LocalDate;
 
 /**
  * Represents a repayment made towards a loan.
  * This class encapsulates the details of a repayment including
  * the amount, date, and an optional note.
+ * The amount is held in cents.
  */
-public class Repayment implements Serializable {
-    private double amount; // Amount repaid
+public class Repayment {
+    private long amountCents; // Amount repaid, in cents
     private LocalDate date; // Date of the repayment
     private String note; // Optional note for the repayment
 
-    public Repayment(double amount, LocalDate date, String note) {
-        this.amount = amount;
+    public Repayment(long amountCents, LocalDate date, String note) {
+        this.amountCents = amountCents;
         this.date = date != null ? date : LocalDate.now();
         this.note = note;
     }
 
-    public double getAmount() {
-        return amount;
+    /**
+     * @return the amount repaid, in cents.
+     */
+    public long getAmountCents() {
+        return amountCents;
     }
 
     public LocalDate getDate() {
@@ -31,17 +36,17 @@ public class Repayment implements Serializable {
         return note;
     }
 
-    public void setAmount(double amount) {
-        if (amount <= 0) {
+    public void setAmountCents(long amountCents) {
+        if (amountCents <= 0) {
             throw new IllegalArgumentException("Repayment amount must be positive.");
         }
-        this.amount = amount;
+        this.amountCents = amountCents;
     }
     
     @Override
     public String toString() {
-        return String.format("[Repayment] %.2f on %s - %s",
-                amount,
+        return String.format("[Repayment] %s on %s - %s",
+                Money.format(amountCents),
                 date.toString(),
                 note == null ? "" : note);
     }
@@ -1,8 +1,9 @@
 package kofer.model;
 
+import kofer.util.Money;
+import kofer.util.SymbolTable;
 import kofer.util.TransactionType;
 
-import java.io.Serializable;
 import java.time.LocalDate;
 import java.util.UUID;
 
@@ -10,21 +11,37 @@ import java.util.UUID;
  * Represents a financial transaction.
  * This class encapsulates the details of a transaction, including
  * the date, amount, type, category, and description.
+ * The amount is held in cents (see {@link Money}) and the category as an id in
+ * {@link SymbolTable#CATEGORIES}.
  */
-public class Transaction implements Serializable {
+public class Transaction {
     private String id; // Unique identifier for the transaction
     private LocalDate date; // Date of the transaction
-    private Double amount; // Amount of the transaction
+    private long amountCents; // Amount of the transaction, in cents
     private TransactionType type; // Type of the transaction
-    private String category;    // Category of the transaction (e.g., groceries, utilities)
+    private int categoryId;     // Category of the transaction (e.g., groceries, utilities)
     private String description; // Description of the transaction
 
-    public Transaction(LocalDate date, Double amount, TransactionType type, String category, String description) {
-        this.id = UUID.randomUUID().toString();
+    public Transaction(LocalDate date, long amountCents, TransactionType type, String category, String description) {
+        this(UUID.randomUUID().toString(), date, amountCents, type, category, description);
+    }
+
+    /**
+     * Recreates a previously persisted transaction with its original identifier.
+     */
+    public Transaction(String id, LocalDate date, long amountCents, TransactionType type, String category, String description) {
+        this(id, date, amountCents, type, SymbolTable.CATEGORIES.intern(category), description);
+    }
+
+    /**
+     * Recreates a previously persisted transaction whose category is already interned.
+     */
+    public Transaction(String id, LocalDate date, long amountCents, TransactionType type, int categoryId, String description) {
+        this.id = id;
         this.date = date != null ? date : LocalDate.now();
-        this.amount = amount;
+        this.amountCents = amountCents;
         this.type = type;
-        this.category = category;
+        this.categoryId = categoryId;
         this.description = description;
     }
 
@@ -36,8 +53,11 @@ public class Transaction implements Serializable {
         return date;
     }
 
-    public Double getAmount() {
-        return amount;
+    /**
+     * @return the amount in cents.
+     */
+    public long getAmountCents() {
+        return amountCents;
     }
 
     public TransactionType getType() {
@@ -45,7 +65,14 @@ public class Transaction implements Serializable {
     }
 
     public String getCategory() {
-        return category;
+        return SymbolTable.CATEGORIES.name(categoryId);
+    }
+
+    /**
+     * @return the category's id in {@link SymbolTable#CATEGORIES}, or {@link SymbolTable#NO_SYMBOL}.
+     */
+    public int getCategoryId() {
+        return categoryId;
     }
 
     public String getDescription() {
@@ -54,7 +81,7 @@ public class Transaction implements Serializable {
 
     @Override
     public String toString() {
-        return String.format("[%s] %s: %.2f (%s) - %s",
-                date.toString(), type.toUpperCase(), amount, category, description == null ? "" : description);
+        return String.format("[%s] %s: %s (%s) - %s",
+                date.toString(), type.toUpperCase(), Money.format(amountCents), getCategory(), description == null ? "" : description);
     }
-}
\ No newline at end of file
+}
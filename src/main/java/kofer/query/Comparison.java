@@ -0,0 +1,198 @@
+package kofer.query;
+
+import kofer.exception.ValidationException;
+import kofer.store.TransactionCursor;
+import kofer.util.Money;
+import kofer.util.SymbolTable;
+import kofer.util.TransactionType;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Compares one field of a transaction with a constant, e.g. {@code amount > 50}.
+ * Amounts and dates are compared as cents and epoch days; categories are matched by exact name,
+ * as in {@code show transactions --category}.
+ */
+public final class Comparison extends Expression {
+
+    public enum Field {
+        TYPE, CATEGORY, AMOUNT, DATE;
+
+        static Field of(String name) {
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new ValidationException("query field", name, "type, category, amount or date");
+            }
+        }
+
+        Set<Operator> operators() {
+            return this == TYPE || this == CATEGORY
+                    ? EnumSet.of(Operator.EQ, Operator.NE)
+                    : EnumSet.allOf(Operator.class);
+        }
+
+        @Override
+        public String toString() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    public enum Operator {
+        EQ("="), NE("!="), LT("<"), LE("<="), GT(">"), GE(">=");
+
+        private final String symbol;
+
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+
+        static Operator of(String symbol) {
+            if (symbol.equals("==")) {
+                return EQ;
+            }
+            for (Operator operator : values()) {
+                if (operator.symbol.equals(symbol)) {
+                    return operator;
+                }
+            }
+            throw new ValidationException("query operator", symbol, "=, !=, <, <=, > or >=");
+        }
+
+        @Override
+        public String toString() {
+            return symbol;
+        }
+    }
+
+    private final Field field;
+    private final Operator operator;
+    private final String text;
+    // Cents for amounts, epoch days for dates, the ordinal for types; unused for categories
+    private final long value;
+
+    public Comparison(Field field, Operator operator, String text) {
+        if (!field.operators().contains(operator)) {
+            throw new ValidationException("Operator '" + operator + "' is not supported for " + field + "; use = or !=");
+        }
+        this.field = field;
+        this.operator = operator;
+        this.text = text;
+        this.value = switch (field) {
+            case TYPE -> parseType(text).ordinal();
+            case AMOUNT -> parseAmount(text);
+            case DATE -> parseDate(text);
+            case CATEGORY -> 0;
+        };
+    }
+
+    private static TransactionType parseType(String text) {
+        try {
+            return TransactionType.valueOf(text.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("type", text, "credit, debit or loan");
+        }
+    }
+
+    private static long parseAmount(String text) {
+        try {
+            return Money.parse(text);
+        } catch (NumberFormatException e) {
+            throw new ValidationException("amount", text, "a decimal amount such as 50 or 12.34");
+        }
+    }
+
+    private static long parseDate(String text) {
+        try {
+            return LocalDate.parse(text).toEpochDay();
+        } catch (DateTimeParseException e) {
+            throw new ValidationException("date", text, "YYYY-MM-DD");
+        }
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    /**
+     * @return the compared epoch day; only for {@link Field#DATE}.
+     */
+    public int epochDay() {
+        return Math.toIntExact(value);
+    }
+
+    /**
+     * @return the compared type; only for {@link Field#TYPE}.
+     */
+    public TransactionType type() {
+        return TransactionType.values()[(int) value];
+    }
+
+    /**
+     * @return the id of the compared category, or {@link SymbolTable#NO_SYMBOL} if no record has it.
+     */
+    public int categoryId() {
+        return SymbolTable.CATEGORIES.lookup(text);
+    }
+
+    @Override
+    public Predicate<TransactionCursor> compile() {
+        boolean equal = operator == Operator.EQ;
+        switch (field) {
+            case TYPE -> {
+                TransactionType type = type();
+                return equal ? cursor -> cursor.type() == type : cursor -> cursor.type() != type;
+            }
+            case CATEGORY -> {
+                int categoryId = categoryId();
+                if (categoryId == SymbolTable.NO_SYMBOL) {
+                    // A name no record uses matches nothing, and differs from every record
+                    return equal ? cursor -> false : cursor -> true;
+                }
+                return equal ? cursor -> cursor.categoryId() == categoryId : cursor -> cursor.categoryId() != categoryId;
+            }
+            case AMOUNT -> {
+                long cents = value;
+                return switch (operator) {
+                    case EQ -> cursor -> cursor.amountCents() == cents;
+                    case NE -> cursor -> cursor.amountCents() != cents;
+                    case LT -> cursor -> cursor.amountCents() < cents;
+                    case LE -> cursor -> cursor.amountCents() <= cents;
+                    case GT -> cursor -> cursor.amountCents() > cents;
+                    case GE -> cursor -> cursor.amountCents() >= cents;
+                };
+            }
+            default -> {
+                int day = epochDay();
+                return switch (operator) {
+                    case EQ -> cursor -> cursor.epochDay() == day;
+                    case NE -> cursor -> cursor.epochDay() != day;
+                    case LT -> cursor -> cursor.epochDay() < day;
+                    case LE -> cursor -> cursor.epochDay() <= day;
+                    case GT -> cursor -> cursor.epochDay() > day;
+                    case GE -> cursor -> cursor.epochDay() >= day;
+                };
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        String shown = switch (field) {
+            case TYPE -> type().name().toLowerCase(Locale.ROOT);
+            case AMOUNT -> Money.format(value);
+            case DATE -> LocalDate.ofEpochDay(value).toString();
+            case CATEGORY -> text.matches("[\\w.\\-]+") ? text : "\"" + text.replace("\"", "\\\"") + "\"";
+        };
+        return field + " " + operator + " " + shown;
+    }
+}
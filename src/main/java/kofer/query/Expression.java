@@ -0,0 +1,117 @@
+package kofer.query;
+
+import kofer.store.TransactionCursor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * A node of a parsed query: a {@link Comparison}, or a boolean combination of other nodes.
+ * Nodes compile into predicates over a {@link TransactionCursor} that read only its primitive
+ * accessors, so a filtered scan materializes nothing but the matches.
+ */
+public abstract class Expression {
+
+    /**
+     * Compiles the expression into a predicate. Names are resolved once, here, rather than per record.
+     */
+    public abstract Predicate<TransactionCursor> compile();
+
+    /**
+     * @return the operands of a top-level conjunction, or this expression on its own.
+     */
+    public List<Expression> conjuncts() {
+        return List.of(this);
+    }
+
+    /**
+     * Renders an operand, in parentheses if it binds less tightly than {@code and}.
+     */
+    static String operand(Expression expression) {
+        return expression instanceof Or ? "(" + expression + ")" : expression.toString();
+    }
+
+    public static final class And extends Expression {
+        private final List<Expression> operands;
+
+        public And(List<Expression> operands) {
+            // Nested conjunctions are flattened so that the planner sees every conjunct
+            List<Expression> flattened = new ArrayList<>();
+            for (Expression operand : operands) {
+                flattened.addAll(operand instanceof And ? ((And) operand).operands : List.of(operand));
+            }
+            this.operands = List.copyOf(flattened);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Predicate<TransactionCursor> compile() {
+            Predicate<TransactionCursor>[] compiled = operands.stream().map(Expression::compile).toArray(Predicate[]::new);
+            return cursor -> {
+                for (Predicate<TransactionCursor> operand : compiled) {
+                    if (!operand.test(cursor)) {
+                        return false;
+                    }
+                }
+                return true;
+            };
+        }
+
+        @Override
+        public List<Expression> conjuncts() {
+            return operands;
+        }
+
+        @Override
+        public String toString() {
+            return operands.stream().map(Expression::operand).collect(Collectors.joining(" and "));
+        }
+    }
+
+    public static final class Or extends Expression {
+        private final List<Expression> operands;
+
+        public Or(List<Expression> operands) {
+            this.operands = List.copyOf(operands);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Predicate<TransactionCursor> compile() {
+            Predicate<TransactionCursor>[] compiled = operands.stream().map(Expression::compile).toArray(Predicate[]::new);
+            return cursor -> {
+                for (Predicate<TransactionCursor> operand : compiled) {
+                    if (operand.test(cursor)) {
+                        return true;
+                    }
+                }
+                return false;
+            };
+        }
+
+        @Override
+        public String toString() {
+            return operands.stream().map(Expression::toString).collect(Collectors.joining(" or "));
+        }
+    }
+
+    public static final class Not extends Expression {
+        private final Expression operand;
+
+        public Not(Expression operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public Predicate<TransactionCursor> compile() {
+            return operand.compile().negate();
+        }
+
+        @Override
+        public String toString() {
+            return "not (" + operand + ")";
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package kofer.query;
+
+import kofer.exception.ValidationException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses query expressions such as
+ * {@code type=debit and category=grocery and amount>50 and date>=2024-01-01}.
+ *
+ * <pre>
+ *   expression := conjunction ("or" conjunction)*
+ *   conjunction := unary ("and" unary)*
+ *   unary := "not" unary | "(" expression ")" | field operator value
+ *   field := type | category | amount | date
+ *   operator := = | == | != | &lt; | &lt;= | &gt; | &gt;=
+ * </pre>
+ * Keywords and field names are case-insensitive. Values containing spaces or operator
+ * characters are quoted with double or single quotes.
+ */
+public final class QueryParser {
+    private static final String OPERATOR_CHARS = "=!<>";
+    private static final String DELIMITERS = OPERATOR_CHARS + "()\"'";
+
+    private enum Kind { WORD, STRING, OPERATOR, OPEN, CLOSE, END }
+
+    private static final class Token {
+        final Kind kind;
+        final String text;
+        final int position;
+
+        Token(Kind kind, String text, int position) {
+            this.kind = kind;
+            this.text = text;
+            this.position = position;
+        }
+
+        boolean isKeyword(String keyword) {
+            return kind == Kind.WORD && text.equalsIgnoreCase(keyword);
+        }
+
+        String describe() {
+            return kind == Kind.END ? "the end of the query" : "'" + text + "' at position " + (position + 1);
+        }
+    }
+
+    private final List<Token> tokens;
+    private int next;
+
+    private QueryParser(String query) {
+        this.tokens = tokenize(query);
+    }
+
+    /**
+     * @throws ValidationException if the query is malformed or compares a field with an invalid value.
+     */
+    public static Expression parse(String query) {
+        if (query == null || query.isBlank()) {
+            throw new ValidationException("Query is empty");
+        }
+        QueryParser parser = new QueryParser(query);
+        Expression expression = parser.expression();
+        parser.expect(Kind.END, "'and', 'or' or the end of the query");
+        return expression;
+    }
+
+    private Expression expression() {
+        List<Expression> operands = new ArrayList<>();
+        operands.add(conjunction());
+        while (peek().isKeyword("or")) {
+            next++;
+            operands.add(conjunction());
+        }
+        return operands.size() == 1 ? operands.get(0) : new Expression.Or(operands);
+    }
+
+    private Expression conjunction() {
+        List<Expression> operands = new ArrayList<>();
+        operands.add(unary());
+        while (peek().isKeyword("and")) {
+            next++;
+            operands.add(unary());
+        }
+        return operands.size() == 1 ? operands.get(0) : new Expression.And(operands);
+    }
+
+    private Expression unary() {
+        Token token = peek();
+        if (token.isKeyword("not")) {
+            next++;
+            return new Expression.Not(unary());
+        }
+        if (token.kind == Kind.OPEN) {
+            next++;
+            Expression inner = expression();
+            expect(Kind.CLOSE, "')'");
+            return inner;
+        }
+        Comparison.Field field = Comparison.Field.of(expect(Kind.WORD, "a field name").text);
+        Comparison.Operator operator = Comparison.Operator.of(expect(Kind.OPERATOR, "an operator").text);
+        Token value = peek();
+        if (value.kind != Kind.WORD && value.kind != Kind.STRING) {
+            throw unexpected(value, "a value");
+        }
+        next++;
+        return new Comparison(field, operator, value.text);
+    }
+
+    private Token peek() {
+        return tokens.get(next);
+    }
+
+    private Token expect(Kind kind, String expected) {
+        Token token = peek();
+        if (token.kind != kind) {
+            throw unexpected(token, expected);
+        }
+        next++;
+        return token;
+    }
+
+    private static ValidationException unexpected(Token token, String expected) {
+        return new ValidationException("Invalid query: expected " + expected + " but found " + token.describe());
+    }
+
+    private static List<Token> tokenize(String query) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            int start = i;
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(' || c == ')') {
+                tokens.add(new Token(c == '(' ? Kind.OPEN : Kind.CLOSE, String.valueOf(c), start));
+                i++;
+            } else if (c == '"' || c == '\'') {
+                StringBuilder value = new StringBuilder();
+                i++;
+                while (i < query.length() && query.charAt(i) != c) {
+                    if (query.charAt(i) == '\\' && i + 1 < query.length()) {
+                        i++;
+                    }
+                    value.append(query.charAt(i++));
+                }
+                if (i == query.length()) {
+                    throw new ValidationException("Invalid query: unterminated quote at position " + (start + 1));
+                }
+                i++;
+                tokens.add(new Token(Kind.STRING, value.toString(), start));
+            } else if (OPERATOR_CHARS.indexOf(c) >= 0) {
+                while (i < query.length() && OPERATOR_CHARS.indexOf(query.charAt(i)) >= 0) {
+                    i++;
+                }
+                tokens.add(new Token(Kind.OPERATOR, query.substring(start, i), start));
+            } else {
+                while (i < query.length() && !Character.isWhitespace(query.charAt(i))
+                        && DELIMITERS.indexOf(query.charAt(i)) < 0) {
+                    i++;
+                }
+                tokens.add(new Token(Kind.WORD, query.substring(start, i), start));
+            }
+        }
+        tokens.add(new Token(Kind.END, "", query.length()));
+        return tokens;
+    }
+}
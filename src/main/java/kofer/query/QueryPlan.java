@@ -0,0 +1,93 @@
+package kofer.query;
+
+import kofer.model.Transaction;
+import kofer.store.DataStore;
+import kofer.store.TransactionCursor;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * How a query is answered, as decided by {@link QueryPlanner}: the date ranges to read through
+ * the store's date index, and the residual filter applied to every record read.
+ */
+public final class QueryPlan {
+    private final Expression query;
+    private final int fromDay;
+    private final int toDay;
+    // Null unless the daily rollup narrowed the scan to these [first, last] day ranges
+    private final List<int[]> dayRanges;
+    private final String prunedBy;
+    // Null if every record in the ranges matches
+    private final Expression residual;
+    private final boolean empty;
+
+    QueryPlan(Expression query, int fromDay, int toDay, List<int[]> dayRanges, String prunedBy,
+              Expression residual, boolean empty) {
+        this.query = query;
+        this.fromDay = fromDay;
+        this.toDay = toDay;
+        this.dayRanges = dayRanges;
+        this.prunedBy = prunedBy;
+        this.residual = residual;
+        this.empty = empty;
+    }
+
+    /**
+     * Runs the plan. Records are returned in the order of {@link DataStore#transactionCursor()};
+     * a scan narrowed to several day ranges returns the records of each range in that order,
+     * earliest range first.
+     */
+    public List<Transaction> execute(DataStore dataStore) {
+        if (empty) {
+            return List.of();
+        }
+        Predicate<TransactionCursor> filter = residual == null ? cursor -> true : residual.compile();
+        if (dayRanges == null) {
+            return dataStore.findTransactions(filter, date(fromDay, Integer.MIN_VALUE), date(toDay, Integer.MAX_VALUE));
+        }
+        List<Transaction> matches = new ArrayList<>();
+        for (int[] range : dayRanges) {
+            matches.addAll(dataStore.findTransactions(filter, LocalDate.ofEpochDay(range[0]), LocalDate.ofEpochDay(range[1])));
+        }
+        return matches;
+    }
+
+    private static LocalDate date(int epochDay, int open) {
+        return epochDay == open ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    public Expression getQuery() {
+        return query;
+    }
+
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * @return a few lines describing the plan, for {@code kofer query --explain}.
+     */
+    public List<String> describe() {
+        List<String> lines = new ArrayList<>();
+        lines.add("Query:    " + query);
+        if (empty) {
+            lines.add("Scan:     none, no record can match");
+            return lines;
+        }
+        if (fromDay == Integer.MIN_VALUE && toDay == Integer.MAX_VALUE) {
+            lines.add("Scan:     all transactions");
+        } else {
+            lines.add("Scan:     date index from " + (fromDay == Integer.MIN_VALUE ? "the beginning" : LocalDate.ofEpochDay(fromDay))
+                    + " to " + (toDay == Integer.MAX_VALUE ? "the latest" : LocalDate.ofEpochDay(toDay)));
+        }
+        if (dayRanges != null) {
+            lines.add("Pruned:   " + dayRanges.size() + " day range" + (dayRanges.size() == 1 ? "" : "s")
+                    + " holding the " + prunedBy + ", from the daily rollup");
+        }
+        lines.add("Filter:   " + (residual == null ? "none" : residual));
+        return lines;
+    }
+}
@@ -0,0 +1,118 @@
+package kofer.query;
+
+import kofer.store.DataStore;
+import kofer.store.RollupCube;
+import kofer.util.SymbolTable;
+import kofer.util.TransactionType;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plans a query against the indexes of a {@link DataStore}. Only the top-level conjuncts are
+ * used for planning; anything under {@code or} or {@code not} is left to the residual filter.
+ * <ul>
+ *   <li>Date comparisons other than {@code !=} become the bounds of a date index range scan
+ *   and are dropped from the filter, since the range already enforces them exactly.</li>
+ *   <li>Category and type equalities are looked up in the daily {@link RollupCube}, which
+ *   yields the days holding at least one such record; only those days are read. The equalities
+ *   stay in the filter, as other records share those days.</li>
+ *   <li>Contradictory conjuncts, or an equality no record can satisfy, give an empty plan
+ *   that reads nothing.</li>
+ * </ul>
+ */
+public final class QueryPlanner {
+    /**
+     * Above this many day ranges the rollup only narrows the scan to its first and last day.
+     */
+    static final int MAX_DAY_RANGES = 4096;
+
+    private QueryPlanner() {
+    }
+
+    public static QueryPlan plan(Expression query, DataStore dataStore) {
+        int fromDay = Integer.MIN_VALUE;
+        int toDay = Integer.MAX_VALUE;
+        Integer categoryId = null;
+        TransactionType type = null;
+        boolean empty = false;
+        List<Expression> residual = new ArrayList<>();
+
+        for (Expression conjunct : query.conjuncts()) {
+            if (!(conjunct instanceof Comparison comparison)) {
+                residual.add(conjunct);
+                continue;
+            }
+            Comparison.Operator operator = comparison.getOperator();
+            if (comparison.getField() == Comparison.Field.DATE && operator != Comparison.Operator.NE) {
+                // Widened so that the day after or before cannot overflow
+                long day = comparison.epochDay();
+                switch (operator) {
+                    case EQ -> {
+                        fromDay = (int) Math.max(fromDay, day);
+                        toDay = (int) Math.min(toDay, day);
+                    }
+                    case GT -> fromDay = (int) Math.max(fromDay, day + 1);
+                    case GE -> fromDay = (int) Math.max(fromDay, day);
+                    case LT -> toDay = (int) Math.min(toDay, day - 1);
+                    default -> toDay = (int) Math.min(toDay, day);
+                }
+                continue;
+            }
+            if (operator == Comparison.Operator.EQ && comparison.getField() == Comparison.Field.CATEGORY) {
+                int id = comparison.categoryId();
+                empty |= id == SymbolTable.NO_SYMBOL || (categoryId != null && categoryId != id);
+                categoryId = id;
+            } else if (operator == Comparison.Operator.EQ && comparison.getField() == Comparison.Field.TYPE) {
+                empty |= type != null && type != comparison.type();
+                type = comparison.type();
+            }
+            residual.add(comparison);
+        }
+        empty |= fromDay > toDay;
+
+        Expression filter = residual.isEmpty() ? null
+                : residual.size() == 1 ? residual.get(0) : new Expression.And(residual);
+
+        List<int[]> dayRanges = null;
+        String prunedBy = null;
+        if (!empty && (categoryId != null || type != null)) {
+            dayRanges = dayRanges(dataStore, fromDay, toDay, categoryId, type);
+            empty = dayRanges.isEmpty();
+            prunedBy = categoryId != null && type != null ? "category and type"
+                    : categoryId != null ? "category" : "type";
+        }
+        return new QueryPlan(query, fromDay, toDay, dayRanges, prunedBy, filter, empty);
+    }
+
+    /**
+     * Reads the days holding the category and type from the daily rollup, merging consecutive
+     * days into ranges. The rows come in day order, one per day and category.
+     */
+    private static List<int[]> dayRanges(DataStore dataStore, int fromDay, int toDay,
+                                         Integer categoryId, TransactionType type) {
+        List<RollupCube.Row> rows = dataStore.getRollupRows(RollupCube.Period.DAILY,
+                fromDay == Integer.MIN_VALUE ? null : LocalDate.ofEpochDay(fromDay),
+                toDay == Integer.MAX_VALUE ? null : LocalDate.ofEpochDay(toDay), categoryId);
+
+        List<int[]> ranges = new ArrayList<>();
+        int[] current = null;
+        for (RollupCube.Row row : rows) {
+            if ((type == null ? row.getCount() : row.getCount(type)) == 0) {
+                continue;
+            }
+            int day = Math.toIntExact(row.getPeriodStart().toEpochDay());
+            if (current != null && day <= current[1] + 1) {
+                current[1] = day;
+            } else {
+                current = new int[]{day, day};
+                ranges.add(current);
+            }
+        }
+        if (ranges.size() > MAX_DAY_RANGES) {
+            return List.of(new int[]{ranges.get(0)[0], ranges.get(ranges.size() - 1)[1]});
+        }
+        return ranges;
+    }
+}
@@ -0,0 +1,183 @@
+package kofer.store;
+
+import kofer.model.Loan;
+import kofer.util.TransactionType;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Objects;
+
+/**
+ * Running totals over the whole store, kept by {@link DataStore} in step with every
+ * mutation and saved with each snapshot, so that summaries never scan the records.
+ * Amounts are in cents.
+ *
+ * A loan contributes to the loan totals according to its current state. Before a loan is
+ * changed its contribution is removed with {@link #removeLoan(Loan)}, and afterwards it is
+ * added back with {@link #addLoan(Loan)}.
+ */
+public class Aggregates {
+    private static final TransactionType[] TYPES = TransactionType.values();
+
+    private final long[] totalByType = new long[TYPES.length];
+    private int transactionCount;
+
+    private int loanCount;
+    private int activeLoanCount;
+    private long totalBorrowed;
+    private long totalRepaid;
+    private long totalRemaining;
+
+    /**
+     * @return an engine computing what {@link #of(AggregationEngine.Result)} needs.
+     */
+    static AggregationEngine engine() {
+        return new AggregationEngine(
+                EnumSet.of(AggregationEngine.Metric.SUM, AggregationEngine.Metric.COUNT),
+                EnumSet.of(AggregationEngine.Grouping.TYPE));
+    }
+
+    /**
+     * Creates the aggregates from a pass of {@link #engine()} over every record.
+     */
+    static Aggregates of(AggregationEngine.Result result) {
+        Aggregates aggregates = new Aggregates();
+        for (TransactionType type : TYPES) {
+            aggregates.totalByType[type.ordinal()] = result.byType().sum(type.ordinal());
+        }
+        aggregates.transactionCount = result.getTransactionCount();
+        aggregates.loanCount = result.getLoanCount();
+        aggregates.activeLoanCount = result.getActiveLoanCount();
+        aggregates.totalBorrowed = result.getTotalBorrowed();
+        aggregates.totalRepaid = result.getTotalRepaid();
+        aggregates.totalRemaining = result.getTotalRemaining();
+        return aggregates;
+    }
+
+    /**
+     * Replaces the transaction totals with totals computed by the store. Also used for stores
+     * that persist their records outside the snapshot these aggregates are saved with.
+     */
+    void computeTransactions(TransactionStore transactions) {
+        for (TransactionType type : TYPES) {
+            totalByType[type.ordinal()] = transactions.total(type, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        }
+        transactionCount = transactions.size();
+    }
+
+    void addTransaction(TransactionType type, long amountCents) {
+        totalByType[type.ordinal()] += amountCents;
+        transactionCount++;
+    }
+
+    void addLoan(Loan loan) {
+        loanCount++;
+        totalBorrowed += loan.getAmountBorrowedCents();
+        totalRepaid += loan.getAmountRepaidCents();
+        if (!loan.isClosed()) {
+            activeLoanCount++;
+            totalRemaining += loan.getRemainingCents();
+        }
+    }
+
+    void removeLoan(Loan loan) {
+        loanCount--;
+        totalBorrowed -= loan.getAmountBorrowedCents();
+        totalRepaid -= loan.getAmountRepaidCents();
+        if (!loan.isClosed()) {
+            activeLoanCount--;
+            totalRemaining -= loan.getRemainingCents();
+        }
+    }
+
+    public long getTotal(TransactionType type) {
+        return totalByType[type.ordinal()];
+    }
+
+    public int getTransactionCount() {
+        return transactionCount;
+    }
+
+    public int getLoanCount() {
+        return loanCount;
+    }
+
+    public int getActiveLoanCount() {
+        return activeLoanCount;
+    }
+
+    public long getTotalBorrowed() {
+        return totalBorrowed;
+    }
+
+    public long getTotalRepaid() {
+        return totalRepaid;
+    }
+
+    /**
+     * @return the amount still owed on loans that are not closed.
+     */
+    public long getTotalRemaining() {
+        return totalRemaining;
+    }
+
+    /**
+     * Encodes the aggregates as the payload of {@link SnapshotFormat#SECTION_AGGREGATES}.
+     */
+    void write(DataOutputStream out) throws IOException {
+        out.writeByte(TYPES.length);
+        for (long total : totalByType) {
+            out.writeLong(total);
+        }
+        out.writeInt(transactionCount);
+        out.writeInt(loanCount);
+        out.writeInt(activeLoanCount);
+        out.writeLong(totalBorrowed);
+        out.writeLong(totalRepaid);
+        out.writeLong(totalRemaining);
+    }
+
+    static Aggregates read(ByteBuffer in) {
+        Aggregates aggregates = new Aggregates();
+        int types = in.get();
+        for (int i = 0; i < types; i++) {
+            long total = in.getLong();
+            if (i < TYPES.length) {
+                aggregates.totalByType[i] = total;
+            }
+        }
+        aggregates.transactionCount = in.getInt();
+        aggregates.loanCount = in.getInt();
+        aggregates.activeLoanCount = in.getInt();
+        aggregates.totalBorrowed = in.getLong();
+        aggregates.totalRepaid = in.getLong();
+        aggregates.totalRemaining = in.getLong();
+        return aggregates;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Aggregates other)) {
+            return false;
+        }
+        return Arrays.equals(totalByType, other.totalByType)
+                && transactionCount == other.transactionCount
+                && loanCount == other.loanCount
+                && activeLoanCount == other.activeLoanCount
+                && totalBorrowed == other.totalBorrowed
+                && totalRepaid == other.totalRepaid
+                && totalRemaining == other.totalRemaining;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(Arrays.hashCode(totalByType), transactionCount, loanCount, activeLoanCount,
+                totalBorrowed, totalRepaid, totalRemaining);
+    }
+}
@@ -0,0 +1,334 @@
+package kofer.store;
+
+import kofer.model.Loan;
+import kofer.util.SymbolTable;
+import kofer.util.TransactionType;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Computes a requested set of statistics over transactions and loans, all of them in a single
+ * pass over each. Every group keeps primitive accumulators indexed by a dense int key:
+ * the type ordinal, the category id from {@link SymbolTable#CATEGORIES}, or the case-insensitive
+ * lender group from {@link SymbolTable#LENDERS}. Nothing is boxed or materialized per record.
+ *
+ * Reports declare the metrics and groupings they need, so adding a statistic adds an
+ * accumulator to the existing pass instead of another scan. Amounts are in cents.
+ */
+public class AggregationEngine {
+
+    /**
+     * Sums and counts are always kept; the other metrics add accumulators only when requested.
+     */
+    public enum Metric {
+        SUM, COUNT, MIN, MAX,
+        /**
+         * Implies {@link #SUM} and {@link #COUNT}.
+         */
+        AVERAGE
+    }
+
+    public enum Grouping {
+        /**
+         * Transactions by {@link TransactionType}.
+         */
+        TYPE,
+
+        /**
+         * Transactions by category.
+         */
+        CATEGORY,
+
+        /**
+         * Loans by lender, ignoring case, over the amounts borrowed.
+         */
+        LENDER
+    }
+
+    private final boolean extremes;
+    private final Set<Grouping> groupings;
+
+    public AggregationEngine(Set<Metric> metrics, Set<Grouping> groupings) {
+        this.extremes = metrics.contains(Metric.MIN) || metrics.contains(Metric.MAX);
+        this.groupings = groupings.isEmpty() ? EnumSet.noneOf(Grouping.class) : EnumSet.copyOf(groupings);
+    }
+
+    /**
+     * Runs the transaction pass over {@code cursor} and the loan pass over {@code loans}.
+     * Loan totals for the loan summary are always computed.
+     */
+    public Result run(TransactionCursor cursor, List<Loan> loans) {
+        Result result = new Result(extremes);
+        addTransactions(result, cursor);
+        addLoans(result, loans);
+        return result;
+    }
+
+    /**
+     * Runs only the loan pass; transaction statistics stay empty.
+     */
+    public Result runLoans(List<Loan> loans) {
+        Result result = new Result(extremes);
+        addLoans(result, loans);
+        return result;
+    }
+
+    /**
+     * Creates an empty result for this engine's metrics, for partial passes that are merged later.
+     */
+    Result newResult() {
+        return new Result(extremes);
+    }
+
+    void addTransactions(Result result, TransactionCursor cursor) {
+        boolean byType = groupings.contains(Grouping.TYPE);
+        boolean byCategory = groupings.contains(Grouping.CATEGORY);
+        while (cursor.next()) {
+            long amount = cursor.amountCents();
+            if (byType) {
+                result.byType.add(cursor.type().ordinal(), amount);
+            }
+            if (byCategory) {
+                result.byCategory.add(cursor.categoryId(), amount);
+            }
+            result.transactionCount++;
+        }
+    }
+
+    void addLoans(Result result, List<Loan> loans) {
+        for (Loan loan : loans) {
+            addLoan(result, loan);
+        }
+    }
+
+    void addLoan(Result result, Loan loan) {
+        long borrowed = loan.getAmountBorrowedCents();
+        if (groupings.contains(Grouping.LENDER)) {
+            result.byLender.add(SymbolTable.LENDERS.fold(loan.getLenderId()), borrowed);
+        }
+        result.loanCount++;
+        result.totalBorrowed += borrowed;
+        result.totalRepaid += loan.getAmountRepaidCents();
+        if (!loan.isClosed()) {
+            result.activeLoanCount++;
+            result.totalRemaining += loan.getRemainingCents();
+        }
+    }
+
+    /**
+     * Statistics of one grouping. Keys that received no record report a count of zero.
+     */
+    public static class GroupStats {
+        // Index 0 holds SymbolTable.NO_SYMBOL, so every array is offset by one
+        private static final int OFFSET = 1;
+
+        private final boolean extremes;
+        private long[] sums = new long[0];
+        private long[] counts = new long[0];
+        private long[] mins = new long[0];
+        private long[] maxes = new long[0];
+
+        GroupStats(boolean extremes) {
+            this.extremes = extremes;
+        }
+
+        void add(int key, long amount) {
+            int index = key + OFFSET;
+            if (index >= counts.length) {
+                grow(index + 1);
+            }
+            sums[index] += amount;
+            if (extremes) {
+                if (counts[index] == 0 || amount < mins[index]) {
+                    mins[index] = amount;
+                }
+                if (counts[index] == 0 || amount > maxes[index]) {
+                    maxes[index] = amount;
+                }
+            }
+            counts[index]++;
+        }
+
+        /**
+         * Adds another partial result for the same grouping. Sums and counts are exact integers,
+         * so merging partial results gives exactly the result of one sequential pass.
+         */
+        void merge(GroupStats other) {
+            if (other.counts.length > counts.length) {
+                grow(other.counts.length);
+            }
+            for (int index = 0; index < other.counts.length; index++) {
+                long count = other.counts[index];
+                if (count == 0) {
+                    continue;
+                }
+                if (extremes) {
+                    if (counts[index] == 0 || other.mins[index] < mins[index]) {
+                        mins[index] = other.mins[index];
+                    }
+                    if (counts[index] == 0 || other.maxes[index] > maxes[index]) {
+                        maxes[index] = other.maxes[index];
+                    }
+                }
+                sums[index] += other.sums[index];
+                counts[index] += count;
+            }
+        }
+
+        private void grow(int length) {
+            int grown = Math.max(length, counts.length * 2);
+            sums = Arrays.copyOf(sums, grown);
+            counts = Arrays.copyOf(counts, grown);
+            if (extremes) {
+                mins = Arrays.copyOf(mins, grown);
+                maxes = Arrays.copyOf(maxes, grown);
+            }
+        }
+
+        /**
+         * @return the keys that received at least one record, in ascending order.
+         */
+        public int[] keys() {
+            int[] keys = new int[counts.length];
+            int found = 0;
+            for (int index = 0; index < counts.length; index++) {
+                if (counts[index] > 0) {
+                    keys[found++] = index - OFFSET;
+                }
+            }
+            return Arrays.copyOf(keys, found);
+        }
+
+        public long count(int key) {
+            int index = key + OFFSET;
+            return index < counts.length ? counts[index] : 0;
+        }
+
+        public long sum(int key) {
+            int index = key + OFFSET;
+            return index < sums.length ? sums[index] : 0;
+        }
+
+        /**
+         * @throws IllegalStateException if {@link Metric#MIN} and {@link Metric#MAX} were not requested.
+         */
+        public long min(int key) {
+            requireExtremes();
+            return count(key) == 0 ? 0 : mins[key + OFFSET];
+        }
+
+        /**
+         * @throws IllegalStateException if {@link Metric#MIN} and {@link Metric#MAX} were not requested.
+         */
+        public long max(int key) {
+            requireExtremes();
+            return count(key) == 0 ? 0 : maxes[key + OFFSET];
+        }
+
+        /**
+         * @return the mean amount in cents, or zero if the key received no record.
+         */
+        public double average(int key) {
+            long count = count(key);
+            return count == 0 ? 0 : sum(key) / (double) count;
+        }
+
+        private void requireExtremes() {
+            if (!extremes) {
+                throw new IllegalStateException("Minimum and maximum were not requested");
+            }
+        }
+    }
+
+    /**
+     * Everything computed by one {@link #run}.
+     */
+    public static class Result {
+        private final GroupStats byType;
+        private final GroupStats byCategory;
+        private final GroupStats byLender;
+        private int transactionCount;
+
+        private int loanCount;
+        private int activeLoanCount;
+        private long totalBorrowed;
+        private long totalRepaid;
+        private long totalRemaining;
+
+        Result(boolean extremes) {
+            byType = new GroupStats(extremes);
+            byCategory = new GroupStats(extremes);
+            byLender = new GroupStats(extremes);
+        }
+
+        /**
+         * Adds another partial result computed by the same engine.
+         *
+         * @return this result.
+         */
+        Result merge(Result other) {
+            byType.merge(other.byType);
+            byCategory.merge(other.byCategory);
+            byLender.merge(other.byLender);
+            transactionCount += other.transactionCount;
+            loanCount += other.loanCount;
+            activeLoanCount += other.activeLoanCount;
+            totalBorrowed += other.totalBorrowed;
+            totalRepaid += other.totalRepaid;
+            totalRemaining += other.totalRemaining;
+            return this;
+        }
+
+        /**
+         * @return statistics keyed by {@link TransactionType#ordinal()}; empty unless {@link Grouping#TYPE} was requested.
+         */
+        public GroupStats byType() {
+            return byType;
+        }
+
+        /**
+         * @return statistics keyed by category id; empty unless {@link Grouping#CATEGORY} was requested.
+         */
+        public GroupStats byCategory() {
+            return byCategory;
+        }
+
+        /**
+         * @return statistics over amounts borrowed, keyed by lender group; empty unless
+         * {@link Grouping#LENDER} was requested.
+         */
+        public GroupStats byLender() {
+            return byLender;
+        }
+
+        public int getTransactionCount() {
+            return transactionCount;
+        }
+
+        public int getLoanCount() {
+            return loanCount;
+        }
+
+        public int getActiveLoanCount() {
+            return activeLoanCount;
+        }
+
+        public long getTotalBorrowed() {
+            return totalBorrowed;
+        }
+
+        public long getTotalRepaid() {
+            return totalRepaid;
+        }
+
+        /**
+         * @return the amount still owed on loans that are not closed.
+         */
+        public long getTotalRemaining() {
+            return totalRemaining;
+        }
+    }
+}
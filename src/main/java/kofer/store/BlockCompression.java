@@ -0,0 +1,194 @@
+package kofer.store;
+
+import kofer.exception.DataAccessException;
+import kofer.model.Loan;
+import kofer.model.Transaction;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.stream.IntStream;
+
+/**
+ * Deflate codec for snapshot sections. A section is cut into {@link #BLOCK_SIZE} blocks that
+ * are compressed independently, in parallel, and all primed with the same preset dictionary.
+ * The dictionary is built from the strings that repeat most across the ledger, so even the
+ * first occurrence of a description in each block compresses to a back-reference.
+ *
+ * Compressed payload layout:
+ * <pre>
+ *   int  raw length
+ *   int  block count
+ *   block count x int compressed block length
+ *   compressed blocks
+ * </pre>
+ */
+final class BlockCompression {
+    static final int BLOCK_SIZE = 64 * 1024;
+
+    /**
+     * Deflate only looks back 32 KiB, so a larger dictionary would never be referenced.
+     */
+    static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+
+    /**
+     * Descriptions are sampled rather than counted exhaustively; frequent strings show up in any sample.
+     */
+    private static final int SAMPLE_SIZE = 50_000;
+
+    private BlockCompression() {
+    }
+
+    /**
+     * Builds a preset dictionary from dictionary-coded names and the most frequent descriptions,
+     * written in their encoded form. The most valuable strings go last, where back-references
+     * are shortest.
+     */
+    static byte[] buildDictionary(Snapshot snapshot, List<String> codedValues) {
+        Map<String, Integer> frequency = new HashMap<>();
+        List<Transaction> transactions = snapshot.getTransactions();
+        int step = Math.max(1, transactions.size() / SAMPLE_SIZE);
+        for (int i = 0; i < transactions.size(); i += step) {
+            String description = transactions.get(i).getDescription();
+            if (description != null) {
+                frequency.merge(description, 1, Integer::sum);
+            }
+        }
+        for (Loan loan : snapshot.getLoans()) {
+            if (loan.getDescription() != null) {
+                frequency.merge(loan.getDescription(), 1, Integer::sum);
+            }
+        }
+        for (String value : codedValues) {
+            frequency.merge(value, 1, Integer::sum);
+        }
+
+        Set<String> coded = new HashSet<>(codedValues);
+        List<Map.Entry<String, Integer>> candidates = new ArrayList<>(frequency.entrySet());
+        candidates.removeIf(entry -> entry.getValue() < 2 && !coded.contains(entry.getKey()));
+        candidates.sort((a, b) -> Long.compare(score(b), score(a)));
+
+        List<byte[]> chosen = new ArrayList<>();
+        int size = 0;
+        for (Map.Entry<String, Integer> candidate : candidates) {
+            byte[] encoded = encode(candidate.getKey());
+            if (size + encoded.length > MAX_DICTIONARY_SIZE) {
+                continue;
+            }
+            chosen.add(encoded);
+            size += encoded.length;
+        }
+
+        ByteBuffer dictionary = ByteBuffer.allocate(size);
+        for (int i = chosen.size() - 1; i >= 0; i--) {
+            dictionary.put(chosen.get(i));
+        }
+        return dictionary.array();
+    }
+
+    static byte[] compress(byte[] raw, byte[] dictionary) {
+        int count = (raw.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        byte[][] blocks = new byte[count][];
+        IntStream.range(0, count).parallel().forEach(i -> {
+            int start = i * BLOCK_SIZE;
+            int length = Math.min(BLOCK_SIZE, raw.length - start);
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                if (dictionary.length > 0) {
+                    deflater.setDictionary(dictionary);
+                }
+                deflater.setInput(raw, start, length);
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(length / 2 + 64);
+                byte[] buffer = new byte[16 * 1024];
+                while (!deflater.finished()) {
+                    out.write(buffer, 0, deflater.deflate(buffer));
+                }
+                blocks[i] = out.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        });
+
+        int total = 2 * Integer.BYTES + count * Integer.BYTES;
+        for (byte[] block : blocks) {
+            total += block.length;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(total);
+        payload.putInt(raw.length);
+        payload.putInt(count);
+        for (byte[] block : blocks) {
+            payload.putInt(block.length);
+        }
+        for (byte[] block : blocks) {
+            payload.put(block);
+        }
+        return payload.array();
+    }
+
+    static byte[] decompress(ByteBuffer payload, byte[] dictionary) {
+        byte[] raw = new byte[payload.getInt()];
+        int count = payload.getInt();
+        int[] offsets = new int[count + 1];
+        offsets[0] = payload.position() + count * Integer.BYTES;
+        for (int i = 0; i < count; i++) {
+            offsets[i + 1] = offsets[i] + payload.getInt();
+        }
+
+        byte[] source = payload.array();
+        int base = payload.arrayOffset();
+        IntStream.range(0, count).parallel().forEach(i -> {
+            int start = i * BLOCK_SIZE;
+            int length = Math.min(BLOCK_SIZE, raw.length - start);
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(source, base + offsets[i], offsets[i + 1] - offsets[i]);
+                int read = 0;
+                while (read < length) {
+                    int n = inflater.inflate(raw, start + read, length - read);
+                    if (n == 0) {
+                        if (inflater.needsDictionary()) {
+                            inflater.setDictionary(dictionary);
+                        } else if (inflater.finished() || inflater.needsInput()) {
+                            break;
+                        }
+                    }
+                    read += n;
+                }
+                if (read != length) {
+                    throw new DataAccessException("snapshot read", "compressed block " + i + " is truncated");
+                }
+            } catch (DataFormatException e) {
+                throw new DataAccessException("snapshot read", "compressed block " + i + " is corrupted", e);
+            } finally {
+                inflater.end();
+            }
+        });
+        return raw;
+    }
+
+    /**
+     * @return the raw length recorded in a compressed payload, without decompressing it.
+     */
+    static int rawLength(ByteBuffer payload) {
+        return payload.getInt(payload.position());
+    }
+
+    private static long score(Map.Entry<String, Integer> entry) {
+        return (long) entry.getValue() * entry.getKey().length();
+    }
+
+    private static byte[] encode(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(Integer.BYTES + bytes.length).putInt(bytes.length).put(bytes).array();
+    }
+}
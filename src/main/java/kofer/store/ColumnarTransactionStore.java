@@ -0,0 +1,353 @@
+package kofer.store;
+
+import kofer.exception.DataAccessException;
+import kofer.model.Transaction;
+import kofer.util.SymbolTable;
+import kofer.util.TransactionType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.UUID;
+
+/**
+ * Keeps transactions off the Java heap in direct-buffer columns, one value per record
+ * in each column: id (two longs), epoch day, amount in cents, type, category id and the
+ * offset of the description in an off-heap string area. A record costs 41 bytes plus its
+ * description, and the garbage collector never has to trace it.
+ *
+ * Cursors and {@link #total} read the columns directly; a {@link Transaction} is only
+ * created by {@link TransactionCursor#materialize()} or {@link #get(int)}.
+ * Date ranges are looked up in a {@link DateIndex}, taken from the snapshot when it saved one
+ * and built on first use otherwise.
+ * Persistence is handled by the owning {@link DataStore} through the snapshot and journal,
+ * which streams a snapshot straight into the columns on load.
+ */
+public class ColumnarTransactionStore implements TransactionStore {
+    private static final TransactionType[] TYPES = TransactionType.values();
+    private static final long NO_DESCRIPTION = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+    // Largest direct buffer the JVM reliably allocates; bounds the description area and every column
+    private static final int MAX_BUFFER_BYTES = Integer.MAX_VALUE - 8;
+    private static final String USE_MAPPED = "; set KOFER_STORAGE=mapped for larger ledgers";
+
+    private ByteBuffer idMsb;
+    private ByteBuffer idLsb;
+    private ByteBuffer epochDays;
+    private ByteBuffer amounts;
+    private ByteBuffer types;
+    private ByteBuffer categories;
+    private ByteBuffer descriptionOffsets;
+    private ByteBuffer descriptions;
+
+    private int size;
+    private int capacity;
+
+    private final DateIndex dateIndex = new DateIndex(position -> epochDays.getInt(position * Integer.BYTES));
+
+    public ColumnarTransactionStore() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public ColumnarTransactionStore(int initialCapacity) {
+        capacity = Math.max(initialCapacity, 16);
+        idMsb = ByteBuffer.allocateDirect(capacity * Long.BYTES);
+        idLsb = ByteBuffer.allocateDirect(capacity * Long.BYTES);
+        epochDays = ByteBuffer.allocateDirect(capacity * Integer.BYTES);
+        amounts = ByteBuffer.allocateDirect(capacity * Long.BYTES);
+        types = ByteBuffer.allocateDirect(capacity);
+        categories = ByteBuffer.allocateDirect(capacity * Integer.BYTES);
+        descriptionOffsets = ByteBuffer.allocateDirect(capacity * Long.BYTES);
+        descriptions = ByteBuffer.allocateDirect(capacity * 16);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Transaction get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return new Transaction(
+                new UUID(idMsb.getLong(index * Long.BYTES), idLsb.getLong(index * Long.BYTES)).toString(),
+                LocalDate.ofEpochDay(epochDays.getInt(index * Integer.BYTES)),
+                amounts.getLong(index * Long.BYTES),
+                TYPES[types.get(index)],
+                categories.getInt(index * Integer.BYTES),
+                description(index));
+    }
+
+    @Override
+    public void append(Transaction transaction) {
+        UUID id = UUID.fromString(transaction.getId());
+        append(id.getMostSignificantBits(), id.getLeastSignificantBits(),
+                Math.toIntExact(transaction.getDate().toEpochDay()), transaction.getAmountCents(),
+                transaction.getType(), transaction.getCategoryId(), transaction.getDescription());
+    }
+
+    /**
+     * Appends a record from its encoded fields, as decoded by {@link SnapshotReader},
+     * without creating a {@link Transaction}.
+     */
+    void append(long msb, long lsb, int epochDay, long amountCents, TransactionType type,
+                int categoryId, String description) {
+        if (size == capacity) {
+            grow();
+        }
+        int index = size;
+        idMsb.putLong(index * Long.BYTES, msb);
+        idLsb.putLong(index * Long.BYTES, lsb);
+        epochDays.putInt(index * Integer.BYTES, epochDay);
+        amounts.putLong(index * Long.BYTES, amountCents);
+        types.put(index, (byte) type.ordinal());
+        categories.putInt(index * Integer.BYTES, categoryId);
+        descriptionOffsets.putLong(index * Long.BYTES, appendDescription(description));
+        size++;
+    }
+
+    @Override
+    public TransactionCursor cursor() {
+        return new ColumnCursor(0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public TransactionCursor slice(int start, int end) {
+        return new ColumnCursor(start, end);
+    }
+
+    /**
+     * Finds the range in the date index by binary search and visits only the records within it,
+     * sorted back into position order. An unbounded range is scanned in position order directly.
+     */
+    @Override
+    public TransactionCursor cursor(int fromEpochDay, int toEpochDay) {
+        if (fromEpochDay == Integer.MIN_VALUE && toEpochDay == Integer.MAX_VALUE) {
+            return cursor();
+        }
+        dateIndex.refresh(size);
+        return new ColumnCursor(dateIndex.positions(fromEpochDay, toEpochDay));
+    }
+
+    /**
+     * Walks the range of the date index backwards; the index orders records of one day by position.
+     */
+    @Override
+    public TransactionCursor newestFirst(int fromEpochDay, int toEpochDay) {
+        dateIndex.refresh(size);
+        return new ColumnCursor(dateIndex, dateIndex.lowerBound(fromEpochDay), dateIndex.upperBound(toEpochDay));
+    }
+
+    @Override
+    public int[] dateOrder() {
+        dateIndex.refresh(size);
+        return dateIndex.positions();
+    }
+
+    @Override
+    public void restoreDateOrder(int[] positions) {
+        dateIndex.restore(positions);
+    }
+
+    @Override
+    public long total(TransactionType type, int fromEpochDay, int toEpochDay) {
+        byte wanted = (byte) type.ordinal();
+        long total = 0;
+        if (fromEpochDay == Integer.MIN_VALUE && toEpochDay == Integer.MAX_VALUE) {
+            for (int i = 0; i < size; i++) {
+                if (types.get(i) == wanted) {
+                    total += amounts.getLong(i * Long.BYTES);
+                }
+            }
+            return total;
+        }
+
+        dateIndex.refresh(size);
+        int to = dateIndex.upperBound(toEpochDay);
+        for (int i = dateIndex.lowerBound(fromEpochDay); i < to; i++) {
+            int position = dateIndex.position(i);
+            if (types.get(position) == wanted) {
+                total += amounts.getLong(position * Long.BYTES);
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public List<Transaction> asList() {
+        return new TransactionList();
+    }
+
+    @Override
+    public boolean isSelfPersisting() {
+        return false;
+    }
+
+    /**
+     * @return the number of bytes held off-heap, including unused capacity.
+     */
+    public long getOffHeapBytes() {
+        return idMsb.capacity() + (long) idLsb.capacity() + epochDays.capacity() + amounts.capacity()
+                + types.capacity() + categories.capacity() + descriptionOffsets.capacity() + descriptions.capacity();
+    }
+
+    private String description(int index) {
+        long offset = descriptionOffsets.getLong(index * Long.BYTES);
+        if (offset == NO_DESCRIPTION) {
+            return null;
+        }
+        int position = (int) offset;
+        byte[] bytes = new byte[descriptions.getInt(position)];
+        descriptions.get(position + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private long appendDescription(String description) {
+        if (description == null) {
+            return NO_DESCRIPTION;
+        }
+        byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+        int needed = Integer.BYTES + bytes.length;
+        if (descriptions.remaining() < needed) {
+            long required = (long) descriptions.position() + needed;
+            if (required > MAX_BUFFER_BYTES) {
+                throw new DataAccessException("columnar append",
+                        "descriptions exceed the " + MAX_BUFFER_BYTES + " bytes the columnar store can hold" + USE_MAPPED);
+            }
+            long grown = Math.max(required, (long) descriptions.capacity() * 2);
+            descriptions = copy(descriptions, (int) Math.min(grown, MAX_BUFFER_BYTES), descriptions.position());
+        }
+        long offset = descriptions.position();
+        descriptions.putInt(bytes.length).put(bytes);
+        return offset;
+    }
+
+    private void grow() {
+        int grown = (int) Math.min((long) capacity * 2, MAX_BUFFER_BYTES / Long.BYTES);
+        if (grown == capacity) {
+            throw new DataAccessException("columnar append",
+                    "the columnar store holds at most " + capacity + " transactions" + USE_MAPPED);
+        }
+        idMsb = copy(idMsb, grown * Long.BYTES, size * Long.BYTES);
+        idLsb = copy(idLsb, grown * Long.BYTES, size * Long.BYTES);
+        epochDays = copy(epochDays, grown * Integer.BYTES, size * Integer.BYTES);
+        amounts = copy(amounts, grown * Long.BYTES, size * Long.BYTES);
+        types = copy(types, grown, size);
+        categories = copy(categories, grown * Integer.BYTES, size * Integer.BYTES);
+        descriptionOffsets = copy(descriptionOffsets, grown * Long.BYTES, size * Long.BYTES);
+        capacity = grown;
+    }
+
+    /**
+     * Moves the first {@code used} bytes into a new direct buffer positioned after them.
+     * The old buffer's memory is released once it is collected.
+     */
+    private static ByteBuffer copy(ByteBuffer source, int newCapacity, int used) {
+        ByteBuffer target = ByteBuffer.allocateDirect(newCapacity);
+        target.put(0, source, 0, used);
+        target.position(used);
+        return target;
+    }
+
+    /**
+     * Walks positions {@code [from, to)} of the columns, a given array of positions, or the entries
+     * {@code [from, to)} of a date index backwards, in reverse date order.
+     */
+    private class ColumnCursor implements TransactionCursor {
+        private final DateIndex index;
+        private final int[] positions;
+        private final int from;
+        private final int to;
+        private int next;
+        private int position = -1;
+
+        ColumnCursor(int from, int to) {
+            this(null, null, from, to);
+        }
+
+        ColumnCursor(int[] positions) {
+            this(null, positions, 0, positions.length);
+        }
+
+        ColumnCursor(DateIndex index, int from, int to) {
+            this(index, null, from, to);
+        }
+
+        private ColumnCursor(DateIndex index, int[] positions, int from, int to) {
+            this.index = index;
+            this.positions = positions;
+            this.from = from;
+            this.to = to;
+            this.next = index != null ? to - 1 : from;
+        }
+
+        @Override
+        public boolean next() {
+            if (index != null) {
+                if (next < from) {
+                    return false;
+                }
+                position = index.position(next--);
+                return true;
+            }
+            if (next >= to || (positions == null && next >= size)) {
+                return false;
+            }
+            position = positions == null ? next : positions[next];
+            next++;
+            return true;
+        }
+
+        @Override
+        public int position() {
+            return position;
+        }
+
+        @Override
+        public int epochDay() {
+            return epochDays.getInt(position * Integer.BYTES);
+        }
+
+        @Override
+        public long amountCents() {
+            return amounts.getLong(position * Long.BYTES);
+        }
+
+        @Override
+        public TransactionType type() {
+            return TYPES[types.get(position)];
+        }
+
+        @Override
+        public String category() {
+            return SymbolTable.CATEGORIES.name(categoryId());
+        }
+
+        @Override
+        public int categoryId() {
+            return categories.getInt(position * Integer.BYTES);
+        }
+
+        @Override
+        public Transaction materialize() {
+            return get(position);
+        }
+    }
+
+    private class TransactionList extends AbstractList<Transaction> implements RandomAccess {
+        @Override
+        public Transaction get(int index) {
+            return ColumnarTransactionStore.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
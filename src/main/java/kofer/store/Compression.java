@@ -0,0 +1,33 @@
+package kofer.store;
+
+import kofer.exception.ValidationException;
+
+/**
+ * Selects whether snapshot sections are compressed when they are written.
+ * Configured with the {@code kofer.compression} system property or the {@code KOFER_COMPRESSION}
+ * environment variable; defaults to {@link #NONE}. Readers handle both forms regardless of the setting.
+ */
+public enum Compression {
+    /**
+     * Sections are stored as encoded.
+     */
+    NONE,
+
+    /**
+     * Sections are stored as independently deflated blocks sharing a preset dictionary
+     * built from the ledger's most frequent strings.
+     */
+    DEFLATE;
+
+    public static Compression configured() {
+        String value = System.getProperty("kofer.compression", System.getenv("KOFER_COMPRESSION"));
+        if (value == null || value.isBlank()) {
+            return NONE;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("compression", value, "none or deflate");
+        }
+    }
+}
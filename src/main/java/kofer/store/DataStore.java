@@ -1,77 +1,739 @@
 package kofer.store;
 
+import kofer.exception.DataAccessException;
 import kofer.exception.KoferException;
+import kofer.exception.ValidationException;
 import kofer.model.Loan;
+import kofer.model.Repayment;
 import kofer.model.Transaction;
+import kofer.util.KeySession;
+import kofer.util.SymbolTable;
+import kofer.util.TransactionType;
 
+import javax.crypto.SecretKey;
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * The DataStore class provides a centralized storage for managing
  * financial data such as transactions and loans. It includes the
- * functionality to persist and retrieve data using standard serialization.
+ * functionality to persist and retrieve data in the compact binary
+ * snapshot format written by {@link SnapshotWriter}.
+ * Individual mutations are appended to a {@link Journal} next to the snapshot
+ * and are folded into a new snapshot every {@link #CHECKPOINT_INTERVAL} records.
+ * A {@code kofer.dat} file from earlier versions is migrated once on first load.
+ * Depending on the configured {@link StorageMode}, transactions are kept on the heap,
+ * in off-heap columns, or left in memory-mapped segment files under {@link #APP_SEGMENT_DIR}.
+ * When {@link #PASSPHRASE_ENV} is set, the snapshot is stored in an {@link EncryptedContainer}
+ * and journal records are sealed under the container's key, so a mutation still costs one
+ * record and the snapshot is only re-encrypted at checkpoints.
+ * Snapshot sections are block-compressed when {@link Compression#configured()} asks for it.
+ * Loans are indexed by id and by lender as they are loaded and added.
+ * {@link Aggregates} over the whole store are kept up to date on every mutation and saved
+ * with each snapshot, so unbounded totals need no scan. A {@link RollupCube} of daily and
+ * monthly totals per category is maintained and saved the same way for period reports.
+ * A {@link SearchIndex} over transaction descriptions and categories is extended as records
+ * are added and saved with the snapshot for {@link #searchTransactions(SearchQuery)}, and the
+ * store's date order is saved with it so that date ranges need no sort after a load.
+ * A store opened with a read-only {@link Access} writes nothing, not even the migrations and
+ * rebuilds a load would otherwise save, and reads only the snapshot sections it needs.
  */
-public class DataStore implements Serializable {
-    public static final String APP_DATA_FILE = System.getProperty("user.home") + "/.kofer/kofer.dat";
+public class DataStore {
+    public static final String APP_DATA_DIR = System.getProperty("user.home") + "/.kofer";
+    public static final String APP_DATA_FILE = APP_DATA_DIR + "/kofer.db";
+    public static final String APP_JOURNAL_FILE = APP_DATA_DIR + "/" + Journal.JOURNAL_FILE_NAME;
+    public static final String LEGACY_DATA_FILE = APP_DATA_DIR + "/kofer.dat";
+    public static final String APP_SEGMENT_DIR = APP_DATA_DIR + "/segments";
 
-    private final List<Transaction> transactions;
+    /**
+     * Environment variable holding the passphrase that enables encryption at rest.
+     */
+    public static final String PASSPHRASE_ENV = "KOFER_PASSPHRASE";
+
+    /**
+     * Number of journal records after which the journal is folded into a new snapshot.
+     */
+    public static final int CHECKPOINT_INTERVAL = 1000;
+
+    /**
+     * In group-commit mode, pending mutations are made durable once this many have accumulated...
+     */
+    public static final int GROUP_COMMIT_MAX_PENDING = 512;
+
+    /**
+     * ...or once the oldest pending mutation is this old, checked on the next mutation.
+     */
+    public static final long GROUP_COMMIT_MAX_DELAY_MS = 200;
+
+    /**
+     * What a store is opened for, which decides what it reads and whether it may write.
+     */
+    public enum Access {
+        /**
+         * Every record, the search index, and changes.
+         */
+        READ_WRITE,
+        /**
+         * Every record, without the search index; nothing is written.
+         */
+        READ_ONLY,
+        /**
+         * Loans and the stored totals only; transactions are not read, so the store appears to
+         * hold none. Nothing is written.
+         */
+        LOANS_ONLY
+    }
+
+    private final Access access;
+
+    private TransactionStore transactions;
     private final List<Loan> loans;
 
+    // Indexes over loans, kept in step with the list: by id, and by case-insensitive lender group
+    private final Map<String, Loan> loansById = new HashMap<>();
+    private final Map<Integer, List<Loan>> loansByLender = new HashMap<>();
+
+    private Aggregates aggregates;
+    private RollupCube rollup;
+
+    // Covers the store positions below its document count; records past it are indexed before a search
+    private SearchIndex searchIndex;
+
+    private final int parallelThreshold = ParallelScan.configuredThreshold();
+
+    // Sequence number of the last journal record contained in the snapshot on disk
+    private long journalSequence;
+
+    private final Journal journal;
+
+    // Null unless encryption at rest is enabled
+    private final EncryptedContainer container;
+    private KeySession keySession;
+
+    private final Compression compression;
+
+    private boolean groupCommit;
+    private int pendingMutations;
+    private long firstPendingAt;
+    private Thread commitOnExit;
+
     public DataStore() throws KoferException {
+        this(Access.READ_WRITE);
+    }
+
+    public DataStore(Access access) throws KoferException {
+        this.access = access;
+        this.compression = Compression.configured();
+        String passphrase = System.getenv(PASSPHRASE_ENV);
+        this.container = passphrase == null || passphrase.isEmpty()
+                ? null
+                : new EncryptedContainer(Path.of(APP_DATA_FILE), this::keySession);
+
         try {
+            StorageMode mode = StorageMode.configured();
+            this.transactions = mode == StorageMode.COLUMNAR
+                    ? new ColumnarTransactionStore()
+                    : new HeapTransactionStore(new ArrayList<>());
+
             File file = new File(APP_DATA_FILE);
-            if (file.exists()) {
-                DataStore loadedData = loadData();
+            File legacyFile = new File(LEGACY_DATA_FILE);
+            if (file.exists() || legacyFile.exists()) {
+                boolean encryptedOnDisk = EncryptedContainer.isEncrypted(file.toPath());
+                Snapshot snapshot = file.exists()
+                        ? readSnapshot(encryptedOnDisk, transactions)
+                        : new LegacySnapshotReader().read(legacyFile);
+
+                // Snapshots stream their transactions into the store; only legacy ones return them
+                snapshot.getTransactions().forEach(transactions::append);
+                if (snapshot.getDateOrder() != null) {
+                    transactions.restoreDateOrder(snapshot.getDateOrder());
+                }
+                this.loans = snapshot.getLoans();
+                loans.forEach(this::indexLoan);
+                this.aggregates = snapshot.getAggregates() != null
+                        ? snapshot.getAggregates()
+                        : Aggregates.of(aggregate(Aggregates.engine(), null, null));
+                this.rollup = snapshot.getRollup() != null ? snapshot.getRollup() : new RollupCube();
+                this.searchIndex = snapshot.getSearchIndex() != null ? snapshot.getSearchIndex() : new SearchIndex();
+                this.journalSequence = snapshot.getJournalSequence();
+                this.journal = openJournal(journalSequence);
+
+                replayJournal();
 
-                if (loadedData == null) {
-                    throw new Exception("Failed to load data store");
+                if (!file.exists()) {
+                    if (!isReadOnly()) {
+                        migrateLegacyData(legacyFile);
+                    }
+                } else if (container != null && (!encryptedOnDisk || journal.getPlaintextCount() > 0)) {
+                    // Encrypt a plaintext store and fold any plaintext journal records into it
+                    checkpoint();
                 }
-                this.transactions = loadedData.transactions;
-                this.loans = loadedData.loans;
             } else {
-                System.out.println("No data store found. Creating new one.");
+                if (!isReadOnly()) {
+                    System.out.println("No data store found. Creating new one.");
+                }
 
-                this.transactions = new ArrayList<>();
                 this.loans = new ArrayList<>();
+                this.aggregates = new Aggregates();
+                this.rollup = new RollupCube();
+                this.searchIndex = new SearchIndex();
+                this.journal = openJournal(0);
+
+                checkpoint();
+            }
 
-                saveData();
+            if (access == Access.LOANS_ONLY) {
+                return;
+            }
+            applyStorageMode(mode);
+
+            if (searchIndex.getDocumentCount() > transactions.size()) {
+                // Written for records that are no longer there; rebuilt on the next search
+                searchIndex = new SearchIndex();
+            }
+            if (rollup.getTransactionCount() != transactions.size()) {
+                // The snapshot predates the rollup, or a crash kept a mapped record but lost its rollup delta
+                rollup = RollupCube.of(transactions.cursor());
+                checkpoint();
             }
         } catch (Exception e) {
             throw new KoferException("Failed to load data store: " + e.getMessage(), e);
         }
     }
 
-    public static DataStore loadData() throws KoferException {
-        File file = new File(APP_DATA_FILE);
-        if (!file.exists()) {
-            return null;
+    public static Snapshot loadData() throws KoferException {
+        return loadData(null);
+    }
+
+    /**
+     * Loads the snapshot, appending its transactions to {@code target} unless it is null.
+     */
+    public static Snapshot loadData(TransactionStore target) throws KoferException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(APP_DATA_FILE), 1 << 16)) {
+            return new SnapshotReader(in).read(target);
+        } catch (KoferException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new KoferException("Failed to load data store: " + e.getMessage(), e);
         }
+    }
 
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-            Object loaded = ois.readObject();
-            if (!(loaded instanceof DataStore)) {
-                throw new KoferException("Corrupted data store: invalid format");
+    /**
+     * Reads the aggregates at the start of the data file without loading the store, for
+     * commands that only report totals. Only the first few bytes are read, or with encryption
+     * only the first chunk is decrypted. Records in the journal are deltas to those totals and
+     * are folded in as they are replayed, without decoding the snapshot's records.
+     *
+     * @return the aggregates, or null if they may not describe the store: the file is missing
+     * or has none, transactions live in segment files, the journal changes a loan whose state
+     * only the snapshot knows, or the file is encrypted and {@link #PASSPHRASE_ENV} is not set.
+     * Callers then load the store as usual.
+     */
+    public static Aggregates readSummaryHeader() throws KoferException {
+        Path dataFile = Path.of(APP_DATA_FILE);
+        try {
+            if (!Files.isRegularFile(dataFile) || MappedTransactionStore.exists(Path.of(APP_SEGMENT_DIR))) {
+                return null;
+            }
+            if (!EncryptedContainer.isEncrypted(dataFile)) {
+                try (InputStream in = new BufferedInputStream(Files.newInputStream(dataFile), 512)) {
+                    return foldJournal(new SnapshotReader(in).readSummary(), null);
+                }
+            }
+            String passphrase = System.getenv(PASSPHRASE_ENV);
+            if (passphrase == null || passphrase.isEmpty()) {
+                return null;
+            }
+            try (KeySession session = KeySession.unlock(passphrase)) {
+                EncryptedContainer container = new EncryptedContainer(dataFile, () -> session);
+                byte[] start = container.readFirstChunk();
+                return foldJournal(new SnapshotReader(new ByteArrayInputStream(start)).readSummary(), container::key);
             }
-            return (DataStore) loaded;
+        } catch (KoferException e) {
+            throw e;
         } catch (Exception e) {
-            throw new KoferException("Failed to load data store: " + e.getMessage(), e);
+            throw new KoferException("Failed to read data store header: " + e.getMessage(), e);
         }
     }
 
-    public void saveData() throws KoferException {
-        File file = new File(APP_DATA_FILE);
+    /**
+     * Adds the records of the journal that the header's snapshot does not contain to its aggregates.
+     *
+     * @param key the key journal records are sealed with, or null if they are not.
+     * @return the aggregates, or null if they are missing or a journal record cannot be folded in.
+     */
+    private static Aggregates foldJournal(Snapshot header, Supplier<SecretKey> key) {
+        if (header.getAggregates() == null) {
+            return null;
+        }
+        SummaryReplayer replayer = new SummaryReplayer(header.getAggregates());
+        new Journal(Path.of(APP_JOURNAL_FILE), header.getJournalSequence(), true, key)
+                .replay(header.getJournalSequence(), replayer);
+        return replayer.complete ? header.getAggregates() : null;
+    }
+
+    /**
+     * Applies journal records to aggregates alone. A loan added in the journal is kept so that
+     * its repayments and closure can be applied too; a change to any other loan depends on state
+     * only the snapshot holds and marks the result incomplete.
+     */
+    private static final class SummaryReplayer implements Journal.Replayer {
+        private final Aggregates aggregates;
+        private final Map<String, Loan> journaledLoans = new HashMap<>();
+        private boolean complete = true;
 
-        if (!file.getParentFile().exists()) {
-            file.getParentFile().mkdirs();
+        SummaryReplayer(Aggregates aggregates) {
+            this.aggregates = aggregates;
         }
 
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(file))) {
-            oos.writeObject(this);
+        @Override
+        public void transactionAdded(Transaction transaction) {
+            aggregates.addTransaction(transaction.getType(), transaction.getAmountCents());
+        }
+
+        @Override
+        public void loanAdded(Loan loan) {
+            journaledLoans.put(loan.getId(), loan);
+            aggregates.addLoan(loan);
+        }
+
+        @Override
+        public void repaymentAdded(String loanId, Repayment repayment) {
+            changeLoan(loanId, loan -> loan.addRepayment(repayment));
+        }
+
+        @Override
+        public void loanClosed(String loanId) {
+            changeLoan(loanId, Loan::markClosed);
+        }
+
+        @Override
+        public void rollupDelta(LocalDate date, String category, TransactionType type, long amountCents) {
+            // Only written in mapped mode, whose totals are read from the segment headers instead
+            complete = false;
+        }
+
+        private void changeLoan(String loanId, Consumer<Loan> change) {
+            Loan loan = journaledLoans.get(loanId);
+            if (loan == null) {
+                complete = false;
+                return;
+            }
+            aggregates.removeLoan(loan);
+            change.accept(loan);
+            aggregates.addLoan(loan);
+        }
+    }
+
+    private Snapshot readSnapshot(boolean encrypted, TransactionStore target) throws IOException {
+        if (!encrypted) {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(APP_DATA_FILE), 1 << 16)) {
+                return snapshotReader(in).read(target);
+            }
+        }
+        if (container == null) {
+            throw new KoferException("The data store is encrypted. Set " + PASSPHRASE_ENV + " to unlock it.");
+        }
+        if (isReadOnly()) {
+            // Nothing will be written back, so only the chunks of the sections read are decrypted
+            try (InputStream in = new BufferedInputStream(container.openStream(), 1 << 16)) {
+                return snapshotReader(in).read(target);
+            }
+        }
+        return snapshotReader(new ByteArrayInputStream(container.read())).read(target);
+    }
+
+    /**
+     * @return a reader that leaves out the snapshot sections this store's access does not use.
+     */
+    private SnapshotReader snapshotReader(InputStream in) {
+        SnapshotReader reader = new SnapshotReader(in);
+        return switch (access) {
+            case READ_WRITE -> reader;
+            // Searches open the store for writing, so that an index they had to catch up is saved
+            case READ_ONLY -> reader.skip(SnapshotFormat.SECTION_SEARCH_INDEX);
+            case LOANS_ONLY -> reader.skip(SnapshotFormat.SECTION_TRANSACTIONS, SnapshotFormat.SECTION_ROLLUP,
+                    SnapshotFormat.SECTION_SEARCH_INDEX, SnapshotFormat.SECTION_DATE_INDEX);
+        };
+    }
+
+    private boolean isReadOnly() {
+        return access != Access.READ_WRITE;
+    }
+
+    private void requireWritable() {
+        if (isReadOnly()) {
+            throw new DataAccessException("write", "the data store was opened read-only");
+        }
+    }
+
+    /**
+     * Opens the journal, sealing its records when encryption at rest is enabled.
+     */
+    private Journal openJournal(long lastSequence) {
+        return new Journal(Path.of(APP_JOURNAL_FILE), lastSequence, isReadOnly(),
+                container == null ? null : container::key);
+    }
+
+    /**
+     * Returns the session used to derive the encryption key, unlocking it again from
+     * {@link #PASSPHRASE_ENV} if it expired while the store was idle.
+     */
+    private synchronized KeySession keySession() {
+        if (keySession == null || keySession.isExpired()) {
+            keySession = KeySession.unlock(System.getenv(PASSPHRASE_ENV));
+        }
+        return keySession;
+    }
+
+    /**
+     * Writes the full snapshot to disk. Prefer {@link #checkpoint()} which also
+     * resets the journal; this method only rewrites the snapshot file.
+     * The file is replaced atomically, so a crash never leaves a partial snapshot behind.
+     */
+    public void saveData() throws KoferException {
+        long sequence = journal.getLastSequence();
+        List<Transaction> snapshotTransactions = transactions.isSelfPersisting() ? List.of() : transactions.asList();
+        int[] dateOrder = transactions.isSelfPersisting() ? null : transactions.dateOrder();
+        Snapshot snapshot = new Snapshot(snapshotTransactions, loans, sequence, aggregates, rollup, searchIndex, dateOrder);
+        try {
+            if (container != null) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                new SnapshotWriter(bytes, compression).write(snapshot);
+                container.write(bytes.toByteArray());
+            } else {
+                AtomicFileWriter.write(Path.of(APP_DATA_FILE), out -> new SnapshotWriter(out, compression).write(snapshot));
+            }
         } catch (Exception e) {
             throw new KoferException("Failed to save data: " + e.getMessage(), e);
         }
+        journalSequence = sequence;
+    }
+
+    /**
+     * Describes the files backing this store: snapshot sections with their stored and
+     * decoded sizes, the pending journal and, in mapped mode, the segment files.
+     */
+    public StorageStats getStorageStats() throws KoferException {
+        Path dataFile = Path.of(APP_DATA_FILE);
+        if (!Files.exists(dataFile)) {
+            throw new KoferException("No data store found at " + dataFile);
+        }
+        boolean encrypted = container != null && EncryptedContainer.isEncrypted(dataFile);
+        try (InputStream in = encrypted
+                ? new ByteArrayInputStream(container.read())
+                : new BufferedInputStream(Files.newInputStream(dataFile), 1 << 16)) {
+            SnapshotReader reader = new SnapshotReader(in);
+            List<StorageStats.Section> sections = reader.inspect();
+
+            Path journalFile = Path.of(APP_JOURNAL_FILE);
+            long journalBytes = Files.exists(journalFile) ? Files.size(journalFile) : 0;
+            int partitions = transactions instanceof MappedTransactionStore mapped ? mapped.getPartitionCount() : 0;
+
+            return new StorageStats(Files.size(dataFile), encrypted, reader.getVersion(), compression, sections,
+                    journalBytes, journal.getEntryCount(), directorySize(Path.of(APP_SEGMENT_DIR)), partitions);
+        } catch (KoferException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new KoferException("Failed to read storage statistics: " + e.getMessage(), e);
+        }
+    }
+
+    private static long directorySize(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            long total = 0;
+            for (Path file : (Iterable<Path>) files::iterator) {
+                total += Files.size(file);
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Starts group-commit mode. Mutations are applied immediately but made durable
+     * together, with one journal write and one sync per group, once
+     * {@link #GROUP_COMMIT_MAX_PENDING} have accumulated, once the oldest is older than
+     * {@link #GROUP_COMMIT_MAX_DELAY_MS}, on {@link #commit()}, on {@link #endGroupCommit()},
+     * or when the JVM shuts down.
+     */
+    public void beginGroupCommit() {
+        if (groupCommit) {
+            return;
+        }
+        groupCommit = true;
+        journal.setGroupCommit(true);
+        transactions.setGroupCommit(true);
+
+        commitOnExit = new Thread(this::commit, "kofer-group-commit");
+        Runtime.getRuntime().addShutdownHook(commitOnExit);
+    }
+
+    /**
+     * Makes all pending mutations durable.
+     */
+    public synchronized void commit() {
+        // Mapped records become durable before the rollup deltas that count them
+        transactions.commit();
+        journal.commit();
+        pendingMutations = 0;
+    }
+
+    /**
+     * Commits pending mutations and returns to making every mutation durable on its own.
+     */
+    public void endGroupCommit() {
+        if (!groupCommit) {
+            return;
+        }
+        commit();
+        groupCommit = false;
+        journal.setGroupCommit(false);
+        transactions.setGroupCommit(false);
+
+        try {
+            Runtime.getRuntime().removeShutdownHook(commitOnExit);
+        } catch (IllegalStateException e) {
+            // Already shutting down; the hook commits anyway
+        }
+        commitOnExit = null;
+    }
+
+    private void afterMutation() {
+        if (groupCommit) {
+            long now = System.currentTimeMillis();
+            if (pendingMutations++ == 0) {
+                firstPendingAt = now;
+            }
+            if (pendingMutations >= GROUP_COMMIT_MAX_PENDING || now - firstPendingAt >= GROUP_COMMIT_MAX_DELAY_MS) {
+                commit();
+            }
+        } else if (transactions.isSelfPersisting()) {
+            commit();
+        }
+        checkpointIfNeeded();
+    }
+
+    /**
+     * Folds all journaled mutations into a fresh snapshot and empties the journal.
+     * The snapshot records the last journal sequence it contains, so a crash between
+     * the two steps only leaves records behind that are skipped on the next replay.
+     * A read-only store keeps what a checkpoint would save in memory.
+     */
+    public void checkpoint() throws KoferException {
+        if (isReadOnly()) {
+            return;
+        }
+        saveData();
+        journal.reset();
+    }
+
+    /**
+     * Checkpoints once the journal holds {@link #CHECKPOINT_INTERVAL} records, or a quarter of
+     * the store's size if that is larger, so that checkpoint cost stays proportional to the
+     * number of writes even while bulk imports grow the store.
+     */
+    private void checkpointIfNeeded() {
+        int threshold = Math.max(CHECKPOINT_INTERVAL, (transactions.size() + loans.size()) / 4);
+        if (journal.getEntryCount() >= threshold) {
+            checkpoint();
+        }
+    }
+
+    private void replayJournal() {
+        journal.replay(journalSequence, new Journal.Replayer() {
+            @Override
+            public void transactionAdded(Transaction transaction) {
+                transactions.append(transaction);
+                aggregateTransaction(transaction);
+                indexTransaction(transaction);
+            }
+
+            @Override
+            public void loanAdded(Loan loan) {
+                loans.add(loan);
+                indexLoan(loan);
+                aggregates.addLoan(loan);
+            }
+
+            @Override
+            public void repaymentAdded(String loanId, Repayment repayment) {
+                Loan loan = requireLoan(loanId);
+                changeLoan(loan, () -> loan.addRepayment(repayment));
+            }
+
+            @Override
+            public void loanClosed(String loanId) {
+                Loan loan = requireLoan(loanId);
+                changeLoan(loan, loan::markClosed);
+            }
+
+            @Override
+            public void rollupDelta(LocalDate date, String category, TransactionType type, long amountCents) {
+                rollup.add(SnapshotFormat.toEpochDay(date), SymbolTable.CATEGORIES.intern(category), type, amountCents);
+            }
+        });
+
+        checkpointIfNeeded();
+    }
+
+    /**
+     * Moves transactions between the heap and the segment files when the configured
+     * mode differs from where they currently live. Records already present in the
+     * target are skipped, so an interrupted conversion is completed on the next load.
+     * A read-only store converts nothing and reads the records from wherever they are.
+     */
+    private void applyStorageMode(StorageMode mode) {
+        Path segmentDir = Path.of(APP_SEGMENT_DIR);
+
+        if (mode == StorageMode.MAPPED && container != null) {
+            throw new ValidationException("storage mode", "mapped", "snapshot or columnar while " + PASSPHRASE_ENV + " is set");
+        }
+        if (isReadOnly()) {
+            if (MappedTransactionStore.exists(segmentDir)) {
+                if (mode == StorageMode.MAPPED && transactions.size() == 0) {
+                    this.transactions = new MappedTransactionStore(segmentDir);
+                } else {
+                    copyMissingTransactions(new MappedTransactionStore(segmentDir), transactions);
+                }
+                aggregates.computeTransactions(transactions);
+            }
+            return;
+        }
+
+        if (mode == StorageMode.MAPPED) {
+            MappedTransactionStore mapped = new MappedTransactionStore(segmentDir);
+            boolean converting = transactions.size() > 0;
+            copyMissingTransactions(transactions, mapped);
+            this.transactions = mapped;
+            if (converting) {
+                // Records take new positions in the partitions
+                searchIndex = new SearchIndex();
+            }
+            // The journal carries only the rollup of mapped records, so the snapshot's totals may not cover them
+            aggregates.computeTransactions(mapped);
+            if (converting) {
+                checkpoint();
+            }
+        } else if (MappedTransactionStore.exists(segmentDir)) {
+            copyMissingTransactions(new MappedTransactionStore(segmentDir), transactions);
+            aggregates.computeTransactions(transactions);
+            searchIndex = new SearchIndex();
+            checkpoint();
+            MappedTransactionStore.delete(segmentDir);
+        }
+    }
+
+    private static void copyMissingTransactions(TransactionStore source, TransactionStore target) {
+        if (source.size() == 0) {
+            return;
+        }
+        Set<String> present = new HashSet<>();
+        TransactionCursor existing = target.cursor();
+        while (existing.next()) {
+            present.add(existing.materialize().getId());
+        }
+
+        target.setGroupCommit(true);
+        TransactionCursor cursor = source.cursor();
+        while (cursor.next()) {
+            Transaction transaction = cursor.materialize();
+            if (!present.contains(transaction.getId())) {
+                target.append(transaction);
+            }
+        }
+        target.setGroupCommit(false);
+    }
+
+    /**
+     * Writes the legacy contents in the new format and keeps the old file aside
+     * as {@code kofer.dat.migrated} so the migration runs exactly once.
+     */
+    private void migrateLegacyData(File legacyFile) {
+        checkpoint();
+
+        File migrated = new File(legacyFile.getPath() + ".migrated");
+        if (!legacyFile.renameTo(migrated)) {
+            throw new KoferException("Migrated legacy data but could not rename " + legacyFile);
+        }
+        System.out.println("Migrated data store to the binary format. Previous file kept as " + migrated.getName() + ".");
+    }
+
+    private Loan requireLoan(String loanId) {
+        Loan loan = loansById.get(loanId);
+        if (loan == null) {
+            throw new KoferException("Journal references unknown loan: " + loanId);
+        }
+        return loan;
+    }
+
+    /**
+     * Applies a change to a loan, moving the loan's contribution to the aggregates from its
+     * old state to its new one. A change that throws leaves the aggregates as they were.
+     */
+    private void changeLoan(Loan loan, Runnable change) {
+        aggregates.removeLoan(loan);
+        try {
+            change.run();
+        } finally {
+            aggregates.addLoan(loan);
+        }
+    }
+
+    private void aggregateTransaction(Transaction transaction) {
+        aggregates.addTransaction(transaction.getType(), transaction.getAmountCents());
+        rollup.add(SnapshotFormat.toEpochDay(transaction.getDate()), transaction.getCategoryId(),
+                transaction.getType(), transaction.getAmountCents());
+    }
+
+    /**
+     * Adds a just appended transaction to the search index if the index is caught up with the
+     * store. In mapped mode a record dated into an older partition moves every later one up by
+     * a position, which invalidates the index.
+     */
+    private void indexTransaction(Transaction transaction) {
+        int position = transactions.size() - 1;
+        if (transactions.isSelfPersisting() && searchIndex.getDocumentCount() > 0
+                && !transactions.get(position).getId().equals(transaction.getId())) {
+            searchIndex = new SearchIndex();
+        } else if (searchIndex.getDocumentCount() == position) {
+            searchIndex.add(position, transaction.getCategory(), transaction.getDescription());
+        }
+    }
+
+    /**
+     * Indexes the records the search index does not cover yet.
+     *
+     * @return the number of records indexed.
+     */
+    private int catchUpSearchIndex() {
+        int start = searchIndex.getDocumentCount();
+        TransactionCursor cursor = transactions.slice(start, transactions.size());
+        while (cursor.next()) {
+            Transaction transaction = cursor.materialize();
+            searchIndex.add(cursor.position(), transaction.getCategory(), transaction.getDescription());
+        }
+        return transactions.size() - start;
+    }
+
+    private void indexLoan(Loan loan) {
+        loansById.putIfAbsent(loan.getId(), loan);
+        loansByLender.computeIfAbsent(SymbolTable.LENDERS.fold(loan.getLenderId()), group -> new ArrayList<>()).add(loan);
     }
 
     /**
@@ -80,67 +742,360 @@ public class DataStore implements Serializable {
      * @return a list of {@link Transaction} objects representing the financial transactions.
      */
     public List<Transaction> getTransactions() {
-        if(transactions.isEmpty()){
-            System.out.println("Empty transaction list.");
-            return transactions;
+        return transactions.asList();
+    }
+
+    /**
+     * Opens a cursor over all transactions without materializing them.
+     */
+    public TransactionCursor transactionCursor() {
+        return transactions.cursor();
+    }
+
+    /**
+     * Opens a cursor over the transactions dated between {@code from} and {@code to}, inclusive,
+     * in the order of {@link #transactionCursor()} in every storage mode.
+     * A null bound leaves that side of the range open.
+     */
+    public TransactionCursor transactionCursor(LocalDate from, LocalDate to) {
+        return transactions.cursor(fromEpochDay(from), toEpochDay(to));
+    }
+
+    /**
+     * Sums the amounts of one transaction type dated between {@code from} and {@code to}, inclusive.
+     * A null bound leaves that side of the range open.
+     *
+     * @return the exact total in cents.
+     */
+    public long getTotalByType(TransactionType type, LocalDate from, LocalDate to) {
+        if (from == null && to == null) {
+            return aggregates.getTotal(type);
+        }
+        return transactions.total(type, fromEpochDay(from), toEpochDay(to));
+    }
+
+    /**
+     * Runs an aggregation over the transactions dated between {@code from} and {@code to}, inclusive,
+     * and over all loans. A null bound leaves that side of the range open.
+     * Unbounded aggregations over large stores run in parallel, see {@link ParallelScan}.
+     */
+    public AggregationEngine.Result aggregate(AggregationEngine engine, LocalDate from, LocalDate to) {
+        if (from == null && to == null && isParallel(transactions.size())) {
+            return ParallelScan.aggregate(engine, transactions, loans, isParallel(loans.size()));
+        }
+        return engine.run(transactionCursor(from, to), loans);
+    }
+
+    /**
+     * Runs only the loan pass of an aggregation, in parallel once there are enough loans.
+     */
+    public AggregationEngine.Result aggregateLoans(AggregationEngine engine) {
+        return isParallel(loans.size()) ? ParallelScan.aggregateLoans(engine, loans) : engine.runLoans(loans);
+    }
+
+    /**
+     * Finds the transactions dated between {@code from} and {@code to}, inclusive, that match
+     * {@code filter}. The filter reads the cursor's accessors, and only matches are materialized.
+     * A null bound leaves that side of the range open. Unbounded searches over large stores run
+     * in parallel, see {@link ParallelScan}, and return the same records in the same order.
+     *
+     * @return the matches in the order of {@link #transactionCursor(LocalDate, LocalDate)}.
+     */
+    public List<Transaction> findTransactions(Predicate<TransactionCursor> filter, LocalDate from, LocalDate to) {
+        if (from == null && to == null && isParallel(transactions.size())) {
+            return ParallelScan.filter(transactions, filter);
+        }
+        List<Transaction> matches = new ArrayList<>();
+        TransactionCursor cursor = transactionCursor(from, to);
+        while (cursor.next()) {
+            if (filter.test(cursor)) {
+                matches.add(cursor.materialize());
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Lists the transactions dated between {@code from} and {@code to}, inclusive, that match
+     * {@code filter}, skipping the first {@code offset} and returning at most {@code limit}.
+     * Records are read from storage only as the stream is consumed, so a short page costs the
+     * same whatever the size of the store. A null filter matches every record, and a null bound
+     * leaves that side of the range open.
+     *
+     * @param reverse list newest first, as by {@link TransactionStore#newestFirst}, in every storage
+     *                mode; otherwise in the order of {@link #transactionCursor(LocalDate, LocalDate)}.
+     */
+    public Stream<Transaction> listTransactions(Predicate<TransactionCursor> filter, LocalDate from, LocalDate to,
+                                                boolean reverse, long offset, long limit) {
+        if (reverse) {
+            return TransactionListing.list(transactions.newestFirst(fromEpochDay(from), toEpochDay(to)), filter, offset, limit);
+        }
+        if (from == null && to == null) {
+            return TransactionListing.list(transactions, filter, offset, limit);
         }
-        return transactions;
+        return TransactionListing.list(transactionCursor(from, to), filter, offset, limit);
     }
 
     /**
-     * Adds a transaction to the data store. If the transaction is successfully added,
-     * the updated data is persisted. In case of a failure during persistence,
-     * the transaction is removed from the list.
+     * Finds the transactions whose description and category together hold every term of the
+     * query, by lookups in the search index. Records added since the index was last extended are
+     * indexed first, and the index is checkpointed if that covered {@link #CHECKPOINT_INTERVAL}
+     * records or more, as after opening a snapshot written without one.
+     *
+     * @return the matches in store order, each materialized when it is read from the list.
+     */
+    public List<Transaction> searchTransactions(SearchQuery query) {
+        if (catchUpSearchIndex() >= CHECKPOINT_INTERVAL) {
+            checkpoint();
+        }
+        int[] positions = searchIndex.search(query);
+        TransactionStore store = transactions;
+        return new AbstractList<>() {
+            @Override
+            public Transaction get(int index) {
+                return store.get(positions[index]);
+            }
+
+            @Override
+            public int size() {
+                return positions.length;
+            }
+        };
+    }
+
+    /**
+     * @return a stream of all loans, parallel once there are enough of them.
+     */
+    public Stream<Loan> loanStream() {
+        return isParallel(loans.size()) ? loans.parallelStream() : loans.stream();
+    }
+
+    /**
+     * @return a spliterator over all transactions, for callers that split the work themselves.
+     */
+    public TransactionSpliterator transactionSpliterator() {
+        return new TransactionSpliterator(transactions);
+    }
+
+    private boolean isParallel(int records) {
+        return records >= parallelThreshold;
+    }
+
+    /**
+     * @return the running totals over all transactions and loans, maintained on every mutation.
+     */
+    public Aggregates getAggregates() {
+        return aggregates;
+    }
+
+    /**
+     * @return the daily and monthly rollup of all transactions, maintained on every mutation.
+     */
+    public RollupCube getRollup() {
+        return rollup;
+    }
+
+    /**
+     * Reads the rollup rows of every period overlapping {@code from} to {@code to}, inclusive,
+     * for all categories, or for one if {@code categoryId} is not null. A null bound leaves that
+     * side of the range open.
+     */
+    public List<RollupCube.Row> getRollupRows(RollupCube.Period period, LocalDate from, LocalDate to, Integer categoryId) {
+        return categoryId == null
+                ? rollup.rows(period, fromEpochDay(from), toEpochDay(to))
+                : rollup.rows(period, fromEpochDay(from), toEpochDay(to), categoryId);
+    }
+
+    /**
+     * Recomputes the aggregates and the rollup from every record, replaces the maintained ones
+     * with the result and checkpoints so that the snapshot carries them.
+     *
+     * @return true if the maintained aggregates and rollup already matched the recomputed ones.
+     */
+    public boolean rebuildAggregates() throws KoferException {
+        requireWritable();
+        Aggregates rebuilt = Aggregates.of(aggregate(Aggregates.engine(), null, null));
+        RollupCube rebuiltRollup = RollupCube.of(transactions.cursor());
+        boolean matched = rebuilt.equals(aggregates) && rebuiltRollup.equals(rollup);
+        aggregates = rebuilt;
+        rollup = rebuiltRollup;
+        checkpoint();
+        return matched;
+    }
+
+    private static int fromEpochDay(LocalDate from) {
+        return from == null ? Integer.MIN_VALUE : Math.toIntExact(from.toEpochDay());
+    }
+
+    private static int toEpochDay(LocalDate to) {
+        return to == null ? Integer.MAX_VALUE : Math.toIntExact(to.toEpochDay());
+    }
+
+    /**
+     * Adds a transaction to the data store. The transaction is appended to the journal
+     * first, or written straight to its segment in mapped mode, and is added in memory
+     * only if that succeeds. In group-commit mode the record is buffered, so it is visible
+     * before {@link #commit()} makes it durable.
      *
      * @param transaction the {@link Transaction} object to add. Must not be null.
      * @throws IllegalArgumentException if the provided transaction is null.
      * @throws RuntimeException if there is an error while saving the data to persistent storage.
      */
     public void addTransaction(Transaction transaction) throws IllegalArgumentException, KoferException {
+        requireWritable();
         if(transaction == null){
             throw new IllegalArgumentException("Transaction cannot be null");
         }
 
-        transactions.add(transaction);
-
         try{
-            saveData();
+            persistTransaction(transaction);
+            aggregateTransaction(transaction);
+            indexTransaction(transaction);
         }catch (Exception e){
-            transactions.remove(transaction);
-            throw new KoferException("Failed to persist data", e);
+            throw new KoferException("Failed to persist data: " + e.getMessage(), e);
         }
+
+        afterMutation();
     }
 
-    public List<Loan> getLoans() {
-        if (loans.isEmpty() ){
-            System.out.println("Empty loan list.");
-            return loans;
+    /**
+     * Journals a transaction and appends it to the store. A mapped store persists the record
+     * itself, so the journal only gets its rollup delta, written after the record.
+     */
+    private void persistTransaction(Transaction transaction) {
+        if (transactions.isSelfPersisting()) {
+            transactions.append(transaction);
+            journal.appendRollupDelta(transaction);
+        } else {
+            journal.appendTransaction(transaction);
+            transactions.append(transaction);
         }
+    }
+
+    /**
+     * Adds a batch of transactions and persists them with a single journal write and sync,
+     * or a single segment sync in mapped mode.
+     *
+     * @param batch the transactions to add. Must not contain null elements.
+     * @throws IllegalArgumentException if the batch contains a null transaction.
+     */
+    public void addTransactions(List<Transaction> batch) throws IllegalArgumentException, KoferException {
+        requireWritable();
+        for (Transaction transaction : batch) {
+            if (transaction == null) {
+                throw new IllegalArgumentException("Transaction cannot be null");
+            }
+        }
+
+        boolean temporaryGroup = !groupCommit;
+        if (temporaryGroup) {
+            journal.setGroupCommit(true);
+            transactions.setGroupCommit(true);
+        }
+        try {
+            for (Transaction transaction : batch) {
+                persistTransaction(transaction);
+                aggregateTransaction(transaction);
+                indexTransaction(transaction);
+            }
+            commit();
+        } catch (Exception e) {
+            throw new KoferException("Failed to persist batch: " + e.getMessage(), e);
+        } finally {
+            if (temporaryGroup) {
+                journal.setGroupCommit(false);
+                transactions.setGroupCommit(false);
+            }
+        }
+
+        checkpointIfNeeded();
+    }
+
+    public List<Loan> getLoans() {
         return loans;
     }
 
     /**
-     * Adds a loan to the data store. If the loan is successfully added, the updated data
-     * is persisted. In case of a failure during persistence, the loan is removed from the list.
+     * Looks a loan up in the id index.
+     *
+     * @return the loan with this id, or null if this store holds none.
+     */
+    public Loan findLoan(String loanId) {
+        return loansById.get(loanId);
+    }
+
+    /**
+     * Looks loans up in the lender index.
+     *
+     * @param lenderGroup a case-insensitive lender group, as returned by
+     *                    {@link SymbolTable#lookupFolded(String)} on {@link SymbolTable#LENDERS}.
+     * @return a new list of the loans from that lender, in the order they were added.
+     */
+    public List<Loan> getLoansByLender(int lenderGroup) {
+        List<Loan> lenderLoans = loansByLender.get(lenderGroup);
+        return lenderLoans == null ? new ArrayList<>() : new ArrayList<>(lenderLoans);
+    }
+
+    /**
+     * Adds a loan to the data store. As with {@link #addTransaction(Transaction)}, the loan is
+     * appended to the journal first and added in memory only if that succeeds.
      *
      * @param loan the {@link Loan} object to add. Must not be null.
      * @throws IllegalArgumentException if the provided loan is null.
      * @throws RuntimeException if there is an error while saving the data to persistent storage.
      */
     public void addLoan(Loan loan) {
+        requireWritable();
         if (loan == null) {
             throw new IllegalArgumentException("Loan cannot be null");
         }
 
+        try {
+            journal.appendLoan(loan);
+        } catch (Exception e) {
+            throw new KoferException("Failed to persist loan", e);
+        }
         loans.add(loan);
+        indexLoan(loan);
+        aggregates.addLoan(loan);
+
+        afterMutation();
+    }
+
+    /**
+     * Applies a repayment to a loan held by this store and records it in the journal.
+     *
+     * @param loan the loan being repaid, as returned by {@link #getLoans()}.
+     * @param repayment the repayment to apply. Validated by {@link Loan#addRepayment(Repayment)}.
+     */
+    public void addRepayment(Loan loan, Repayment repayment) {
+        requireWritable();
+        changeLoan(loan, () -> loan.addRepayment(repayment));
 
         try {
-            saveData();
+            journal.appendRepayment(loan.getId(), repayment);
         } catch (Exception e) {
-            System.err.println("Failed to save loan: " + e.getMessage());
-            loans.remove(loan);
-            throw new KoferException("Failed to persist loan", e);
+            changeLoan(loan, () -> loan.undoRepayment(repayment));
+            throw new KoferException("Failed to persist repayment", e);
+        }
+
+        afterMutation();
+    }
+
+    /**
+     * Marks a loan held by this store as closed and records it in the journal.
+     */
+    public void closeLoan(Loan loan) {
+        requireWritable();
+        changeLoan(loan, loan::markClosed);
+
+        try {
+            journal.appendLoanClosed(loan.getId());
+        } catch (Exception e) {
+            changeLoan(loan, loan::undoClose);
+            throw new KoferException("Failed to persist loan closure", e);
         }
 
+        afterMutation();
     }
 }
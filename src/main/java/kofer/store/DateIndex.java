@@ -0,0 +1,171 @@
+package kofer.store;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Sorted index from transaction date to store position, used by stores that keep records
+ * in insertion order. Each entry packs the epoch day into the high and the position into
+ * the low 32 bits of one {@code long}, so the entries sort by date and then by position,
+ * and a date range maps to one contiguous run found by binary search.
+ *
+ * The index follows the store lazily: {@link #refresh(int)} indexes records appended since
+ * the last call. Records appended in date order extend the sorted run; older dates are sorted
+ * on their own and merged into it, so a refresh costs a linear pass plus sorting the new records.
+ * The order is saved with the snapshot as positions alone, see {@link #positions()}, and
+ * {@link #restore(int[])} takes it back without sorting.
+ */
+final class DateIndex {
+    private final IntUnaryOperator epochDayOf;
+    private long[] entries = new long[0];
+    private int size;
+    private int[] restored;
+
+    /**
+     * @param epochDayOf returns the epoch day of the record at a store position.
+     */
+    DateIndex(IntUnaryOperator epochDayOf) {
+        this.epochDayOf = epochDayOf;
+    }
+
+    /**
+     * Adopts the order saved by {@link #positions()} for the first {@code positions.length}
+     * store positions. It is checked against the store on the next refresh, and indexed
+     * from scratch if it does not order exactly those positions by date.
+     */
+    void restore(int[] positions) {
+        entries = new long[0];
+        size = 0;
+        restored = positions;
+    }
+
+    /**
+     * Indexes the records at positions {@link #size()} up to {@code storeSize}.
+     */
+    void refresh(int storeSize) {
+        if (restored != null) {
+            adoptRestored(storeSize);
+        }
+        if (storeSize > entries.length) {
+            entries = Arrays.copyOf(entries, Math.max(storeSize, entries.length + (entries.length >> 1)));
+        }
+        int sortedSize = size;
+        boolean sorted = true;
+        for (int position = size; position < storeSize; position++) {
+            long entry = entry(epochDayOf.applyAsInt(position), position);
+            if (size > sortedSize && entry < entries[size - 1]) {
+                sorted = false;
+            }
+            entries[size++] = entry;
+        }
+        if (!sorted) {
+            Arrays.sort(entries, sortedSize, size);
+        }
+        if (sortedSize > 0 && size > sortedSize && entries[sortedSize] < entries[sortedSize - 1]) {
+            merge(sortedSize);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the store position of every indexed record, ordered by date and then position.
+     */
+    int[] positions() {
+        int[] positions = new int[size];
+        for (int i = 0; i < size; i++) {
+            positions[i] = position(i);
+        }
+        return positions;
+    }
+
+    /**
+     * @return the store positions of the records dated between the two epoch days, inclusive,
+     * in ascending order.
+     */
+    int[] positions(int fromEpochDay, int toEpochDay) {
+        int from = lowerBound(fromEpochDay);
+        int[] positions = new int[Math.max(0, upperBound(toEpochDay) - from)];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = position(from + i);
+        }
+        Arrays.sort(positions);
+        return positions;
+    }
+
+    /**
+     * @return the index of the first entry dated on or after {@code fromEpochDay}.
+     */
+    int lowerBound(int fromEpochDay) {
+        return search(entry(fromEpochDay, 0));
+    }
+
+    /**
+     * @return the index just past the last entry dated on or before {@code toEpochDay}.
+     */
+    int upperBound(int toEpochDay) {
+        return toEpochDay == Integer.MAX_VALUE ? size : search(entry(toEpochDay + 1, 0));
+    }
+
+    /**
+     * @return the store position of the entry at {@code index}.
+     */
+    int position(int index) {
+        return (int) entries[index];
+    }
+
+    int epochDay(int index) {
+        return (int) (entries[index] >> 32);
+    }
+
+    /**
+     * Rebuilds the entries of the restored positions in one pass. Entries that are not strictly
+     * ascending, or positions past the restored count, mean the saved order does not belong to
+     * these records; each position below the count then appears exactly once otherwise.
+     */
+    private void adoptRestored(int storeSize) {
+        int[] positions = restored;
+        restored = null;
+        if (positions.length > storeSize) {
+            return;
+        }
+        long[] adopted = new long[storeSize];
+        for (int i = 0; i < positions.length; i++) {
+            int position = positions[i];
+            if (position < 0 || position >= positions.length) {
+                return;
+            }
+            adopted[i] = entry(epochDayOf.applyAsInt(position), position);
+            if (i > 0 && adopted[i] <= adopted[i - 1]) {
+                return;
+            }
+        }
+        entries = adopted;
+        size = positions.length;
+    }
+
+    /**
+     * Merges the sorted runs {@code [0, middle)} and {@code [middle, size)}.
+     */
+    private void merge(int middle) {
+        long[] head = Arrays.copyOf(entries, middle);
+        int left = 0;
+        int right = middle;
+        int target = 0;
+        while (left < middle && right < size) {
+            entries[target++] = head[left] <= entries[right] ? head[left++] : entries[right++];
+        }
+        System.arraycopy(head, left, entries, target, middle - left);
+    }
+
+    private int search(long key) {
+        int found = Arrays.binarySearch(entries, 0, size, key);
+        return found >= 0 ? found : -found - 1;
+    }
+
+    private static long entry(int epochDay, int position) {
+        return (long) epochDay << 32 | position;
+    }
+}
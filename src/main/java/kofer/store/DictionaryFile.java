@@ -0,0 +1,109 @@
+package kofer.store;
+
+import kofer.exception.DataAccessException;
+import kofer.util.SymbolTable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Persistent, append-only mapping between strings and dense int codes.
+ * The whole dictionary is loaded on open; it is expected to stay small
+ * (categories, lender names) while the records referring to it grow.
+ * Codes are translated to and from ids in a {@link SymbolTable} with two
+ * int arrays, so records are encoded and decoded without hashing strings.
+ */
+class DictionaryFile {
+    static final int NO_CODE = -1;
+
+    private final Path path;
+    private final SymbolTable symbols;
+    private int[] symbolOfCode = new int[16];
+    private int[] codeOfSymbol = new int[0];
+    private int size;
+    private FileChannel channel;
+
+    DictionaryFile(Path path, SymbolTable symbols) {
+        this.path = path;
+        this.symbols = symbols;
+        if (!Files.exists(path)) {
+            return;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+            while (buffer.remaining() >= Integer.BYTES) {
+                int length = buffer.getInt();
+                if (length > buffer.remaining()) {
+                    break; // torn append
+                }
+                String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + length);
+                register(symbols.intern(value));
+            }
+        } catch (IOException e) {
+            throw new DataAccessException("dictionary load", e.getMessage(), e);
+        }
+    }
+
+    String value(int code) {
+        return symbols.name(symbol(code));
+    }
+
+    /**
+     * @return the symbol id for {@code code}, or {@link SymbolTable#NO_SYMBOL} for {@link #NO_CODE}.
+     */
+    int symbol(int code) {
+        return code == NO_CODE ? SymbolTable.NO_SYMBOL : symbolOfCode[code];
+    }
+
+    /**
+     * @return the code of the symbol with id {@code symbol}, appending its name to the dictionary file if it is new.
+     */
+    int code(int symbol) {
+        if (symbol == SymbolTable.NO_SYMBOL) {
+            return NO_CODE;
+        }
+        if (symbol < codeOfSymbol.length && codeOfSymbol[symbol] != NO_CODE) {
+            return codeOfSymbol[symbol];
+        }
+
+        byte[] bytes = symbols.name(symbol).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + bytes.length);
+        record.putInt(bytes.length).put(bytes).flip();
+        try {
+            if (channel == null) {
+                channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            throw new DataAccessException("dictionary append", e.getMessage(), e);
+        }
+
+        return register(symbol);
+    }
+
+    private int register(int symbol) {
+        int code = size++;
+        if (code == symbolOfCode.length) {
+            symbolOfCode = Arrays.copyOf(symbolOfCode, code * 2);
+        }
+        symbolOfCode[code] = symbol;
+
+        if (symbol >= codeOfSymbol.length) {
+            int previous = codeOfSymbol.length;
+            codeOfSymbol = Arrays.copyOf(codeOfSymbol, Math.max(symbol + 1, previous * 2));
+            Arrays.fill(codeOfSymbol, previous, codeOfSymbol.length, NO_CODE);
+        }
+        codeOfSymbol[symbol] = code;
+        return code;
+    }
+}
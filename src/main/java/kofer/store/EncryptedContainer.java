@@ -0,0 +1,470 @@
+package kofer.store;
+
+import kofer.exception.DataAccessException;
+import kofer.util.Encryption;
+import kofer.util.KeySession;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.SecretKey;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Encrypted-at-rest container for the data file. The plaintext is split into fixed-size
+ * chunks that are sealed independently with AES-GCM, each under its own IV and with its
+ * index as additional authenticated data, so chunks cannot be reordered. Chunks are
+ * encrypted and decrypted in parallel, and the chunk table can be read without touching
+ * the chunk bodies, so a reader can also decrypt only the chunks it reaches.
+ *
+ * Layout:
+ * <pre>
+ *   [int magic][short version][salt][int chunkSize][int chunkCount][long plaintextLength]
+ *   chunkCount x [iv][int sealedLength]
+ *   [header iv][header tag]          GCM tag over everything above
+ *   chunkCount x [ciphertext + tag]
+ * </pre>
+ * The header tag covers the chunk count, the plaintext length and every chunk IV, so a
+ * truncated file or a chunk swapped in from an older version fails to open.
+ *
+ * The container remembers the plaintext and sealed chunks of the last read or write.
+ * A chunk whose plaintext has not changed since then keeps its previous IV and ciphertext
+ * instead of being encrypted again, so a save after a small change only encrypts the
+ * chunks that change. The file as a whole is still replaced through {@link AtomicFileWriter}.
+ */
+public class EncryptedContainer {
+    public static final int MAGIC = 0x4B454E43; // "KENC"
+    public static final int DEFAULT_CHUNK_SIZE = 256 * 1024;
+
+    private static final short VERSION = 1;
+    private static final int FIXED_HEADER_SIZE = Integer.BYTES + Short.BYTES + Encryption.SALT_SIZE
+            + Integer.BYTES + Integer.BYTES + Long.BYTES;
+    private static final int TABLE_ENTRY_SIZE = Encryption.IV_SIZE + Integer.BYTES;
+    private static final byte[] NO_DATA = new byte[0];
+
+    private final Path path;
+    private final Supplier<KeySession> session;
+    private int chunkSize;
+
+    // State of the file as last read or written, used to skip re-encrypting unchanged chunks
+    private byte[] salt;
+    private byte[] plaintext;
+    private byte[][] ivs;
+    private byte[][] sealed;
+    private int lastReusedChunks;
+
+    public EncryptedContainer(Path path, Supplier<KeySession> session) {
+        this(path, session, DEFAULT_CHUNK_SIZE);
+    }
+
+    public EncryptedContainer(Path path, Supplier<KeySession> session, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.path = path;
+        this.session = session;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @return true if the file at {@code path} starts with the container magic number.
+     */
+    public static boolean isEncrypted(Path path) {
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+            return in.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the number of chunks the last {@link #write} kept from the previous version.
+     */
+    public int getLastReusedChunks() {
+        return lastReusedChunks;
+    }
+
+    /**
+     * Decrypts and authenticates the whole container.
+     *
+     * @throws DataAccessException if the file is not a container, was altered, or the passphrase is wrong.
+     */
+    public byte[] read() {
+        return read(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Decrypts and authenticates only the first chunk, without reading the other chunk bodies
+     * from disk. For readers that only need the start of the plaintext.
+     *
+     * @return at most one chunk of plaintext.
+     * @throws DataAccessException as for {@link #read()}.
+     */
+    public byte[] readFirstChunk() {
+        return read(1);
+    }
+
+    /**
+     * Opens the container as a stream of its plaintext that decrypts and authenticates each chunk
+     * only when it is reached. Chunks passed over with {@link InputStream#skip(long)} are neither
+     * read from disk nor decrypted, so a reader that skips sections pays only for those it reads.
+     * Unlike {@link #read()}, nothing is kept for the next {@link #write}.
+     *
+     * @throws DataAccessException as for {@link #read()}, or from the stream once a chunk fails.
+     */
+    public InputStream openStream() {
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                return new ChunkStream(channel, readLayout(channel));
+            } catch (RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new DataAccessException("encrypted read", e.getMessage(), e);
+        }
+    }
+
+    private byte[] read(int chunkLimit) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Layout layout = readLayout(channel);
+            int count = layout.ivs.length;
+            int opened = Math.min(count, chunkLimit);
+            boolean whole = opened == count;
+            int bodyLength = whole ? (int) layout.bodyLength()
+                    : (opened == 0 ? 0 : layout.offsets[opened - 1] + layout.sealedLengths[opened - 1]);
+            byte[] body = readAt(channel, layout.bodyStart, bodyLength).array();
+
+            byte[] data = new byte[whole ? (int) layout.length : (int) Math.min(layout.length, (long) opened * layout.chunkSize)];
+            byte[][] chunks = new byte[opened][];
+            IntStream.range(0, opened).parallel().forEach(i -> {
+                chunks[i] = Arrays.copyOfRange(body, layout.offsets[i], layout.offsets[i] + layout.sealedLengths[i]);
+                byte[] chunk = layout.open(i, chunks[i]);
+                System.arraycopy(chunk, 0, data, i * layout.chunkSize, chunk.length);
+            });
+
+            if (whole) {
+                this.chunkSize = layout.chunkSize;
+                this.salt = layout.salt;
+                this.plaintext = data;
+                this.ivs = layout.ivs;
+                this.sealed = chunks;
+            }
+            return data;
+        } catch (IOException e) {
+            throw new DataAccessException("encrypted read", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads and authenticates the header and chunk table.
+     */
+    private Layout readLayout(FileChannel channel) throws IOException {
+        long fileLength = channel.size();
+        if (fileLength < FIXED_HEADER_SIZE) {
+            throw new DataAccessException("encrypted read", "not an encrypted kofer data file");
+        }
+        ByteBuffer in = readAt(channel, 0, FIXED_HEADER_SIZE);
+        if (in.getInt() != MAGIC) {
+            throw new DataAccessException("encrypted read", "not an encrypted kofer data file");
+        }
+        short version = in.getShort();
+        if (version > VERSION) {
+            throw new DataAccessException("encrypted read",
+                    "container version " + version + " is newer than supported version " + VERSION);
+        }
+        byte[] fileSalt = new byte[Encryption.SALT_SIZE];
+        in.get(fileSalt);
+        int fileChunkSize = in.getInt();
+        int count = in.getInt();
+        long length = in.getLong();
+        int headerLength = FIXED_HEADER_SIZE + count * TABLE_ENTRY_SIZE;
+        if (fileChunkSize <= 0 || count < 0 || length < 0 || length > Integer.MAX_VALUE
+                || (long) count * TABLE_ENTRY_SIZE + Encryption.IV_SIZE + Encryption.TAG_SIZE
+                        > fileLength - FIXED_HEADER_SIZE) {
+            throw new DataAccessException("encrypted read", "corrupted container header");
+        }
+
+        ByteBuffer header = readAt(channel, 0, headerLength + Encryption.IV_SIZE + Encryption.TAG_SIZE);
+        header.position(FIXED_HEADER_SIZE);
+        byte[][] chunkIvs = new byte[count][Encryption.IV_SIZE];
+        int[] sealedLengths = new int[count];
+        for (int i = 0; i < count; i++) {
+            header.get(chunkIvs[i]);
+            sealedLengths[i] = header.getInt();
+        }
+
+        SecretKey key = session.get().keyFor(fileSalt);
+        try {
+            byte[] headerIv = new byte[Encryption.IV_SIZE];
+            byte[] headerTag = new byte[Encryption.TAG_SIZE];
+            header.get(headerIv);
+            header.get(headerTag);
+            Encryption.open(key, headerIv, Arrays.copyOf(header.array(), headerLength), headerTag);
+        } catch (AEADBadTagException e) {
+            throw new DataAccessException("encrypted read", "wrong passphrase or damaged data file", e);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            throw new DataAccessException("encrypted read", "corrupted container header", e);
+        }
+
+        int bodyStart = header.position();
+        int[] offsets = new int[count];
+        long offset = 0;
+        for (int i = 0; i < count; i++) {
+            offsets[i] = (int) offset;
+            offset += sealedLengths[i];
+        }
+        if (bodyStart + offset != fileLength) {
+            throw new DataAccessException("encrypted read", "container length does not match its chunk table");
+        }
+        return new Layout(key, fileSalt, fileChunkSize, length, chunkIvs, sealedLengths, offsets, bodyStart);
+    }
+
+    private static ByteBuffer readAt(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("container ends early");
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Returns the key the container is sealed with, for data kept next to it such as the journal.
+     * It is derived from the container's salt, so the session derives no second key.
+     */
+    public SecretKey key() {
+        if (salt == null) {
+            salt = readSalt();
+        }
+        return session.get().keyFor(salt);
+    }
+
+    /**
+     * Encrypts {@code data} and atomically replaces the container with it. The array is
+     * retained to detect unchanged chunks on the next write and must not be modified afterwards.
+     * An existing file keeps its salt, so the session's cached key is reused.
+     */
+    public void write(byte[] data) {
+        SecretKey key = key();
+
+        int count = (data.length + chunkSize - 1) / chunkSize;
+        byte[][] chunkIvs = new byte[count][];
+        byte[][] chunks = new byte[count][];
+        boolean[] reused = new boolean[count];
+
+        IntStream.range(0, count).parallel().forEach(i -> {
+            int start = i * chunkSize;
+            int end = Math.min(start + chunkSize, data.length);
+            if (unchanged(data, start, end)) {
+                chunkIvs[i] = ivs[i];
+                chunks[i] = sealed[i];
+                reused[i] = true;
+                return;
+            }
+            chunkIvs[i] = Encryption.generateIv();
+            try {
+                chunks[i] = Encryption.seal(key, chunkIvs[i], chunkAad(i), data, start, end - start);
+            } catch (GeneralSecurityException e) {
+                throw new DataAccessException("encrypted write", "failed to encrypt chunk " + i, e);
+            }
+        });
+
+        ByteBuffer header = ByteBuffer.allocate(FIXED_HEADER_SIZE + count * TABLE_ENTRY_SIZE);
+        header.putInt(MAGIC);
+        header.putShort(VERSION);
+        header.put(salt);
+        header.putInt(chunkSize);
+        header.putInt(count);
+        header.putLong(data.length);
+        for (int i = 0; i < count; i++) {
+            header.put(chunkIvs[i]);
+            header.putInt(chunks[i].length);
+        }
+
+        byte[] headerIv = Encryption.generateIv();
+        byte[] headerTag;
+        try {
+            headerTag = Encryption.seal(key, headerIv, header.array(), NO_DATA, 0, 0);
+        } catch (GeneralSecurityException e) {
+            throw new DataAccessException("encrypted write", "failed to authenticate header", e);
+        }
+
+        AtomicFileWriter.write(path, out -> {
+            out.write(header.array());
+            out.write(headerIv);
+            out.write(headerTag);
+            for (byte[] chunk : chunks) {
+                out.write(chunk);
+            }
+        });
+
+        int reusedCount = 0;
+        for (boolean r : reused) {
+            if (r) {
+                reusedCount++;
+            }
+        }
+        this.plaintext = data;
+        this.ivs = chunkIvs;
+        this.sealed = chunks;
+        this.lastReusedChunks = reusedCount;
+    }
+
+    private boolean unchanged(byte[] data, int start, int end) {
+        if (plaintext == null || start / chunkSize >= sealed.length) {
+            return false;
+        }
+        int previousEnd = Math.min(start + chunkSize, plaintext.length);
+        return previousEnd == end && Arrays.equals(plaintext, start, end, data, start, end);
+    }
+
+    /**
+     * @return the salt of the existing container, or a new one if there is none.
+     */
+    private byte[] readSalt() {
+        if (isEncrypted(path)) {
+            try (InputStream in = Files.newInputStream(path)) {
+                in.skipNBytes(Integer.BYTES + Short.BYTES);
+                return in.readNBytes(Encryption.SALT_SIZE);
+            } catch (IOException e) {
+                throw new DataAccessException("encrypted read", e.getMessage(), e);
+            }
+        }
+        return Encryption.generateSalt();
+    }
+
+    private static byte[] chunkAad(int index) {
+        return ByteBuffer.allocate(Integer.BYTES).putInt(index).array();
+    }
+
+    /**
+     * Header fields and chunk table of a container whose header tag has been verified.
+     */
+    private static final class Layout {
+        final SecretKey key;
+        final byte[] salt;
+        final int chunkSize;
+        final long length;
+        final byte[][] ivs;
+        final int[] sealedLengths;
+        final int[] offsets;
+        final long bodyStart;
+
+        Layout(SecretKey key, byte[] salt, int chunkSize, long length, byte[][] ivs, int[] sealedLengths,
+               int[] offsets, long bodyStart) {
+            this.key = key;
+            this.salt = salt;
+            this.chunkSize = chunkSize;
+            this.length = length;
+            this.ivs = ivs;
+            this.sealedLengths = sealedLengths;
+            this.offsets = offsets;
+            this.bodyStart = bodyStart;
+        }
+
+        long bodyLength() {
+            int count = ivs.length;
+            return count == 0 ? 0 : (long) offsets[count - 1] + sealedLengths[count - 1];
+        }
+
+        /**
+         * Decrypts and authenticates chunk {@code index} from its sealed bytes.
+         */
+        byte[] open(int index, byte[] sealedChunk) {
+            try {
+                byte[] chunk = Encryption.open(key, ivs[index], chunkAad(index), sealedChunk);
+                if (chunk.length != Math.min(chunkSize, length - (long) index * chunkSize)) {
+                    throw new DataAccessException("encrypted read", "unexpected length of chunk " + index);
+                }
+                return chunk;
+            } catch (GeneralSecurityException e) {
+                throw new DataAccessException("encrypted read", "chunk " + index + " failed authentication", e);
+            }
+        }
+    }
+
+    /**
+     * Plaintext of a container, decrypting one chunk at a time as reading reaches it.
+     */
+    private static final class ChunkStream extends InputStream {
+        private final FileChannel channel;
+        private final Layout layout;
+        private long position;
+        private int loadedIndex = -1;
+        private byte[] loaded;
+
+        ChunkStream(FileChannel channel, Layout layout) {
+            this.channel = channel;
+            this.layout = layout;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (position >= layout.length) {
+                return -1;
+            }
+            return loadChunk()[(int) (position++ % layout.chunkSize)] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (position >= layout.length) {
+                return -1;
+            }
+            byte[] chunk = loadChunk();
+            int within = (int) (position % layout.chunkSize);
+            int count = Math.min(length, chunk.length - within);
+            System.arraycopy(chunk, within, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        /**
+         * @return the plaintext of the chunk holding the current position.
+         */
+        private byte[] loadChunk() throws IOException {
+            int index = (int) (position / layout.chunkSize);
+            if (index != loadedIndex) {
+                loaded = layout.open(index, readAt(channel, layout.bodyStart + layout.offsets[index], layout.sealedLengths[index]).array());
+                loadedIndex = index;
+            }
+            return loaded;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, layout.length - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return loadedIndex < 0 ? 0 : (int) Math.max(0, (long) loadedIndex * layout.chunkSize + loaded.length - position);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
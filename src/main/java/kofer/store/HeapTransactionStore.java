@@ -0,0 +1,178 @@
+package kofer.store;
+
+import kofer.model.Transaction;
+import kofer.util.TransactionType;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps every transaction as an object on the heap. Persistence is handled by
+ * the owning {@link DataStore} through the snapshot and journal.
+ * Date ranges are looked up in a {@link DateIndex}, taken from the snapshot when it saved one
+ * and built on first use otherwise.
+ */
+public class HeapTransactionStore implements TransactionStore {
+    private final List<Transaction> transactions;
+    private final DateIndex dateIndex;
+
+    public HeapTransactionStore(List<Transaction> transactions) {
+        this.transactions = transactions;
+        this.dateIndex = new DateIndex(position -> (int) transactions.get(position).getDate().toEpochDay());
+    }
+
+    @Override
+    public int size() {
+        return transactions.size();
+    }
+
+    @Override
+    public Transaction get(int index) {
+        return transactions.get(index);
+    }
+
+    @Override
+    public void append(Transaction transaction) {
+        transactions.add(transaction);
+    }
+
+    @Override
+    public TransactionCursor cursor() {
+        return new ListCursor(0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public TransactionCursor slice(int start, int end) {
+        return new ListCursor(start, end);
+    }
+
+    /**
+     * Finds the range in the date index by binary search and visits only the records within it,
+     * sorted back into position order. An unbounded range is scanned in position order directly.
+     */
+    @Override
+    public TransactionCursor cursor(int fromEpochDay, int toEpochDay) {
+        if (fromEpochDay == Integer.MIN_VALUE && toEpochDay == Integer.MAX_VALUE) {
+            return cursor();
+        }
+        dateIndex.refresh(transactions.size());
+        return new ListCursor(dateIndex.positions(fromEpochDay, toEpochDay));
+    }
+
+    /**
+     * Walks the range of the date index backwards; the index orders records of one day by position.
+     */
+    @Override
+    public TransactionCursor newestFirst(int fromEpochDay, int toEpochDay) {
+        dateIndex.refresh(transactions.size());
+        return new ListCursor(dateIndex, dateIndex.lowerBound(fromEpochDay), dateIndex.upperBound(toEpochDay));
+    }
+
+    @Override
+    public int[] dateOrder() {
+        dateIndex.refresh(transactions.size());
+        return dateIndex.positions();
+    }
+
+    @Override
+    public void restoreDateOrder(int[] positions) {
+        dateIndex.restore(positions);
+    }
+
+    @Override
+    public List<Transaction> asList() {
+        return Collections.unmodifiableList(transactions);
+    }
+
+    @Override
+    public boolean isSelfPersisting() {
+        return false;
+    }
+
+    /**
+     * Walks positions {@code [from, to)} of the list, a given array of positions, or the entries
+     * {@code [from, to)} of a date index backwards, in reverse date order.
+     */
+    private class ListCursor implements TransactionCursor {
+        private final DateIndex index;
+        private final int[] positions;
+        private final int from;
+        private final int to;
+        private int next;
+        private int position = -1;
+        private Transaction current;
+
+        ListCursor(int from, int to) {
+            this(null, null, from, to);
+        }
+
+        ListCursor(int[] positions) {
+            this(null, positions, 0, positions.length);
+        }
+
+        ListCursor(DateIndex index, int from, int to) {
+            this(index, null, from, to);
+        }
+
+        private ListCursor(DateIndex index, int[] positions, int from, int to) {
+            this.index = index;
+            this.positions = positions;
+            this.from = from;
+            this.to = to;
+            this.next = index != null ? to - 1 : from;
+        }
+
+        @Override
+        public boolean next() {
+            if (index != null) {
+                if (next < from) {
+                    return false;
+                }
+                position = index.position(next--);
+            } else {
+                if (next >= to || (positions == null && next >= transactions.size())) {
+                    return false;
+                }
+                position = positions == null ? next : positions[next];
+                next++;
+            }
+            current = transactions.get(position);
+            return true;
+        }
+
+        @Override
+        public int position() {
+            return position;
+        }
+
+        @Override
+        public int epochDay() {
+            return (int) current.getDate().toEpochDay();
+        }
+
+        @Override
+        public long amountCents() {
+            return current.getAmountCents();
+        }
+
+        @Override
+        public TransactionType type() {
+            return current.getType();
+        }
+
+        @Override
+        public String category() {
+            return current.getCategory();
+        }
+
+        @Override
+        public int categoryId() {
+            return current.getCategoryId();
+        }
+
+        @Override
+        public Transaction materialize() {
+            return current;
+        }
+    }
+}
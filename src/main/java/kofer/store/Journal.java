@@ -0,0 +1,455 @@
+package kofer.store;
+
+import kofer.exception.DataAccessException;
+import kofer.model.Loan;
+import kofer.model.Repayment;
+import kofer.model.Transaction;
+import kofer.util.Encryption;
+import kofer.util.TransactionType;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.SecretKey;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.time.LocalDate;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal that sits next to the data store snapshot.
+ * Every mutation is written as one small, checksummed record so that a write
+ * costs the size of the record instead of the size of the whole store.
+ * On load the records newer than the snapshot are replayed, and once enough
+ * records have accumulated the owner folds them into a new snapshot and
+ * resets the journal (checkpointing).
+ *
+ * In group-commit mode records are buffered and written with a single forced write
+ * on {@link #commit()}, so a batch of mutations costs one sync instead of one per record.
+ *
+ * Record layout: {@code [int payloadLength][long sequence][byte op][payload][int crc32]}.
+ * A transaction that a self-persisting {@link TransactionStore} already holds is journaled only
+ * as its rollup delta (date, category, type and amount), so that the totals kept in the snapshot
+ * can catch up on replay without the record itself being stored twice.
+ *
+ * Amounts are written as long cents and strings as an int byte length (-1 for null) followed
+ * by UTF-8. The checksum covers sequence, op and payload, so a torn write at the tail
+ * is detected and discarded on replay, as is a length that runs past the end of the file.
+ *
+ * A journal given a key seals every record with AES-GCM before it is written: the op and
+ * payload are encrypted under a fresh IV and stored as the payload of a sealed record,
+ * {@code [iv][ciphertext + tag]}, with the sequence number as additional authenticated data
+ * so a record cannot be moved to another position. Plaintext records met on replay are
+ * still applied; {@link #getPlaintextCount()} tells the owner to fold them away.
+ *
+ * A read-only journal only replays; a torn tail is skipped but left in the file.
+ */
+public class Journal {
+    public static final String JOURNAL_FILE_NAME = "kofer.journal";
+
+    private static final byte OP_ADD_TRANSACTION = 1;
+    private static final byte OP_ADD_LOAN = 2;
+    private static final byte OP_ADD_REPAYMENT = 3;
+    private static final byte OP_CLOSE_LOAN = 4;
+    private static final byte OP_SEALED = 5;
+    private static final byte OP_ROLLUP_DELTA = 6;
+    private static final int NULL_STRING = -1;
+
+    private static final int RECORD_OVERHEAD = Integer.BYTES + Long.BYTES + Byte.BYTES + Integer.BYTES;
+
+    private final Path path;
+    private final boolean readOnly;
+    // Null unless records are sealed
+    private final Supplier<SecretKey> key;
+    private long lastSequence;
+    private int entries;
+    private int plaintextEntries;
+
+    private boolean groupCommit;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private int pendingEntries;
+
+    /**
+     * Callback used by {@link #replay(long, Replayer)} to hand decoded records back to the store.
+     */
+    public interface Replayer {
+        void transactionAdded(Transaction transaction);
+
+        void loanAdded(Loan loan);
+
+        void repaymentAdded(String loanId, Repayment repayment);
+
+        void loanClosed(String loanId);
+
+        /**
+         * A transaction held outside the journal was added on {@code date}; only its totals are replayed.
+         */
+        void rollupDelta(LocalDate date, String category, TransactionType type, long amountCents);
+    }
+
+    public Journal(Path path, long lastSequence) {
+        this(path, lastSequence, false);
+    }
+
+    public Journal(Path path, long lastSequence, boolean readOnly) {
+        this(path, lastSequence, readOnly, null);
+    }
+
+    /**
+     * @param key supplies the key records are sealed with, or null to write them in plaintext.
+     */
+    public Journal(Path path, long lastSequence, boolean readOnly, Supplier<SecretKey> key) {
+        this.path = path;
+        this.lastSequence = lastSequence;
+        this.readOnly = readOnly;
+        this.key = key;
+    }
+
+    /**
+     * @return the sequence number of the last record written or replayed.
+     */
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * @return the number of records currently held in the journal, including uncommitted ones.
+     */
+    public int getEntryCount() {
+        return entries;
+    }
+
+    /**
+     * @return the number of unsealed records found by the last replay.
+     */
+    public int getPlaintextCount() {
+        return plaintextEntries;
+    }
+
+    /**
+     * @return the number of records buffered in group-commit mode and not yet written.
+     */
+    public int getPendingCount() {
+        return pendingEntries;
+    }
+
+    /**
+     * Switches group-commit mode on or off. Turning it off commits any buffered records.
+     */
+    public void setGroupCommit(boolean groupCommit) {
+        if (!groupCommit) {
+            commit();
+        }
+        this.groupCommit = groupCommit;
+    }
+
+    /**
+     * Writes all buffered records with one forced write.
+     */
+    public void commit() {
+        if (pendingEntries == 0) {
+            return;
+        }
+        write(ByteBuffer.wrap(pending.toByteArray()));
+        pending.reset();
+        pendingEntries = 0;
+    }
+
+    public void appendTransaction(Transaction transaction) {
+        append(OP_ADD_TRANSACTION, out -> {
+            writeString(out, transaction.getId());
+            out.writeLong(transaction.getDate().toEpochDay());
+            out.writeLong(transaction.getAmountCents());
+            out.writeByte(transaction.getType().ordinal());
+            writeString(out, transaction.getCategory());
+            writeString(out, transaction.getDescription());
+        });
+    }
+
+    /**
+     * Records only the rollup delta of a transaction that its store has already persisted.
+     */
+    public void appendRollupDelta(Transaction transaction) {
+        append(OP_ROLLUP_DELTA, out -> {
+            out.writeLong(transaction.getDate().toEpochDay());
+            writeString(out, transaction.getCategory());
+            out.writeByte(transaction.getType().ordinal());
+            out.writeLong(transaction.getAmountCents());
+        });
+    }
+
+    public void appendLoan(Loan loan) {
+        append(OP_ADD_LOAN, out -> {
+            writeString(out, loan.getId());
+            writeString(out, loan.getLenderName());
+            out.writeLong(loan.getAmountBorrowedCents());
+            out.writeLong(loan.getDateBorrowed().toEpochDay());
+            writeString(out, loan.getDescription());
+        });
+    }
+
+    public void appendRepayment(String loanId, Repayment repayment) {
+        append(OP_ADD_REPAYMENT, out -> {
+            writeString(out, loanId);
+            out.writeLong(repayment.getAmountCents());
+            out.writeLong(repayment.getDate().toEpochDay());
+            writeString(out, repayment.getNote());
+        });
+    }
+
+    public void appendLoanClosed(String loanId) {
+        append(OP_CLOSE_LOAN, out -> writeString(out, loanId));
+    }
+
+    /**
+     * Replays every intact record with a sequence number greater than {@code afterSequence}.
+     * Records at or below it are already contained in the snapshot and are skipped.
+     * A torn or corrupted tail is truncated so that subsequent appends start from a clean record boundary.
+     */
+    public void replay(long afterSequence, Replayer replayer) {
+        if (!Files.exists(path)) {
+            return;
+        }
+
+        long validLength = 0;
+        int count = 0;
+        int plaintext = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            long fileLength = Files.size(path);
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length < 0 || length > fileLength - validLength - RECORD_OVERHEAD) {
+                    // A damaged length field; the record cannot be intact
+                    break;
+                }
+
+                byte[] body = new byte[Long.BYTES + Byte.BYTES + length];
+                int checksum;
+                try {
+                    in.readFully(body);
+                    checksum = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                CRC32 crc = new CRC32();
+                crc.update(body);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(body));
+                long sequence = record.readLong();
+                byte op = record.readByte();
+                if (op != OP_SEALED) {
+                    plaintext++;
+                }
+                if (sequence > afterSequence) {
+                    if (op == OP_SEALED) {
+                        record = unseal(sequence, length, record);
+                        op = record.readByte();
+                    }
+                    apply(op, record, replayer);
+                }
+                lastSequence = Math.max(lastSequence, sequence);
+                validLength += RECORD_OVERHEAD + length;
+                count++;
+            }
+        } catch (IOException e) {
+            throw new DataAccessException("journal replay", e.getMessage(), e);
+        }
+
+        entries = count;
+        plaintextEntries = plaintext;
+        truncateTo(validLength);
+    }
+
+    /**
+     * Discards all records, including buffered ones. Called after their effects have
+     * been folded into a snapshot.
+     */
+    public void reset() {
+        pending.reset();
+        pendingEntries = 0;
+        truncateTo(0);
+        entries = 0;
+        plaintextEntries = 0;
+    }
+
+    private void apply(byte op, DataInputStream in, Replayer replayer) throws IOException {
+        switch (op) {
+            case OP_ADD_TRANSACTION -> replayer.transactionAdded(new Transaction(
+                    readString(in),
+                    LocalDate.ofEpochDay(in.readLong()),
+                    in.readLong(),
+                    TransactionType.values()[in.readByte()],
+                    readString(in),
+                    readString(in)));
+            case OP_ADD_LOAN -> replayer.loanAdded(new Loan(
+                    readString(in),
+                    readString(in),
+                    in.readLong(),
+                    LocalDate.ofEpochDay(in.readLong()),
+                    readString(in)));
+            case OP_ADD_REPAYMENT -> {
+                String loanId = readString(in);
+                replayer.repaymentAdded(loanId, new Repayment(
+                        in.readLong(),
+                        LocalDate.ofEpochDay(in.readLong()),
+                        readString(in)));
+            }
+            case OP_CLOSE_LOAN -> replayer.loanClosed(readString(in));
+            case OP_ROLLUP_DELTA -> replayer.rollupDelta(
+                    LocalDate.ofEpochDay(in.readLong()),
+                    readString(in),
+                    TransactionType.values()[in.readByte()],
+                    in.readLong());
+            default -> throw new IOException("Unknown journal record type: " + op);
+        }
+    }
+
+    private void append(byte op, RecordWriter payloadWriter) {
+        try {
+            ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream(128);
+            if (key != null) {
+                payloadBytes.write(op);
+            }
+            payloadWriter.write(new DataOutputStream(payloadBytes));
+            byte[] payload = payloadBytes.toByteArray();
+
+            long sequence = lastSequence + 1;
+            if (key != null) {
+                payload = seal(sequence, payload);
+                op = OP_SEALED;
+            }
+            ByteBuffer record = ByteBuffer.allocate(RECORD_OVERHEAD + payload.length);
+            record.putInt(payload.length);
+            record.putLong(sequence);
+            record.put(op);
+            record.put(payload);
+
+            CRC32 crc = new CRC32();
+            crc.update(record.array(), Integer.BYTES, Long.BYTES + Byte.BYTES + payload.length);
+            record.putInt((int) crc.getValue());
+            record.flip();
+
+            if (groupCommit) {
+                pending.write(record.array(), 0, record.limit());
+                pendingEntries++;
+            } else {
+                write(record);
+            }
+
+            lastSequence = sequence;
+            entries++;
+        } catch (IOException e) {
+            throw new DataAccessException("journal append", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return {@code [iv][ciphertext + tag]} of the op and payload in {@code record}.
+     */
+    private byte[] seal(long sequence, byte[] record) {
+        byte[] iv = Encryption.generateIv();
+        try {
+            byte[] sealed = Encryption.seal(key.get(), iv, sequenceAad(sequence), record, 0, record.length);
+            return ByteBuffer.allocate(iv.length + sealed.length).put(iv).put(sealed).array();
+        } catch (GeneralSecurityException e) {
+            throw new DataAccessException("journal append", "failed to encrypt record " + sequence, e);
+        }
+    }
+
+    /**
+     * Decrypts and authenticates the remaining {@code length} bytes of a sealed record.
+     *
+     * @return the record's op followed by its payload.
+     */
+    private DataInputStream unseal(long sequence, int length, DataInputStream in) throws IOException {
+        if (key == null) {
+            throw new DataAccessException("journal replay", "the journal is encrypted and no passphrase was given");
+        }
+        byte[] iv = new byte[Encryption.IV_SIZE];
+        in.readFully(iv);
+        byte[] sealed = new byte[length - iv.length];
+        in.readFully(sealed);
+        try {
+            return new DataInputStream(new ByteArrayInputStream(Encryption.open(key.get(), iv, sequenceAad(sequence), sealed)));
+        } catch (AEADBadTagException e) {
+            throw new DataAccessException("journal replay", "wrong passphrase or damaged journal record " + sequence, e);
+        } catch (GeneralSecurityException e) {
+            throw new DataAccessException("journal replay", "failed to decrypt record " + sequence, e);
+        }
+    }
+
+    private static byte[] sequenceAad(long sequence) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(sequence).array();
+    }
+
+    private void write(ByteBuffer records) {
+        if (readOnly) {
+            throw new DataAccessException("journal write", "the journal was opened read-only");
+        }
+        try {
+            Files.createDirectories(path.getParent());
+            try (FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                while (records.hasRemaining()) {
+                    channel.write(records);
+                }
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new DataAccessException("journal write", e.getMessage(), e);
+        }
+    }
+
+    private void truncateTo(long length) {
+        if (readOnly || !Files.exists(path)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            if (channel.size() > length) {
+                channel.truncate(length);
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new DataAccessException("journal truncate", e.getMessage(), e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_STRING);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == NULL_STRING) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @FunctionalInterface
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
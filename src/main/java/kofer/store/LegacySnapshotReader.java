@@ -0,0 +1,64 @@
+package kofer.store;
+
+import kofer.exception.DataAccessException;
+import kofer.model.Loan;
+import kofer.model.Transaction;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads {@code kofer.dat} files written by earlier versions with Java serialization.
+ * The serialized classes are resolved to frozen mirrors in {@code kofer.store.legacy},
+ * so the live model classes are free to evolve without breaking migration.
+ */
+public class LegacySnapshotReader {
+    private static final Map<String, Class<?>> LEGACY_CLASSES = Map.of(
+            "kofer.store.DataStore", kofer.store.legacy.DataStore.class,
+            "kofer.model.Transaction", kofer.store.legacy.Transaction.class,
+            "kofer.model.Loan", kofer.store.legacy.Loan.class,
+            "kofer.model.Repayment", kofer.store.legacy.Repayment.class
+    );
+
+    private static final ObjectInputFilter FILTER = ObjectInputFilter.Config.createFilter(
+            "kofer.**;java.util.ArrayList;java.time.*;java.lang.*;!*");
+
+    public Snapshot read(File file) {
+        try (ObjectInputStream ois = new LegacyObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            ois.setObjectInputFilter(FILTER);
+            Object loaded = ois.readObject();
+            if (!(loaded instanceof kofer.store.legacy.DataStore legacy)) {
+                throw new DataAccessException("legacy migration", "Corrupted data store: invalid format");
+            }
+
+            List<Transaction> transactions = new ArrayList<>();
+            if (legacy.getTransactions() != null) {
+                legacy.getTransactions().forEach(transaction -> transactions.add(transaction.toModel()));
+            }
+            List<Loan> loans = new ArrayList<>();
+            if (legacy.getLoans() != null) {
+                legacy.getLoans().forEach(loan -> loans.add(loan.toModel()));
+            }
+            // Written before the journal existed, so it contains no journal records
+            return new Snapshot(transactions, loans, 0);
+        } catch (DataAccessException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new DataAccessException("legacy migration", e.getMessage(), e);
+        }
+    }
+
+    private static class LegacyObjectInputStream extends ObjectInputStream {
+        LegacyObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            Class<?> legacy = LEGACY_CLASSES.get(desc.getName());
+            return legacy != null ? legacy : super.resolveClass(desc);
+        }
+    }
+}
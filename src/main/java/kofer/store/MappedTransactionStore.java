@@ -0,0 +1,472 @@
+package kofer.store;
+
+import kofer.exception.DataAccessException;
+import kofer.model.Transaction;
+import kofer.util.SymbolTable;
+import kofer.util.TransactionType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Keeps transactions in fixed-width records inside memory-mapped, time-partitioned
+ * segment files. Nothing is decoded on open: cursors read fields straight from the
+ * mappings and a {@link Transaction} is only created when a record is materialized,
+ * so heap use and startup time do not grow with the number of stored transactions.
+ *
+ * Each partition covers one period of the configured {@link PartitionScheme} and keeps
+ * its min/max date and per-type totals in its header. Date-bounded cursors skip
+ * partitions outside the range, totals over fully covered partitions are read from
+ * the headers, and a write only touches the partition of the transaction's date.
+ *
+ * Layout of the segment directory:
+ * <ul>
+ *   <li>{@code transactions-<period>.seg} - one partition, see {@link TransactionSegment}</li>
+ *   <li>{@code categories.dict} - category names referenced by code</li>
+ *   <li>{@code descriptions.heap} - descriptions referenced by byte offset</li>
+ * </ul>
+ */
+public class MappedTransactionStore implements TransactionStore {
+    private static final TransactionType[] TYPES = TransactionType.values();
+
+    private final Path directory;
+    private final PartitionScheme scheme;
+    private final NavigableMap<String, TransactionSegment> partitions = new TreeMap<>();
+    private final DictionaryFile categories;
+    private final StringHeap descriptions;
+    private final Set<TransactionSegment> uncommitted = new LinkedHashSet<>();
+    private boolean groupCommit;
+
+    public MappedTransactionStore(Path directory) {
+        this(directory, PartitionScheme.configured());
+    }
+
+    public MappedTransactionStore(Path directory, PartitionScheme scheme) {
+        this.directory = directory;
+        this.scheme = scheme;
+
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "transactions-*.seg")) {
+                for (Path file : stream) {
+                    String name = file.getFileName().toString();
+                    partitions.put(name.substring("transactions-".length(), name.length() - ".seg".length()),
+                            new TransactionSegment(file));
+                }
+            }
+        } catch (IOException e) {
+            throw new DataAccessException("segment directory open", e.getMessage(), e);
+        }
+        this.categories = new DictionaryFile(directory.resolve("categories.dict"), SymbolTable.CATEGORIES);
+        this.descriptions = new StringHeap(directory.resolve("descriptions.heap"));
+    }
+
+    /**
+     * @return true if {@code directory} holds at least one transaction segment.
+     */
+    public static boolean exists(Path directory) {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "transactions-*.seg")) {
+            return stream.iterator().hasNext();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Removes all segment files. Used once their contents have been moved into a snapshot.
+     */
+    public static void delete(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                Files.delete(file);
+            }
+            Files.delete(directory);
+        } catch (IOException e) {
+            throw new DataAccessException("segment directory delete", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return the number of partition files currently open.
+     */
+    public int getPartitionCount() {
+        return partitions.size();
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (TransactionSegment partition : partitions.values()) {
+            size += partition.count();
+        }
+        return size;
+    }
+
+    @Override
+    public Transaction get(int index) {
+        if (index >= 0) {
+            int remaining = index;
+            for (TransactionSegment partition : partitions.values()) {
+                if (remaining < partition.count()) {
+                    return decode(partition.records(), partition.offsetOf(remaining));
+                }
+                remaining -= partition.count();
+            }
+        }
+        throw new IndexOutOfBoundsException("Transaction index " + index + " out of range");
+    }
+
+    @Override
+    public void append(Transaction transaction) {
+        TransactionSegment partition = partitionFor(transaction.getDate());
+
+        UUID id = UUID.fromString(transaction.getId());
+        ByteBuffer record = ByteBuffer.allocate(TransactionSegment.RECORD_SIZE);
+        record.putLong(TransactionSegment.ID_MSB, id.getMostSignificantBits());
+        record.putLong(TransactionSegment.ID_LSB, id.getLeastSignificantBits());
+        record.putLong(TransactionSegment.AMOUNT_CENTS, transaction.getAmountCents());
+        record.putLong(TransactionSegment.DESCRIPTION_OFFSET, descriptions.append(transaction.getDescription()));
+        record.putInt(TransactionSegment.EPOCH_DAY, SnapshotFormat.toEpochDay(transaction.getDate()));
+        record.putInt(TransactionSegment.CATEGORY_CODE, categories.code(transaction.getCategoryId()));
+        record.put(TransactionSegment.TYPE, (byte) transaction.getType().ordinal());
+
+        partition.append(record);
+        uncommitted.add(partition);
+        if (!groupCommit) {
+            commit();
+        }
+    }
+
+    @Override
+    public void setGroupCommit(boolean groupCommit) {
+        if (!groupCommit) {
+            commit();
+        }
+        this.groupCommit = groupCommit;
+    }
+
+    @Override
+    public void commit() {
+        if (uncommitted.isEmpty()) {
+            return;
+        }
+        // Records only become visible once the descriptions they point to are durable
+        descriptions.force();
+        for (TransactionSegment partition : uncommitted) {
+            partition.commit();
+        }
+        uncommitted.clear();
+    }
+
+    @Override
+    public TransactionCursor cursor() {
+        return cursor(Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public TransactionCursor cursor(int fromEpochDay, int toEpochDay) {
+        List<TransactionSegment> selected = new ArrayList<>();
+        List<Integer> starts = new ArrayList<>();
+        int start = 0;
+        for (TransactionSegment partition : partitions.values()) {
+            if (partition.overlaps(fromEpochDay, toEpochDay)) {
+                selected.add(partition);
+                starts.add(start);
+            }
+            start += partition.count();
+        }
+        return new MappedCursor(selected, starts, fromEpochDay, toEpochDay);
+    }
+
+    /**
+     * Walks the partitions in range from the latest back. Partitions whose dates overlap, as
+     * after a change of partition scheme, are read together; each group's records in range are
+     * sorted by date and position when the cursor reaches it, and returned backwards.
+     */
+    @Override
+    public TransactionCursor newestFirst(int fromEpochDay, int toEpochDay) {
+        List<TransactionSegment> selected = new ArrayList<>();
+        Map<TransactionSegment, Integer> starts = new HashMap<>();
+        int start = 0;
+        for (TransactionSegment partition : partitions.values()) {
+            if (partition.overlaps(fromEpochDay, toEpochDay)) {
+                selected.add(partition);
+                starts.put(partition, start);
+            }
+            start += partition.count();
+        }
+        selected.sort(Comparator.comparingInt(TransactionSegment::maxEpochDay).reversed());
+
+        List<List<TransactionSegment>> groups = new ArrayList<>();
+        int groupMin = Integer.MAX_VALUE;
+        for (TransactionSegment partition : selected) {
+            if (groups.isEmpty() || partition.maxEpochDay() < groupMin) {
+                groups.add(new ArrayList<>());
+                groupMin = Integer.MAX_VALUE;
+            }
+            groups.get(groups.size() - 1).add(partition);
+            groupMin = Math.min(groupMin, partition.minEpochDay());
+        }
+        return new NewestFirstCursor(groups, starts, fromEpochDay, toEpochDay);
+    }
+
+    @Override
+    public TransactionCursor slice(int start, int end) {
+        List<TransactionSegment> selected = new ArrayList<>();
+        List<Integer> starts = new ArrayList<>();
+        int partitionStart = 0;
+        for (TransactionSegment partition : partitions.values()) {
+            int partitionEnd = partitionStart + partition.count();
+            if (partitionEnd > start && partitionStart < end) {
+                selected.add(partition);
+                starts.add(partitionStart);
+            }
+            partitionStart = partitionEnd;
+        }
+        return new MappedCursor(selected, starts, Integer.MIN_VALUE, Integer.MAX_VALUE, start, end);
+    }
+
+    @Override
+    public long total(TransactionType type, int fromEpochDay, int toEpochDay) {
+        long totalCents = 0;
+        for (TransactionSegment partition : partitions.values()) {
+            if (partition.within(fromEpochDay, toEpochDay)) {
+                totalCents += partition.totalCents(type);
+            } else if (partition.overlaps(fromEpochDay, toEpochDay)) {
+                MappedCursor cursor = new MappedCursor(List.of(partition), List.of(0), fromEpochDay, toEpochDay);
+                while (cursor.next()) {
+                    if (cursor.type() == type) {
+                        totalCents += cursor.amountCents();
+                    }
+                }
+            }
+        }
+        return totalCents;
+    }
+
+    @Override
+    public List<Transaction> asList() {
+        return new AbstractList<>() {
+            @Override
+            public Transaction get(int index) {
+                return MappedTransactionStore.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return MappedTransactionStore.this.size();
+            }
+        };
+    }
+
+    @Override
+    public boolean isSelfPersisting() {
+        return true;
+    }
+
+    private TransactionSegment partitionFor(LocalDate date) {
+        String key = scheme.keyOf(date);
+        return partitions.computeIfAbsent(key,
+                k -> new TransactionSegment(directory.resolve("transactions-" + k + ".seg")));
+    }
+
+    private Transaction decode(ByteBuffer records, int offset) {
+        UUID id = new UUID(records.getLong(offset + TransactionSegment.ID_MSB), records.getLong(offset + TransactionSegment.ID_LSB));
+        return new Transaction(
+                id.toString(),
+                LocalDate.ofEpochDay(records.getInt(offset + TransactionSegment.EPOCH_DAY)),
+                records.getLong(offset + TransactionSegment.AMOUNT_CENTS),
+                TYPES[records.get(offset + TransactionSegment.TYPE)],
+                categories.symbol(records.getInt(offset + TransactionSegment.CATEGORY_CODE)),
+                descriptions.read(records.getLong(offset + TransactionSegment.DESCRIPTION_OFFSET)));
+    }
+
+    /**
+     * Walks a list of partitions in order, given the store position of each partition's
+     * first record. Records outside the date range are skipped,
+     * except in partitions whose header shows they lie entirely inside it.
+     */
+    private class MappedCursor extends RecordCursor {
+        private final List<TransactionSegment> selected;
+        private final List<Integer> starts;
+        private final int fromEpochDay;
+        private final int toEpochDay;
+        private final int startPosition;
+        private final int endPosition;
+
+        private int partitionIndex = 0;
+        private int recordIndex = -1;
+        private TransactionSegment partition;
+        private boolean filtering;
+        private int limit;
+
+        MappedCursor(List<TransactionSegment> selected, List<Integer> starts, int fromEpochDay, int toEpochDay) {
+            this(selected, starts, fromEpochDay, toEpochDay, 0, Integer.MAX_VALUE);
+        }
+
+        /**
+         * Also restricts the cursor to store positions {@code [startPosition, endPosition)}.
+         */
+        MappedCursor(List<TransactionSegment> selected, List<Integer> starts, int fromEpochDay, int toEpochDay,
+                     int startPosition, int endPosition) {
+            this.selected = selected;
+            this.starts = starts;
+            this.fromEpochDay = fromEpochDay;
+            this.toEpochDay = toEpochDay;
+            this.startPosition = startPosition;
+            this.endPosition = endPosition;
+        }
+
+        @Override
+        public boolean next() {
+            while (partitionIndex < selected.size()) {
+                if (partition == null) {
+                    partition = selected.get(partitionIndex);
+                    records = partition.records();
+                    filtering = !partition.within(fromEpochDay, toEpochDay);
+                    int partitionStart = starts.get(partitionIndex);
+                    recordIndex = Math.max(-1, startPosition - partitionStart - 1);
+                    limit = (int) Math.min(Integer.MAX_VALUE, (long) endPosition - partitionStart);
+                }
+                while (recordIndex + 1 < Math.min(partition.count(), limit)) {
+                    offset = partition.offsetOf(++recordIndex);
+                    if (!filtering) {
+                        return true;
+                    }
+                    int day = epochDay();
+                    if (day >= fromEpochDay && day <= toEpochDay) {
+                        return true;
+                    }
+                }
+                partitionIndex++;
+                recordIndex = -1;
+                partition = null;
+                records = null;
+            }
+            return false;
+        }
+
+        @Override
+        public int position() {
+            return starts.get(partitionIndex) + recordIndex;
+        }
+    }
+
+    /**
+     * Reads the fields of the record at {@code offset} in {@code records}.
+     */
+    private abstract class RecordCursor implements TransactionCursor {
+        ByteBuffer records;
+        int offset;
+
+        @Override
+        public int epochDay() {
+            return records.getInt(offset + TransactionSegment.EPOCH_DAY);
+        }
+
+        @Override
+        public long amountCents() {
+            return records.getLong(offset + TransactionSegment.AMOUNT_CENTS);
+        }
+
+        @Override
+        public TransactionType type() {
+            return TYPES[records.get(offset + TransactionSegment.TYPE)];
+        }
+
+        @Override
+        public String category() {
+            return categories.value(records.getInt(offset + TransactionSegment.CATEGORY_CODE));
+        }
+
+        @Override
+        public int categoryId() {
+            return categories.symbol(records.getInt(offset + TransactionSegment.CATEGORY_CODE));
+        }
+
+        @Override
+        public Transaction materialize() {
+            return decode(records, offset);
+        }
+    }
+
+    /**
+     * Returns groups of partitions newest first, sorting each group's records when it is reached.
+     */
+    private class NewestFirstCursor extends RecordCursor {
+        private final List<List<TransactionSegment>> groups;
+        private final Map<TransactionSegment, Integer> starts;
+        private final int fromEpochDay;
+        private final int toEpochDay;
+
+        private int groupIndex = -1;
+        private TransactionSegment[] segments;
+        private int[] segmentStarts;
+        // Epoch day in the high, store position in the low 32 bits, ascending
+        private long[] entries = new long[0];
+        private int next = -1;
+        private int position = -1;
+
+        NewestFirstCursor(List<List<TransactionSegment>> groups, Map<TransactionSegment, Integer> starts,
+                          int fromEpochDay, int toEpochDay) {
+            this.groups = groups;
+            this.starts = starts;
+            this.fromEpochDay = fromEpochDay;
+            this.toEpochDay = toEpochDay;
+        }
+
+        @Override
+        public boolean next() {
+            while (next < 0) {
+                if (++groupIndex >= groups.size()) {
+                    return false;
+                }
+                sortGroup(groups.get(groupIndex));
+            }
+            position = (int) entries[next--];
+            int segment = Arrays.binarySearch(segmentStarts, position);
+            if (segment < 0) {
+                segment = -segment - 2;
+            }
+            records = segments[segment].records();
+            offset = segments[segment].offsetOf(position - segmentStarts[segment]);
+            return true;
+        }
+
+        private void sortGroup(List<TransactionSegment> group) {
+            segments = group.stream().sorted(Comparator.comparing(starts::get)).toArray(TransactionSegment[]::new);
+            segmentStarts = new int[segments.length];
+            int count = 0;
+            for (TransactionSegment segment : segments) {
+                count += segment.count();
+            }
+            entries = new long[count];
+            count = 0;
+            for (int i = 0; i < segments.length; i++) {
+                segmentStarts[i] = starts.get(segments[i]);
+                ByteBuffer buffer = segments[i].records();
+                for (int record = 0; record < segments[i].count(); record++) {
+                    int day = buffer.getInt(segments[i].offsetOf(record) + TransactionSegment.EPOCH_DAY);
+                    if (day >= fromEpochDay && day <= toEpochDay) {
+                        entries[count++] = (long) day << 32 | (segmentStarts[i] + record);
+                    }
+                }
+            }
+            Arrays.sort(entries, 0, count);
+            next = count - 1;
+        }
+
+        @Override
+        public int position() {
+            return position;
+        }
+    }
+}
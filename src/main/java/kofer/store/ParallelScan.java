@@ -0,0 +1,123 @@
+package kofer.store;
+
+import kofer.exception.ValidationException;
+import kofer.model.Loan;
+import kofer.model.Transaction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
+
+/**
+ * Runs scans over a whole {@link TransactionStore} on the common fork/join pool. The store is
+ * split with a {@link TransactionSpliterator} and every leaf reads its range through a cursor.
+ * Partial results are combined in position order, and sums are exact integers, so the results
+ * are exactly those of a sequential scan.
+ *
+ * {@link DataStore} switches to these scans once the store holds {@link #configuredThreshold()}
+ * records. The threshold is read from the {@code kofer.parallel.threshold} system property or
+ * the {@code KOFER_PARALLEL_THRESHOLD} environment variable.
+ */
+final class ParallelScan {
+    static final int DEFAULT_THRESHOLD = 250_000;
+
+    private ParallelScan() {
+    }
+
+    static int configuredThreshold() {
+        String value = System.getProperty("kofer.parallel.threshold", System.getenv("KOFER_PARALLEL_THRESHOLD"));
+        if (value == null || value.isBlank()) {
+            return DEFAULT_THRESHOLD;
+        }
+        try {
+            int threshold = Integer.parseInt(value.trim());
+            if (threshold >= 0) {
+                return threshold;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new ValidationException("parallel threshold", value, "a non-negative whole number");
+    }
+
+    static AggregationEngine.Result aggregate(AggregationEngine engine, TransactionStore store,
+                                              List<Loan> loans, boolean parallelLoans) {
+        AggregationEngine.Result result = new AggregateTask(engine, new TransactionSpliterator(store)).invoke();
+        if (parallelLoans) {
+            return result.merge(aggregateLoans(engine, loans));
+        }
+        engine.addLoans(result, loans);
+        return result;
+    }
+
+    static AggregationEngine.Result aggregateLoans(AggregationEngine engine, List<Loan> loans) {
+        return loans.parallelStream().collect(engine::newResult, engine::addLoan, AggregationEngine.Result::merge);
+    }
+
+    /**
+     * @return the records matching {@code filter}, in position order.
+     */
+    static List<Transaction> filter(TransactionStore store, Predicate<TransactionCursor> filter) {
+        return new FilterTask(filter, new TransactionSpliterator(store)).invoke();
+    }
+
+    private static class AggregateTask extends RecursiveTask<AggregationEngine.Result> {
+        private static final long serialVersionUID = 1L;
+
+        private final AggregationEngine engine;
+        private final TransactionSpliterator range;
+
+        AggregateTask(AggregationEngine engine, TransactionSpliterator range) {
+            this.engine = engine;
+            this.range = range;
+        }
+
+        @Override
+        protected AggregationEngine.Result compute() {
+            TransactionSpliterator prefix = range.trySplit();
+            if (prefix == null) {
+                AggregationEngine.Result result = engine.newResult();
+                engine.addTransactions(result, range.cursor());
+                return result;
+            }
+            AggregateTask first = new AggregateTask(engine, prefix);
+            first.fork();
+            AggregationEngine.Result second = new AggregateTask(engine, range).compute();
+            return first.join().merge(second);
+        }
+    }
+
+    private static class FilterTask extends RecursiveTask<List<Transaction>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Predicate<TransactionCursor> filter;
+        private final TransactionSpliterator range;
+
+        FilterTask(Predicate<TransactionCursor> filter, TransactionSpliterator range) {
+            this.filter = filter;
+            this.range = range;
+        }
+
+        @Override
+        protected List<Transaction> compute() {
+            TransactionSpliterator prefix = range.trySplit();
+            if (prefix == null) {
+                List<Transaction> matches = new ArrayList<>();
+                TransactionCursor cursor = range.cursor();
+                while (cursor.next()) {
+                    if (filter.test(cursor)) {
+                        matches.add(cursor.materialize());
+                    }
+                }
+                return matches;
+            }
+            FilterTask first = new FilterTask(filter, prefix);
+            first.fork();
+            List<Transaction> second = new FilterTask(filter, range).compute();
+            List<Transaction> matches = first.join();
+            matches.addAll(second);
+            return matches;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package kofer.store;
+
+import kofer.exception.ValidationException;
+
+import java.time.LocalDate;
+
+/**
+ * Granularity of the time partitions used by {@link MappedTransactionStore}.
+ * Configured with the {@code kofer.partition} system property or the {@code KOFER_PARTITION}
+ * environment variable; defaults to {@link #MONTH}. Changing it only affects where new
+ * records are written: existing partitions stay readable and prunable through their headers.
+ */
+public enum PartitionScheme {
+    DAY, MONTH, YEAR;
+
+    public static PartitionScheme configured() {
+        String value = System.getProperty("kofer.partition", System.getenv("KOFER_PARTITION"));
+        if (value == null || value.isBlank()) {
+            return MONTH;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("partition scheme", value, "day, month or year");
+        }
+    }
+
+    /**
+     * @return a key that sorts chronologically, e.g. {@code 2024-01} for {@link #MONTH}.
+     */
+    public String keyOf(LocalDate date) {
+        return switch (this) {
+            case DAY -> date.toString();
+            case MONTH -> String.format("%04d-%02d", date.getYear(), date.getMonthValue());
+            case YEAR -> String.format("%04d", date.getYear());
+        };
+    }
+}
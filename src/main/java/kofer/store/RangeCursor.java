@@ -0,0 +1,65 @@
+package kofer.store;
+
+import kofer.model.Transaction;
+import kofer.util.TransactionType;
+
+/**
+ * Restricts another cursor to records dated within an inclusive epoch-day range.
+ */
+class RangeCursor implements TransactionCursor {
+    private final TransactionCursor delegate;
+    private final int fromEpochDay;
+    private final int toEpochDay;
+
+    RangeCursor(TransactionCursor delegate, int fromEpochDay, int toEpochDay) {
+        this.delegate = delegate;
+        this.fromEpochDay = fromEpochDay;
+        this.toEpochDay = toEpochDay;
+    }
+
+    @Override
+    public boolean next() {
+        while (delegate.next()) {
+            int day = delegate.epochDay();
+            if (day >= fromEpochDay && day <= toEpochDay) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int position() {
+        return delegate.position();
+    }
+
+    @Override
+    public int epochDay() {
+        return delegate.epochDay();
+    }
+
+    @Override
+    public long amountCents() {
+        return delegate.amountCents();
+    }
+
+    @Override
+    public TransactionType type() {
+        return delegate.type();
+    }
+
+    @Override
+    public String category() {
+        return delegate.category();
+    }
+
+    @Override
+    public int categoryId() {
+        return delegate.categoryId();
+    }
+
+    @Override
+    public Transaction materialize() {
+        return delegate.materialize();
+    }
+}
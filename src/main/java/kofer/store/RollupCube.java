@@ -0,0 +1,264 @@
+package kofer.store;
+
+import kofer.util.SymbolTable;
+import kofer.util.TransactionType;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Transaction totals and counts pre-aggregated into buckets keyed by (period, category, type),
+ * at a daily and a monthly grain. {@link DataStore} adds every transaction to the cube as it is
+ * added and saves the cube with each snapshot, so period reports read one entry per bucket
+ * instead of scanning the records. Amounts are in cents.
+ *
+ * A bucket key packs the period in the high 32 bits, the category id offset by one in the next
+ * 30 bits and the type ordinal in the lowest 2 bits, so the buckets of the sorted map are ordered
+ * by period, then category, then type, and a date range is a contiguous sub-map.
+ */
+public class RollupCube {
+    private static final TransactionType[] TYPES = TransactionType.values();
+    private static final int TYPE_BITS = 2;
+
+    public enum Period {
+        DAILY, MONTHLY;
+
+        /**
+         * @return the key of the period containing this epoch day.
+         */
+        int key(int epochDay) {
+            if (this == DAILY) {
+                return epochDay;
+            }
+            LocalDate date = LocalDate.ofEpochDay(epochDay);
+            return date.getYear() * 12 + date.getMonthValue() - 1;
+        }
+
+        /**
+         * @return the first day of the period with this key.
+         */
+        LocalDate start(int key) {
+            return this == DAILY ? LocalDate.ofEpochDay(key) : LocalDate.of(Math.floorDiv(key, 12), Math.floorMod(key, 12) + 1, 1);
+        }
+    }
+
+    private final NavigableMap<Long, Cell> daily = new TreeMap<>();
+    private final NavigableMap<Long, Cell> monthly = new TreeMap<>();
+    private int transactionCount;
+
+    /**
+     * Builds the cube from every record under the cursor.
+     */
+    static RollupCube of(TransactionCursor cursor) {
+        RollupCube cube = new RollupCube();
+        while (cursor.next()) {
+            cube.add(cursor.epochDay(), cursor.categoryId(), cursor.type(), cursor.amountCents());
+        }
+        return cube;
+    }
+
+    void add(int epochDay, int categoryId, TransactionType type, long amountCents) {
+        add(daily, Period.DAILY.key(epochDay), categoryId, type.ordinal(), amountCents, 1);
+        add(monthly, Period.MONTHLY.key(epochDay), categoryId, type.ordinal(), amountCents, 1);
+        transactionCount++;
+    }
+
+    private static void add(NavigableMap<Long, Cell> buckets, int period, int categoryId, int type, long total, long count) {
+        Cell cell = buckets.computeIfAbsent(key(period, categoryId, type), k -> new Cell());
+        cell.total += total;
+        cell.count += count;
+    }
+
+    private static long key(int period, int categoryId, int type) {
+        return (long) period << Integer.SIZE | (long) (categoryId + 1) << TYPE_BITS | type;
+    }
+
+    private static int period(long key) {
+        return (int) (key >> Integer.SIZE);
+    }
+
+    private static int categoryId(long key) {
+        return (int) ((key & 0xFFFF_FFFFL) >>> TYPE_BITS) - 1;
+    }
+
+    private static int type(long key) {
+        return (int) key & ((1 << TYPE_BITS) - 1);
+    }
+
+    /**
+     * @return the number of transactions the cube holds.
+     */
+    public int getTransactionCount() {
+        return transactionCount;
+    }
+
+    /**
+     * @return the number of buckets at this grain.
+     */
+    public int getBucketCount(Period period) {
+        return buckets(period).size();
+    }
+
+    /**
+     * Reads the buckets of every period overlapping {@code fromDay} to {@code toDay}, inclusive,
+     * one row per period and category. {@link Integer#MIN_VALUE} and {@link Integer#MAX_VALUE}
+     * leave that side of the range open. Monthly rows cover whole months, including days outside
+     * the range. The cost is proportional to the number of buckets read, not to the number of records.
+     *
+     * @return the rows in period order, then in category id order.
+     */
+    public List<Row> rows(Period period, int fromDay, int toDay) {
+        return rows(period, fromDay, toDay, false, SymbolTable.NO_SYMBOL);
+    }
+
+    /**
+     * Like {@link #rows(Period, int, int)}, but only for one category.
+     */
+    public List<Row> rows(Period period, int fromDay, int toDay, int categoryId) {
+        return rows(period, fromDay, toDay, true, categoryId);
+    }
+
+    private List<Row> rows(Period period, int fromDay, int toDay, boolean oneCategory, int categoryId) {
+        List<Row> rows = new ArrayList<>();
+        if (fromDay > toDay) {
+            return rows;
+        }
+        long from = fromDay == Integer.MIN_VALUE ? Long.MIN_VALUE : (long) period.key(fromDay) << Integer.SIZE;
+        long to = toDay == Integer.MAX_VALUE ? Long.MAX_VALUE : ((long) period.key(toDay) + 1) << Integer.SIZE;
+        Row row = null;
+        for (Map.Entry<Long, Cell> bucket : buckets(period).subMap(from, true, to, false).entrySet()) {
+            long key = bucket.getKey();
+            if (oneCategory && categoryId(key) != categoryId) {
+                continue;
+            }
+            if (row == null || row.period != period(key) || row.categoryId != categoryId(key)) {
+                row = new Row(period, period(key), categoryId(key));
+                rows.add(row);
+            }
+            row.totalByType[type(key)] += bucket.getValue().total;
+            row.countByType[type(key)] += bucket.getValue().count;
+        }
+        return rows;
+    }
+
+    private NavigableMap<Long, Cell> buckets(Period period) {
+        return period == Period.DAILY ? daily : monthly;
+    }
+
+    /**
+     * Encodes the daily buckets as the payload of {@link SnapshotFormat#SECTION_ROLLUP}, with
+     * categories as dictionary codes. Monthly buckets are derived from them when read.
+     */
+    void write(DataOutputStream out, IntUnaryOperator categoryCode) throws IOException {
+        out.writeInt(transactionCount);
+        out.writeInt(daily.size());
+        for (Map.Entry<Long, Cell> bucket : daily.entrySet()) {
+            long key = bucket.getKey();
+            out.writeInt(period(key));
+            out.writeInt(categoryCode.applyAsInt(categoryId(key)));
+            out.writeByte(type(key));
+            out.writeLong(bucket.getValue().total);
+            out.writeLong(bucket.getValue().count);
+        }
+    }
+
+    static RollupCube read(ByteBuffer in, IntUnaryOperator categoryId) {
+        RollupCube cube = new RollupCube();
+        cube.transactionCount = in.getInt();
+        int buckets = in.getInt();
+        for (int i = 0; i < buckets; i++) {
+            int epochDay = in.getInt();
+            int category = categoryId.applyAsInt(in.getInt());
+            int type = in.get();
+            long total = in.getLong();
+            long count = in.getLong();
+            add(cube.daily, epochDay, category, type, total, count);
+            add(cube.monthly, Period.MONTHLY.key(epochDay), category, type, total, count);
+        }
+        return cube;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RollupCube other)) {
+            return false;
+        }
+        return transactionCount == other.transactionCount && daily.equals(other.daily);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(transactionCount, daily);
+    }
+
+    private static final class Cell {
+        long total;
+        long count;
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Cell other && total == other.total && count == other.count;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(total, count);
+        }
+    }
+
+    /**
+     * Totals of one category within one period, summed over the buckets of each type.
+     */
+    public static final class Row {
+        private final Period grain;
+        private final int period;
+        private final int categoryId;
+        private final long[] totalByType = new long[TYPES.length];
+        private final long[] countByType = new long[TYPES.length];
+
+        private Row(Period grain, int period, int categoryId) {
+            this.grain = grain;
+            this.period = period;
+            this.categoryId = categoryId;
+        }
+
+        /**
+         * @return the first day of the period.
+         */
+        public LocalDate getPeriodStart() {
+            return grain.start(period);
+        }
+
+        public int getCategoryId() {
+            return categoryId;
+        }
+
+        public long getTotal(TransactionType type) {
+            return totalByType[type.ordinal()];
+        }
+
+        public long getCount(TransactionType type) {
+            return countByType[type.ordinal()];
+        }
+
+        public long getCount() {
+            long count = 0;
+            for (long typeCount : countByType) {
+                count += typeCount;
+            }
+            return count;
+        }
+    }
+}
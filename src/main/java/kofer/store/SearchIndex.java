@@ -0,0 +1,309 @@
+package kofer.store;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Inverted index from the terms of transaction descriptions and categories to the store
+ * positions of the transactions holding them, as split by {@link SearchQuery#forEachTerm}.
+ * The index covers positions {@code [0, documentCount)}; {@link DataStore} adds new records
+ * as they are appended and catches up on any it missed before searching.
+ *
+ * Terms read from a snapshot stay in their encoded form, with a table of term offsets, and are
+ * found by binary search; only the postings of the terms a search touches are decoded, so
+ * opening a large index costs nothing beyond reading its section. Terms of records added
+ * since are kept in a sorted map and merged with the encoded ones when the index is written.
+ *
+ * Section layout (all integers big-endian):
+ * <pre>
+ *   int    document count
+ *   int    term count
+ *   int[]  offset of each term entry from the start of the entries, in term order
+ *   entries: [int length][UTF-8 term][int posting count][int byte length][varint position gaps]
+ * </pre>
+ * Terms are ordered by code point, which is also the order of their UTF-8 bytes.
+ */
+final class SearchIndex {
+    static final Comparator<String> TERM_ORDER = SearchIndex::compareCodePoints;
+
+    private static final int[] NONE = new int[0];
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+
+    // Encoded terms read from a snapshot; null if there were none
+    private final ByteBuffer encoded;
+    private final int encodedTermCount;
+    private final int entriesStart;
+
+    private final NavigableMap<String, Postings> added = new TreeMap<>(TERM_ORDER);
+    private int documentCount;
+
+    SearchIndex() {
+        this(null);
+    }
+
+    private SearchIndex(ByteBuffer encoded) {
+        this.encoded = encoded;
+        this.documentCount = encoded == null ? 0 : encoded.getInt(0);
+        this.encodedTermCount = encoded == null ? 0 : encoded.getInt(Integer.BYTES);
+        this.entriesStart = HEADER_BYTES + encodedTermCount * Integer.BYTES;
+    }
+
+    /**
+     * Wraps the payload of {@link SnapshotFormat#SECTION_SEARCH_INDEX} without decoding it.
+     */
+    static SearchIndex read(ByteBuffer in) {
+        return new SearchIndex(in.slice());
+    }
+
+    /**
+     * @return the number of store positions covered, starting from zero.
+     */
+    int getDocumentCount() {
+        return documentCount;
+    }
+
+    /**
+     * Indexes the record at {@code position}, which must not be below {@link #getDocumentCount()}.
+     */
+    void add(int position, String category, String description) {
+        if (position < documentCount) {
+            throw new IllegalArgumentException("Position " + position + " is already indexed");
+        }
+        SearchQuery.forEachTerm(category, term -> added.computeIfAbsent(term, t -> new Postings()).add(position));
+        SearchQuery.forEachTerm(description, term -> added.computeIfAbsent(term, t -> new Postings()).add(position));
+        documentCount = position + 1;
+    }
+
+    /**
+     * @return the positions holding every term of the query, in ascending order.
+     */
+    int[] search(SearchQuery query) {
+        int[][] matches = new int[query.size()][];
+        for (int i = 0; i < query.size(); i++) {
+            matches[i] = query.isPrefix(i) ? prefixPositions(query.term(i)) : positions(query.term(i));
+            if (matches[i].length == 0) {
+                return NONE;
+            }
+        }
+        // Intersecting the shortest lists first keeps every intermediate result small
+        Arrays.sort(matches, Comparator.comparingInt(list -> list.length));
+        int[] result = matches[0];
+        for (int i = 1; i < matches.length && result.length > 0; i++) {
+            result = intersect(result, matches[i]);
+        }
+        return result;
+    }
+
+    private int[] positions(String term) {
+        int index = lowerBound(term);
+        int[] fromEncoded = index < encodedTermCount && term.equals(encodedTerm(index)) ? decodePostings(index) : NONE;
+        Postings fromAdded = added.get(term);
+        if (fromAdded == null) {
+            return fromEncoded;
+        }
+        // Added positions all follow the encoded ones
+        int[] positions = Arrays.copyOf(fromEncoded, fromEncoded.length + fromAdded.size);
+        System.arraycopy(fromAdded.positions, 0, positions, fromEncoded.length, fromAdded.size);
+        return positions;
+    }
+
+    private int[] prefixPositions(String prefix) {
+        BitSet positions = new BitSet(documentCount);
+        for (int index = lowerBound(prefix); index < encodedTermCount && encodedTerm(index).startsWith(prefix); index++) {
+            for (int position : decodePostings(index)) {
+                positions.set(position);
+            }
+        }
+        for (Map.Entry<String, Postings> entry : added.tailMap(prefix, true).entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            Postings postings = entry.getValue();
+            for (int i = 0; i < postings.size; i++) {
+                positions.set(postings.positions[i]);
+            }
+        }
+        return positions.stream().toArray();
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * @return the index of the first encoded term not ordered before {@code term}.
+     */
+    private int lowerBound(String term) {
+        int low = 0;
+        int high = encodedTermCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compareCodePoints(encodedTerm(middle), term) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int entry(int index) {
+        return entriesStart + encoded.getInt(HEADER_BYTES + index * Integer.BYTES);
+    }
+
+    private String encodedTerm(int index) {
+        int entry = entry(index);
+        int length = encoded.getInt(entry);
+        return new String(encoded.array(), encoded.arrayOffset() + entry + Integer.BYTES, length, StandardCharsets.UTF_8);
+    }
+
+    private int[] decodePostings(int index) {
+        int entry = entry(index);
+        int cursor = entry + Integer.BYTES + encoded.getInt(entry);
+        int[] positions = new int[encoded.getInt(cursor)];
+        cursor += 2 * Integer.BYTES;
+        int position = 0;
+        for (int i = 0; i < positions.length; i++) {
+            int gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = encoded.get(cursor++);
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            position += gap;
+            positions[i] = position;
+        }
+        return positions;
+    }
+
+    /**
+     * Encodes the index as the payload of {@link SnapshotFormat#SECTION_SEARCH_INDEX}. An index
+     * with no terms added since it was read is written back as it was read.
+     */
+    void write(DataOutputStream out) throws IOException {
+        if (added.isEmpty() && encoded != null) {
+            out.writeInt(documentCount);
+            out.write(encoded.array(), encoded.arrayOffset() + Integer.BYTES, encoded.limit() - Integer.BYTES);
+            return;
+        }
+
+        List<Integer> offsets = new ArrayList<>();
+        ByteArrayOutputStream entries = new ByteArrayOutputStream();
+        DataOutputStream entryOut = new DataOutputStream(entries);
+        int index = 0;
+        for (Map.Entry<String, Postings> entry : added.entrySet()) {
+            for (; index < encodedTermCount && compareCodePoints(encodedTerm(index), entry.getKey()) < 0; index++) {
+                offsets.add(entryOut.size());
+                copyEntry(index, entryOut);
+            }
+            int[] positions = entry.getValue().trimmed();
+            if (index < encodedTermCount && encodedTerm(index).equals(entry.getKey())) {
+                positions = positions(entry.getKey());
+                index++;
+            }
+            offsets.add(entryOut.size());
+            writeEntry(entryOut, entry.getKey(), positions);
+        }
+        for (; index < encodedTermCount; index++) {
+            offsets.add(entryOut.size());
+            copyEntry(index, entryOut);
+        }
+
+        out.writeInt(documentCount);
+        out.writeInt(offsets.size());
+        for (int offset : offsets) {
+            out.writeInt(offset);
+        }
+        entries.writeTo(out);
+    }
+
+    private void copyEntry(int index, DataOutputStream out) throws IOException {
+        int start = entry(index);
+        int postingsStart = start + Integer.BYTES + encoded.getInt(start);
+        int end = postingsStart + 2 * Integer.BYTES + encoded.getInt(postingsStart + Integer.BYTES);
+        out.write(encoded.array(), encoded.arrayOffset() + start, end - start);
+    }
+
+    private static void writeEntry(DataOutputStream out, String term, int[] positions) throws IOException {
+        byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream gaps = new ByteArrayOutputStream(positions.length * 2);
+        int previous = 0;
+        for (int position : positions) {
+            int gap = position - previous;
+            previous = position;
+            while ((gap & ~0x7F) != 0) {
+                gaps.write((gap & 0x7F) | 0x80);
+                gap >>>= 7;
+            }
+            gaps.write(gap);
+        }
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.writeInt(positions.length);
+        out.writeInt(gaps.size());
+        gaps.writeTo(out);
+    }
+
+    private static int compareCodePoints(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int x = a.codePointAt(i);
+            int y = b.codePointAt(j);
+            if (x != y) {
+                return Integer.compare(x, y);
+            }
+            i += Character.charCount(x);
+            j += Character.charCount(y);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    /**
+     * Ascending positions of one term, each held once.
+     */
+    private static final class Postings {
+        int[] positions = new int[2];
+        int size;
+
+        void add(int position) {
+            if (size > 0 && positions[size - 1] == position) {
+                return;
+            }
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            positions[size++] = position;
+        }
+
+        int[] trimmed() {
+            return Arrays.copyOf(positions, size);
+        }
+    }
+}
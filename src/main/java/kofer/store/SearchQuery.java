@@ -0,0 +1,131 @@
+package kofer.store;
+
+import kofer.exception.ValidationException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Search terms that must all match. Text is split into terms at every character that is not
+ * a letter or digit and compared in lower case; a word ending in {@code *} matches every term
+ * starting with it. Used with the {@link SearchIndex} for transactions and directly on loans.
+ */
+public final class SearchQuery {
+    private final List<String> terms;
+    private final List<Boolean> prefixes;
+
+    private SearchQuery(List<String> terms, List<Boolean> prefixes) {
+        this.terms = terms;
+        this.prefixes = prefixes;
+    }
+
+    /**
+     * @throws ValidationException if the words contain no letter or digit.
+     */
+    public static SearchQuery parse(List<String> words) {
+        List<String> terms = new ArrayList<>();
+        List<Boolean> prefixes = new ArrayList<>();
+        for (String word : words) {
+            boolean prefix = word.endsWith("*");
+            int before = terms.size();
+            forEachTerm(prefix ? word.substring(0, word.length() - 1) : word, term -> {
+                terms.add(term);
+                prefixes.add(false);
+            });
+            if (prefix && terms.size() > before) {
+                // Only the last term of the word is open-ended, as in "e-mail*"
+                prefixes.set(terms.size() - 1, true);
+            }
+        }
+        if (terms.isEmpty()) {
+            throw new ValidationException("search terms", String.join(" ", words), "at least one word of letters or digits");
+        }
+        return new SearchQuery(List.copyOf(terms), List.copyOf(prefixes));
+    }
+
+    /**
+     * Splits text into lower-case terms, passing every occurrence to {@code action}.
+     */
+    static void forEachTerm(String text, Consumer<String> action) {
+        if (text == null) {
+            return;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i < lower.length(); ) {
+            int codePoint = lower.codePointAt(i);
+            if (Character.isLetterOrDigit(codePoint)) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                action.accept(lower.substring(start, i));
+                start = -1;
+            }
+            i += Character.charCount(codePoint);
+        }
+        if (start >= 0) {
+            action.accept(lower.substring(start));
+        }
+    }
+
+    int size() {
+        return terms.size();
+    }
+
+    String term(int index) {
+        return terms.get(index);
+    }
+
+    boolean isPrefix(int index) {
+        return prefixes.get(index);
+    }
+
+    /**
+     * @return true if every term matches a term of at least one of the texts.
+     */
+    public boolean matches(List<String> texts) {
+        for (int i = 0; i < terms.size(); i++) {
+            if (!matchesTerm(i, texts)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if at least one term matches a term of the text.
+     */
+    public boolean matchesAny(String text) {
+        for (int i = 0; i < terms.size(); i++) {
+            if (matchesTerm(i, List.of(text == null ? "" : text))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean matchesTerm(int index, List<String> texts) {
+        String wanted = terms.get(index);
+        boolean prefix = prefixes.get(index);
+        boolean[] found = {false};
+        for (String text : texts) {
+            forEachTerm(text, term -> found[0] |= prefix ? term.startsWith(wanted) : term.equals(wanted));
+            if (found[0]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        List<String> shown = new ArrayList<>();
+        for (int i = 0; i < terms.size(); i++) {
+            shown.add(prefixes.get(i) ? terms.get(i) + "*" : terms.get(i));
+        }
+        return String.join(" ", shown);
+    }
+}
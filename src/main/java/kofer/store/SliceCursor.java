@@ -0,0 +1,65 @@
+package kofer.store;
+
+import kofer.model.Transaction;
+import kofer.util.TransactionType;
+
+/**
+ * Cursor over a range of store positions that reads each record through {@link TransactionStore#get(int)}.
+ * Used for stores that have no cheaper way to start at an arbitrary position.
+ */
+class SliceCursor implements TransactionCursor {
+    private final TransactionStore store;
+    private final int end;
+    private int position;
+    private Transaction current;
+
+    SliceCursor(TransactionStore store, int start, int end) {
+        this.store = store;
+        this.position = start - 1;
+        this.end = end;
+    }
+
+    @Override
+    public boolean next() {
+        if (position + 1 >= end) {
+            return false;
+        }
+        current = store.get(++position);
+        return true;
+    }
+
+    @Override
+    public int position() {
+        return position;
+    }
+
+    @Override
+    public int epochDay() {
+        return (int) current.getDate().toEpochDay();
+    }
+
+    @Override
+    public long amountCents() {
+        return current.getAmountCents();
+    }
+
+    @Override
+    public TransactionType type() {
+        return current.getType();
+    }
+
+    @Override
+    public String category() {
+        return current.getCategory();
+    }
+
+    @Override
+    public int categoryId() {
+        return current.getCategoryId();
+    }
+
+    @Override
+    public Transaction materialize() {
+        return current;
+    }
+}
@@ -0,0 +1,93 @@
+package kofer.store;
+
+import kofer.model.Loan;
+import kofer.model.Transaction;
+
+import java.util.List;
+
+/**
+ * In-memory contents of a data store snapshot, as produced by a snapshot reader
+ * and consumed by {@link SnapshotWriter}.
+ */
+public class Snapshot {
+    private final List<Transaction> transactions;
+    private final List<Loan> loans;
+    private final long journalSequence;
+    private final Aggregates aggregates;
+    private final RollupCube rollup;
+    private final SearchIndex searchIndex;
+    private final int[] dateOrder;
+
+    public Snapshot(List<Transaction> transactions, List<Loan> loans, long journalSequence) {
+        this(transactions, loans, journalSequence, null);
+    }
+
+    public Snapshot(List<Transaction> transactions, List<Loan> loans, long journalSequence, Aggregates aggregates) {
+        this(transactions, loans, journalSequence, aggregates, null);
+    }
+
+    public Snapshot(List<Transaction> transactions, List<Loan> loans, long journalSequence,
+                    Aggregates aggregates, RollupCube rollup) {
+        this(transactions, loans, journalSequence, aggregates, rollup, null);
+    }
+
+    Snapshot(List<Transaction> transactions, List<Loan> loans, long journalSequence,
+             Aggregates aggregates, RollupCube rollup, SearchIndex searchIndex) {
+        this(transactions, loans, journalSequence, aggregates, rollup, searchIndex, null);
+    }
+
+    Snapshot(List<Transaction> transactions, List<Loan> loans, long journalSequence,
+             Aggregates aggregates, RollupCube rollup, SearchIndex searchIndex, int[] dateOrder) {
+        this.transactions = transactions;
+        this.loans = loans;
+        this.journalSequence = journalSequence;
+        this.aggregates = aggregates;
+        this.rollup = rollup;
+        this.searchIndex = searchIndex;
+        this.dateOrder = dateOrder;
+    }
+
+    public List<Transaction> getTransactions() {
+        return transactions;
+    }
+
+    public List<Loan> getLoans() {
+        return loans;
+    }
+
+    /**
+     * @return the sequence number of the last journal record folded into this snapshot.
+     */
+    public long getJournalSequence() {
+        return journalSequence;
+    }
+
+    /**
+     * @return the aggregates saved with this snapshot, or null if it was written without them.
+     */
+    public Aggregates getAggregates() {
+        return aggregates;
+    }
+
+    /**
+     * @return the rollup cube saved with this snapshot, or null if it was written without one.
+     */
+    public RollupCube getRollup() {
+        return rollup;
+    }
+
+    /**
+     * @return the search index saved with this snapshot, or null if it was written without one.
+     */
+    SearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    /**
+     * @return the position of every transaction ordered by date and then position, or null if
+     * this snapshot was written without a date index.
+     */
+    int[] getDateOrder() {
+        return dateOrder;
+    }
+}
@@ -0,0 +1,152 @@
+package kofer.store;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import kofer.util.SymbolTable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Constants and primitive codecs shared by {@link SnapshotWriter} and {@link SnapshotReader}.
+ *
+ * File layout (all integers big-endian):
+ * <pre>
+ *   int    magic ("KOFR")
+ *   short  format version
+ *   long   journal sequence contained in the snapshot
+ *   repeated sections: [byte id][int length][payload][int crc32 of payload]
+ *   byte   SECTION_END
+ * </pre>
+ * Unknown section ids are skipped, so newer writers can add sections without
+ * breaking older readers. In version 2 a section id may carry {@link #COMPRESSED}, in
+ * which case its payload is in the {@link BlockCompression} layout and is inflated with
+ * the preset dictionary from the preceding {@link #SECTION_PRESET_DICTIONARY}. Files
+ * without compressed sections are still written as version 1. Dates are epoch-day ints, amounts are fixed-point
+ * cents, ids are two longs, and categories and lender names are references
+ * into the dictionary section.
+ *
+ * When present, {@link #SECTION_AGGREGATES} is the first section and is never compressed.
+ * Its payload has a fixed size, so the totals it holds can be read from the start of the
+ * file without reading the records.
+ *
+ * {@link #SECTION_DATE_INDEX} holds an int count followed by the position of every record of
+ * {@link #SECTION_TRANSACTIONS}, ordered by date and then position, so that a store's date index
+ * is restored in one pass instead of being sorted on every load.
+ */
+final class SnapshotFormat {
+    static final int MAGIC = 0x4B4F4652;
+    static final short VERSION = 2;
+    static final short VERSION_UNCOMPRESSED = 1;
+
+    static final byte SECTION_END = 0;
+    static final byte SECTION_DICTIONARY = 1;
+    static final byte SECTION_TRANSACTIONS = 2;
+    static final byte SECTION_LOANS = 3;
+    static final byte SECTION_PRESET_DICTIONARY = 4;
+    static final byte SECTION_AGGREGATES = 5;
+    static final byte SECTION_ROLLUP = 6;
+    static final byte SECTION_SEARCH_INDEX = 7;
+    static final byte SECTION_DATE_INDEX = 8;
+
+    /**
+     * Flag or-ed into a section id whose payload is block-compressed.
+     */
+    static final byte COMPRESSED = 0x40;
+
+    static final int NO_REFERENCE = -1;
+
+    private SnapshotFormat() {
+    }
+
+    static String sectionName(byte id) {
+        return switch ((byte) (id & ~COMPRESSED)) {
+            case SECTION_DICTIONARY -> "dictionary";
+            case SECTION_TRANSACTIONS -> "transactions";
+            case SECTION_LOANS -> "loans";
+            case SECTION_PRESET_DICTIONARY -> "preset dictionary";
+            case SECTION_AGGREGATES -> "aggregates";
+            case SECTION_ROLLUP -> "rollup";
+            case SECTION_SEARCH_INDEX -> "search index";
+            case SECTION_DATE_INDEX -> "date index";
+            default -> "section " + id;
+        };
+    }
+
+    static int toEpochDay(LocalDate date) {
+        return Math.toIntExact(date.toEpochDay());
+    }
+
+    static void writeId(DataOutputStream out, String id) throws IOException {
+        UUID uuid = UUID.fromString(id);
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    static String readId(ByteBuffer in) {
+        return new UUID(in.getLong(), in.getLong()).toString();
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NO_REFERENCE);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length == NO_REFERENCE) {
+            return null;
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    /**
+     * Assigns dense int codes to interned names while a snapshot is being written.
+     * Symbol ids are mapped to codes through one array per {@link SymbolTable},
+     * so records are encoded without hashing strings.
+     */
+    static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+        private final Map<SymbolTable, int[]> codesBySymbol = new IdentityHashMap<>();
+
+        int code(SymbolTable table, int symbol) {
+            if (symbol == SymbolTable.NO_SYMBOL) {
+                return NO_REFERENCE;
+            }
+            int[] symbolCodes = codesBySymbol.get(table);
+            if (symbolCodes == null || symbol >= symbolCodes.length) {
+                int previous = symbolCodes == null ? 0 : symbolCodes.length;
+                symbolCodes = symbolCodes == null ? new int[table.size()] : Arrays.copyOf(symbolCodes, table.size());
+                Arrays.fill(symbolCodes, previous, symbolCodes.length, NO_REFERENCE);
+                codesBySymbol.put(table, symbolCodes);
+            }
+            if (symbolCodes[symbol] == NO_REFERENCE) {
+                symbolCodes[symbol] = codes.computeIfAbsent(table.name(symbol), v -> {
+                    values.add(v);
+                    return values.size() - 1;
+                });
+            }
+            return symbolCodes[symbol];
+        }
+
+        List<String> values() {
+            return values;
+        }
+    }
+}
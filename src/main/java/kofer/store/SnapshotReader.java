@@ -0,0 +1,251 @@
+package kofer.store;
+
+import kofer.exception.DataAccessException;
+import kofer.model.Loan;
+import kofer.model.Repayment;
+import kofer.model.Transaction;
+import kofer.util.SymbolTable;
+import kofer.util.TransactionType;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import static kofer.store.SnapshotFormat.*;
+
+/**
+ * Reads a {@link Snapshot} written by {@link SnapshotWriter}.
+ * Every section is checksummed; a mismatch is reported as a {@link DataAccessException}.
+ */
+public class SnapshotReader {
+    private static final TransactionType[] TYPES = TransactionType.values();
+    private static final int UNRESOLVED = -2;
+
+    private final DataInputStream in;
+    private String[] dictionary = new String[0];
+    private int[] categoryIds = new int[0];
+    private byte[] presetDictionary = new byte[0];
+    private short version;
+    private final Set<Byte> skipped = new HashSet<>();
+
+    public SnapshotReader(InputStream in) {
+        this.in = new DataInputStream(in);
+    }
+
+    /**
+     * Leaves sections out of {@link #read(TransactionStore)}. They are passed over without being
+     * checksummed, decompressed or decoded, and the snapshot holds what it would without them.
+     */
+    SnapshotReader skip(byte... sectionIds) {
+        for (byte sectionId : sectionIds) {
+            skipped.add(sectionId);
+        }
+        return this;
+    }
+
+    /**
+     * @return the format version of the file, once the header has been read.
+     */
+    public short getVersion() {
+        return version;
+    }
+
+    public Snapshot read() throws IOException {
+        return read(null);
+    }
+
+    /**
+     * Reads the snapshot, appending its transactions to {@code target} as they are decoded.
+     * The returned snapshot then has no transactions of its own. A null target collects them
+     * in the snapshot as {@link #read()} does.
+     */
+    public Snapshot read(TransactionStore target) throws IOException {
+        long journalSequence = readHeader();
+
+        List<Transaction> transactions = new ArrayList<>();
+        List<Loan> loans = new ArrayList<>();
+        Aggregates aggregates = null;
+        RollupCube rollup = null;
+        SearchIndex searchIndex = null;
+        int[] dateOrder = null;
+
+        byte sectionId;
+        while ((sectionId = in.readByte()) != SECTION_END) {
+            if (skipped.contains((byte) (sectionId & ~COMPRESSED))) {
+                // Payload and checksum
+                in.skipNBytes(in.readInt() + (long) Integer.BYTES);
+                continue;
+            }
+            ByteBuffer section = readSection(sectionId);
+            if ((sectionId & COMPRESSED) != 0) {
+                sectionId &= ~COMPRESSED;
+                section = ByteBuffer.wrap(BlockCompression.decompress(section, presetDictionary));
+            }
+            switch (sectionId) {
+                case SECTION_PRESET_DICTIONARY -> presetDictionary = section.array();
+                case SECTION_DICTIONARY -> {
+                    dictionary = decodeDictionary(section);
+                    categoryIds = new int[dictionary.length];
+                    Arrays.fill(categoryIds, UNRESOLVED);
+                }
+                case SECTION_TRANSACTIONS -> transactions = decodeTransactions(section, target);
+                case SECTION_LOANS -> loans = decodeLoans(section);
+                case SECTION_AGGREGATES -> aggregates = Aggregates.read(section);
+                case SECTION_ROLLUP -> rollup = RollupCube.read(section, this::categoryId);
+                case SECTION_SEARCH_INDEX -> searchIndex = SearchIndex.read(section);
+                case SECTION_DATE_INDEX -> dateOrder = decodeDateOrder(section);
+                default -> {
+                    // Written by a newer version; safe to ignore
+                }
+            }
+        }
+
+        return new Snapshot(transactions, loans, journalSequence, aggregates, rollup, searchIndex, dateOrder);
+    }
+
+    /**
+     * Reads only the header and the aggregates section that leads the file.
+     *
+     * @return a snapshot without records that carries the journal sequence and the aggregates,
+     * which are null if the file does not start with them.
+     */
+    public Snapshot readSummary() throws IOException {
+        long journalSequence = readHeader();
+        Aggregates aggregates = in.readByte() == SECTION_AGGREGATES ? Aggregates.read(readSection(SECTION_AGGREGATES)) : null;
+        return new Snapshot(List.of(), List.of(), journalSequence, aggregates);
+    }
+
+    /**
+     * Reads only the section framing and reports the stored and decoded size of each section,
+     * without decompressing or decoding any records.
+     */
+    public List<StorageStats.Section> inspect() throws IOException {
+        readHeader();
+        List<StorageStats.Section> sections = new ArrayList<>();
+        byte sectionId;
+        while ((sectionId = in.readByte()) != SECTION_END) {
+            ByteBuffer section = readSection(sectionId);
+            boolean compressed = (sectionId & COMPRESSED) != 0;
+            int rawLength = compressed ? BlockCompression.rawLength(section) : section.remaining();
+            sections.add(new StorageStats.Section(sectionName(sectionId), section.remaining(), rawLength, compressed));
+        }
+        return sections;
+    }
+
+    private long readHeader() throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new DataAccessException("snapshot read", "not a kofer data file");
+        }
+        version = in.readShort();
+        if (version > VERSION) {
+            throw new DataAccessException("snapshot read",
+                    "data file format version " + version + " is newer than supported version " + VERSION);
+        }
+        return in.readLong();
+    }
+
+    private ByteBuffer readSection(byte sectionId) throws IOException {
+        int length = in.readInt();
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if ((int) crc.getValue() != in.readInt()) {
+            throw new DataAccessException("snapshot read", "checksum mismatch in section " + sectionId);
+        }
+        return ByteBuffer.wrap(payload);
+    }
+
+    private String[] decodeDictionary(ByteBuffer in) {
+        String[] values = new String[in.getInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readString(in);
+        }
+        return values;
+    }
+
+    private List<Transaction> decodeTransactions(ByteBuffer in, TransactionStore target) {
+        int count = in.getInt();
+        List<Transaction> transactions = target == null ? new ArrayList<>(count) : new ArrayList<>();
+        ColumnarTransactionStore columns = target instanceof ColumnarTransactionStore
+                ? (ColumnarTransactionStore) target : null;
+        for (int i = 0; i < count; i++) {
+            long msb = in.getLong();
+            long lsb = in.getLong();
+            int epochDay = in.getInt();
+            long amount = in.getLong();
+            TransactionType type = TYPES[in.get()];
+            int category = categoryId(in.getInt());
+            String description = readString(in);
+            if (columns != null) {
+                columns.append(msb, lsb, epochDay, amount, type, category, description);
+                continue;
+            }
+            Transaction transaction = new Transaction(new UUID(msb, lsb).toString(),
+                    LocalDate.ofEpochDay(epochDay), amount, type, category, description);
+            if (target != null) {
+                target.append(transaction);
+            } else {
+                transactions.add(transaction);
+            }
+        }
+        return transactions;
+    }
+
+    private int[] decodeDateOrder(ByteBuffer in) {
+        int[] positions = new int[in.getInt()];
+        in.asIntBuffer().get(positions);
+        return positions;
+    }
+
+    private List<Loan> decodeLoans(ByteBuffer in) {
+        int count = in.getInt();
+        List<Loan> loans = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String id = readId(in);
+            String lender = lookup(in.getInt());
+            long borrowed = in.getLong();
+            LocalDate date = LocalDate.ofEpochDay(in.getInt());
+            String description = readString(in);
+            boolean closed = in.get() != 0;
+
+            int repaymentCount = in.getInt();
+            List<Repayment> repayments = new ArrayList<>(repaymentCount);
+            for (int r = 0; r < repaymentCount; r++) {
+                long amount = in.getLong();
+                LocalDate repaidOn = LocalDate.ofEpochDay(in.getInt());
+                repayments.add(new Repayment(amount, repaidOn, readString(in)));
+            }
+
+            loans.add(new Loan(id, lender, borrowed, date, description, repayments, closed));
+        }
+        return loans;
+    }
+
+    /**
+     * Interns each dictionary entry used as a category once, instead of once per record.
+     */
+    private int categoryId(int code) {
+        if (code == NO_REFERENCE) {
+            return SymbolTable.NO_SYMBOL;
+        }
+        if (categoryIds[code] == UNRESOLVED) {
+            categoryIds[code] = SymbolTable.CATEGORIES.intern(dictionary[code]);
+        }
+        return categoryIds[code];
+    }
+
+    private String lookup(int code) {
+        return code == NO_REFERENCE ? null : dictionary[code];
+    }
+}
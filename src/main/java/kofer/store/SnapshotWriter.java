@@ -0,0 +1,154 @@
+package kofer.store;
+
+import kofer.model.Loan;
+import kofer.model.Repayment;
+import kofer.model.Transaction;
+import kofer.util.SymbolTable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+import static kofer.store.SnapshotFormat.*;
+
+/**
+ * Writes a {@link Snapshot} in the compact binary format described in {@link SnapshotFormat}.
+ */
+public class SnapshotWriter {
+    private final DataOutputStream out;
+    private final Compression compression;
+    private byte[] presetDictionary;
+
+    public SnapshotWriter(OutputStream out) {
+        this(out, Compression.NONE);
+    }
+
+    public SnapshotWriter(OutputStream out, Compression compression) {
+        this.out = new DataOutputStream(out);
+        this.compression = compression;
+    }
+
+    public void write(Snapshot snapshot) throws IOException {
+        Dictionary dictionary = new Dictionary();
+
+        // Record sections are encoded first so the dictionary is complete before it is written
+        byte[] transactions = encodeTransactions(snapshot, dictionary);
+        byte[] loans = encodeLoans(snapshot, dictionary);
+        byte[] rollup = snapshot.getRollup() == null ? null : encodeRollup(snapshot.getRollup(), dictionary);
+
+        out.writeInt(MAGIC);
+        out.writeShort(compression == Compression.NONE ? VERSION_UNCOMPRESSED : VERSION);
+        out.writeLong(snapshot.getJournalSequence());
+        if (snapshot.getAggregates() != null) {
+            // First and never compressed, so that it can be read without the rest of the file
+            writeSection(SECTION_AGGREGATES, encodeAggregates(snapshot.getAggregates()));
+        }
+        if (compression == Compression.DEFLATE) {
+            presetDictionary = BlockCompression.buildDictionary(snapshot, dictionary.values());
+            writeSection(SECTION_PRESET_DICTIONARY, presetDictionary);
+        }
+        writeSection(SECTION_DICTIONARY, encodeDictionary(dictionary));
+        writeSection(SECTION_TRANSACTIONS, transactions);
+        writeSection(SECTION_LOANS, loans);
+        if (rollup != null) {
+            writeSection(SECTION_ROLLUP, rollup);
+        }
+        if (snapshot.getSearchIndex() != null) {
+            writeSection(SECTION_SEARCH_INDEX, encodeSearchIndex(snapshot.getSearchIndex()));
+        }
+        if (snapshot.getDateOrder() != null) {
+            writeSection(SECTION_DATE_INDEX, encodeDateOrder(snapshot.getDateOrder()));
+        }
+        out.writeByte(SECTION_END);
+        out.flush();
+    }
+
+    private byte[] encodeDictionary(Dictionary dictionary) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream section = new DataOutputStream(bytes);
+        section.writeInt(dictionary.values().size());
+        for (String value : dictionary.values()) {
+            writeString(section, value);
+        }
+        return bytes.toByteArray();
+    }
+
+    private byte[] encodeTransactions(Snapshot snapshot, Dictionary dictionary) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(snapshot.getTransactions().size() * 48);
+        DataOutputStream section = new DataOutputStream(bytes);
+        section.writeInt(snapshot.getTransactions().size());
+        for (Transaction transaction : snapshot.getTransactions()) {
+            writeId(section, transaction.getId());
+            section.writeInt(toEpochDay(transaction.getDate()));
+            section.writeLong(transaction.getAmountCents());
+            section.writeByte(transaction.getType().ordinal());
+            section.writeInt(dictionary.code(SymbolTable.CATEGORIES, transaction.getCategoryId()));
+            writeString(section, transaction.getDescription());
+        }
+        return bytes.toByteArray();
+    }
+
+    private byte[] encodeLoans(Snapshot snapshot, Dictionary dictionary) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream section = new DataOutputStream(bytes);
+        section.writeInt(snapshot.getLoans().size());
+        for (Loan loan : snapshot.getLoans()) {
+            writeId(section, loan.getId());
+            section.writeInt(dictionary.code(SymbolTable.LENDERS, loan.getLenderId()));
+            section.writeLong(loan.getAmountBorrowedCents());
+            section.writeInt(toEpochDay(loan.getDateBorrowed()));
+            writeString(section, loan.getDescription());
+            section.writeBoolean(loan.isClosed());
+            section.writeInt(loan.getRepayments().size());
+            for (Repayment repayment : loan.getRepayments()) {
+                section.writeLong(repayment.getAmountCents());
+                section.writeInt(toEpochDay(repayment.getDate()));
+                writeString(section, repayment.getNote());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private byte[] encodeAggregates(Aggregates aggregates) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        aggregates.write(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    private byte[] encodeRollup(RollupCube rollup, Dictionary dictionary) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        rollup.write(new DataOutputStream(bytes), category -> dictionary.code(SymbolTable.CATEGORIES, category));
+        return bytes.toByteArray();
+    }
+
+    private byte[] encodeSearchIndex(SearchIndex searchIndex) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        searchIndex.write(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    private byte[] encodeDateOrder(int[] positions) {
+        ByteBuffer bytes = ByteBuffer.allocate(Integer.BYTES * (positions.length + 1));
+        bytes.putInt(positions.length);
+        bytes.asIntBuffer().put(positions);
+        return bytes.array();
+    }
+
+    private void writeSection(byte id, byte[] payload) throws IOException {
+        if (presetDictionary != null && id != SECTION_PRESET_DICTIONARY) {
+            id |= COMPRESSED;
+            payload = BlockCompression.compress(payload, presetDictionary);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        out.writeByte(id);
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.writeInt((int) crc.getValue());
+    }
+}
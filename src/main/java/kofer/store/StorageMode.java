@@ -0,0 +1,38 @@
+package kofer.store;
+
+import kofer.exception.ValidationException;
+
+/**
+ * Selects where a {@link DataStore} keeps its transactions.
+ * Configured with the {@code kofer.storage} system property or the {@code KOFER_STORAGE}
+ * environment variable; defaults to {@link #SNAPSHOT}.
+ */
+public enum StorageMode {
+    /**
+     * Transactions are loaded onto the heap from the snapshot and journal.
+     */
+    SNAPSHOT,
+
+    /**
+     * Transactions are loaded from the snapshot and journal into off-heap columns,
+     * see {@link ColumnarTransactionStore}.
+     */
+    COLUMNAR,
+
+    /**
+     * Transactions stay in memory-mapped fixed-width segment files and are decoded on access.
+     */
+    MAPPED;
+
+    public static StorageMode configured() {
+        String value = System.getProperty("kofer.storage", System.getenv("KOFER_STORAGE"));
+        if (value == null || value.isBlank()) {
+            return SNAPSHOT;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("storage mode", value, "snapshot, columnar or mapped");
+        }
+    }
+}
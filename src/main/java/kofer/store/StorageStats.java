@@ -0,0 +1,122 @@
+package kofer.store;
+
+import java.util.List;
+
+/**
+ * Point-in-time description of what a {@link DataStore} occupies on disk,
+ * as reported by {@code kofer stats storage}.
+ */
+public class StorageStats {
+
+    /**
+     * One section of the snapshot file with its size as stored and as decoded.
+     */
+    public static class Section {
+        private final String name;
+        private final long storedBytes;
+        private final long rawBytes;
+        private final boolean compressed;
+
+        public Section(String name, long storedBytes, long rawBytes, boolean compressed) {
+            this.name = name;
+            this.storedBytes = storedBytes;
+            this.rawBytes = rawBytes;
+            this.compressed = compressed;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getStoredBytes() {
+            return storedBytes;
+        }
+
+        public long getRawBytes() {
+            return rawBytes;
+        }
+
+        public boolean isCompressed() {
+            return compressed;
+        }
+    }
+
+    private final long dataFileBytes;
+    private final boolean encrypted;
+    private final int formatVersion;
+    private final Compression compression;
+    private final List<Section> sections;
+    private final long journalBytes;
+    private final int journalEntries;
+    private final long segmentBytes;
+    private final int partitionCount;
+
+    public StorageStats(long dataFileBytes, boolean encrypted, int formatVersion, Compression compression,
+                        List<Section> sections, long journalBytes, int journalEntries,
+                        long segmentBytes, int partitionCount) {
+        this.dataFileBytes = dataFileBytes;
+        this.encrypted = encrypted;
+        this.formatVersion = formatVersion;
+        this.compression = compression;
+        this.sections = sections;
+        this.journalBytes = journalBytes;
+        this.journalEntries = journalEntries;
+        this.segmentBytes = segmentBytes;
+        this.partitionCount = partitionCount;
+    }
+
+    public long getDataFileBytes() {
+        return dataFileBytes;
+    }
+
+    public boolean isEncrypted() {
+        return encrypted;
+    }
+
+    public int getFormatVersion() {
+        return formatVersion;
+    }
+
+    /**
+     * @return the compression configured for the next snapshot write.
+     */
+    public Compression getCompression() {
+        return compression;
+    }
+
+    public List<Section> getSections() {
+        return sections;
+    }
+
+    public long getStoredBytes() {
+        return sections.stream().mapToLong(Section::getStoredBytes).sum();
+    }
+
+    public long getRawBytes() {
+        return sections.stream().mapToLong(Section::getRawBytes).sum();
+    }
+
+    /**
+     * @return decoded size divided by stored size over all sections; 1.0 when nothing is compressed.
+     */
+    public double getCompressionRatio() {
+        long stored = getStoredBytes();
+        return stored == 0 ? 1.0 : (double) getRawBytes() / stored;
+    }
+
+    public long getJournalBytes() {
+        return journalBytes;
+    }
+
+    public int getJournalEntries() {
+        return journalEntries;
+    }
+
+    public long getSegmentBytes() {
+        return segmentBytes;
+    }
+
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+}
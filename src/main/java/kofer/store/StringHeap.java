@@ -0,0 +1,81 @@
+package kofer.store;
+
+import kofer.exception.DataAccessException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only file of length-prefixed UTF-8 strings addressed by byte offset.
+ * Used for the variable-length text that does not fit into fixed-width records.
+ */
+class StringHeap {
+    static final long NULL_OFFSET = -1;
+
+    private final FileChannel channel;
+    private long size;
+
+    StringHeap(Path path) {
+        try {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.size = channel.size();
+        } catch (IOException e) {
+            throw new DataAccessException("string heap open", e.getMessage(), e);
+        }
+    }
+
+    long append(String value) {
+        if (value == null) {
+            return NULL_OFFSET;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + bytes.length);
+        buffer.putInt(bytes.length).put(bytes).flip();
+
+        long offset = size;
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, size + buffer.position());
+            }
+        } catch (IOException e) {
+            throw new DataAccessException("string heap append", e.getMessage(), e);
+        }
+        size += Integer.BYTES + bytes.length;
+        return offset;
+    }
+
+    String read(long offset) {
+        if (offset == NULL_OFFSET) {
+            return null;
+        }
+        try {
+            ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+            readFully(length, offset);
+            ByteBuffer bytes = ByteBuffer.allocate(length.getInt(0));
+            readFully(bytes, offset + Integer.BYTES);
+            return new String(bytes.array(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new DataAccessException("string heap read", e.getMessage(), e);
+        }
+    }
+
+    void force() {
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new DataAccessException("string heap sync", e.getMessage(), e);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of string heap at offset " + position);
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package kofer.store;
+
+import kofer.model.Transaction;
+import kofer.util.TransactionType;
+
+/**
+ * Forward-only cursor over stored transactions.
+ * The accessors read the record the cursor is positioned on without creating
+ * a {@link Transaction}; call {@link #materialize()} only for records that are
+ * actually returned to the caller.
+ */
+public interface TransactionCursor {
+
+    /**
+     * Advances to the next record.
+     *
+     * @return false once the cursor is past the last record.
+     */
+    boolean next();
+
+    /**
+     * @return the zero-based position of the current record in its store.
+     */
+    int position();
+
+    int epochDay();
+
+    /**
+     * @return the amount of the current record, in cents.
+     */
+    long amountCents();
+
+    TransactionType type();
+
+    String category();
+
+    /**
+     * @return the category's id in {@link kofer.util.SymbolTable#CATEGORIES}, or
+     * {@link kofer.util.SymbolTable#NO_SYMBOL} if the record has none.
+     */
+    int categoryId();
+
+    /**
+     * Creates a {@link Transaction} for the current record.
+     */
+    Transaction materialize();
+}
@@ -0,0 +1,84 @@
+package kofer.store;
+
+import kofer.model.Transaction;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazily pulled pages of transactions, for listings that print records as they are read.
+ * Every stream reads from storage only as far as it is consumed, skips {@code offset} matches
+ * without materializing them where the order allows, and ends after {@code limit} records.
+ * A null filter matches every record and lets an unbounded listing skip by position.
+ */
+final class TransactionListing {
+    private TransactionListing() {
+    }
+
+    /**
+     * Lists the whole store in position order.
+     */
+    static Stream<Transaction> list(TransactionStore store, Predicate<TransactionCursor> filter, long offset, long limit) {
+        if (filter == null) {
+            int start = (int) Math.min(offset, store.size());
+            return list(store.slice(start, store.size()), null, 0, limit);
+        }
+        return list(store.cursor(), filter, offset, limit);
+    }
+
+    /**
+     * Lists the records of a cursor in its own order.
+     */
+    static Stream<Transaction> list(TransactionCursor cursor, Predicate<TransactionCursor> filter, long offset, long limit) {
+        return stream(limit, new Source() {
+            private long skipped;
+
+            @Override
+            Transaction next() {
+                while (cursor.next()) {
+                    if (filter != null && !filter.test(cursor)) {
+                        continue;
+                    }
+                    if (skipped < offset) {
+                        skipped++;
+                        continue;
+                    }
+                    return cursor.materialize();
+                }
+                return null;
+            }
+        });
+    }
+
+    private static Stream<Transaction> stream(long limit, Source source) {
+        return StreamSupport.stream(new Spliterators.AbstractSpliterator<Transaction>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            private long returned;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super Transaction> action) {
+                if (returned >= limit) {
+                    return false;
+                }
+                Transaction transaction = source.next();
+                if (transaction == null) {
+                    return false;
+                }
+                returned++;
+                action.accept(transaction);
+                return true;
+            }
+        }, false);
+    }
+
+    private abstract static class Source {
+        /**
+         * @return the next listed record, or null once there is none.
+         */
+        abstract Transaction next();
+    }
+}
@@ -0,0 +1,195 @@
+package kofer.store;
+
+import kofer.exception.DataAccessException;
+import kofer.util.TransactionType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One file of fixed-width transaction records, read through a memory mapping.
+ *
+ * Header ({@value #HEADER_SIZE} bytes):
+ * {@code [int magic][short version][short recordSize][long recordCount][int minEpochDay][int maxEpochDay]}
+ * followed by one {@code long} running total in cents per {@link TransactionType}.
+ * Appended records only become visible to other processes once {@link #commit()}
+ * has forced them to disk and then rewritten the header, so a torn append is
+ * simply ignored on the next open.
+ */
+class TransactionSegment {
+    static final int MAGIC = 0x4B534547;
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 48;
+
+    // Record field offsets
+    static final int ID_MSB = 0;
+    static final int ID_LSB = 8;
+    static final int AMOUNT_CENTS = 16;
+    static final int DESCRIPTION_OFFSET = 24;
+    static final int EPOCH_DAY = 32;
+    static final int CATEGORY_CODE = 36;
+    static final int TYPE = 40;
+
+    // Header field offsets
+    private static final int COUNT_OFFSET = 8;
+    private static final int MIN_DAY_OFFSET = 16;
+    private static final int MAX_DAY_OFFSET = 20;
+    private static final int TOTALS_OFFSET = 24;
+
+    private static final TransactionType[] TYPES = TransactionType.values();
+
+    private final Path path;
+    private final FileChannel channel;
+    private MappedByteBuffer mapped;
+    private int count;
+    private boolean dirty;
+    private int minEpochDay = Integer.MAX_VALUE;
+    private int maxEpochDay = Integer.MIN_VALUE;
+    private final long[] totalCents = new long[TYPES.length];
+
+    TransactionSegment(Path path) {
+        this.path = path;
+        try {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (channel.size() < HEADER_SIZE) {
+                writeHeader();
+                return;
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            if (header.getInt(0) != MAGIC || header.getShort(6) != RECORD_SIZE) {
+                throw new DataAccessException("segment open", "not a kofer transaction segment: " + path);
+            }
+            short version = header.getShort(4);
+            if (version != VERSION) {
+                throw new DataAccessException("segment open", "unsupported segment version " + version + ": " + path);
+            }
+            this.count = Math.toIntExact(header.getLong(COUNT_OFFSET));
+            this.minEpochDay = header.getInt(MIN_DAY_OFFSET);
+            this.maxEpochDay = header.getInt(MAX_DAY_OFFSET);
+            for (int i = 0; i < totalCents.length; i++) {
+                totalCents[i] = header.getLong(TOTALS_OFFSET + i * Long.BYTES);
+            }
+        } catch (IOException e) {
+            throw new DataAccessException("segment open", e.getMessage(), e);
+        }
+    }
+
+    Path path() {
+        return path;
+    }
+
+    int count() {
+        return count;
+    }
+
+    int minEpochDay() {
+        return minEpochDay;
+    }
+
+    int maxEpochDay() {
+        return maxEpochDay;
+    }
+
+    long totalCents(TransactionType type) {
+        return totalCents[type.ordinal()];
+    }
+
+    boolean overlaps(int fromEpochDay, int toEpochDay) {
+        return count > 0 && maxEpochDay >= fromEpochDay && minEpochDay <= toEpochDay;
+    }
+
+    boolean within(int fromEpochDay, int toEpochDay) {
+        return count > 0 && minEpochDay >= fromEpochDay && maxEpochDay <= toEpochDay;
+    }
+
+    /**
+     * @return the offset of record {@code index} in the buffer returned by {@link #records()}.
+     */
+    int offsetOf(int index) {
+        return HEADER_SIZE + index * RECORD_SIZE;
+    }
+
+    /**
+     * @return a read-only buffer covering the header and all committed records.
+     */
+    ByteBuffer records() {
+        if (mapped == null) {
+            try {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE + (long) count * RECORD_SIZE);
+            } catch (IOException e) {
+                throw new DataAccessException("segment map", e.getMessage(), e);
+            }
+        }
+        return mapped;
+    }
+
+    void append(ByteBuffer record) {
+        if ((long) offsetOf(count) + RECORD_SIZE > Integer.MAX_VALUE) {
+            throw new DataAccessException("segment append", "segment is full: " + path);
+        }
+
+        int epochDay = record.getInt(EPOCH_DAY);
+        try {
+            int position = offsetOf(count);
+            while (record.hasRemaining()) {
+                channel.write(record, position + record.position());
+            }
+
+            count++;
+            minEpochDay = Math.min(minEpochDay, epochDay);
+            maxEpochDay = Math.max(maxEpochDay, epochDay);
+            totalCents[record.get(TYPE)] += record.getLong(AMOUNT_CENTS);
+            dirty = true;
+        } catch (IOException e) {
+            throw new DataAccessException("segment append", e.getMessage(), e);
+        }
+        mapped = null;
+    }
+
+    /**
+     * Makes all records appended since the last commit durable and publishes them
+     * by rewriting the header.
+     */
+    void commit() {
+        if (!dirty) {
+            return;
+        }
+        try {
+            channel.force(false);
+            writeHeader();
+            channel.force(false);
+        } catch (IOException e) {
+            throw new DataAccessException("segment sync", e.getMessage(), e);
+        }
+        dirty = false;
+    }
+
+    void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new DataAccessException("segment close", e.getMessage(), e);
+        }
+        mapped = null;
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putShort(VERSION).putShort((short) RECORD_SIZE).putLong(count)
+                .putInt(minEpochDay).putInt(maxEpochDay);
+        for (long total : totalCents) {
+            header.putLong(total);
+        }
+        header.clear();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+}
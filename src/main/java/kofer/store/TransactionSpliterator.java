@@ -0,0 +1,83 @@
+package kofer.store;
+
+import kofer.model.Transaction;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Splits the positions of a {@link TransactionStore} into halves for parallel processing.
+ * Elements handed to {@link #tryAdvance} are materialized, so that the spliterator also
+ * works with {@link java.util.stream.StreamSupport}; primitive consumers take the remaining
+ * range as a {@link #cursor()} instead and materialize nothing.
+ */
+public class TransactionSpliterator implements Spliterator<Transaction> {
+    /**
+     * Ranges smaller than this are not split further.
+     */
+    public static final int MIN_SPLIT_SIZE = 4096;
+
+    private final TransactionStore store;
+    private int origin;
+    private final int fence;
+
+    public TransactionSpliterator(TransactionStore store) {
+        this(store, 0, store.size());
+    }
+
+    TransactionSpliterator(TransactionStore store, int origin, int fence) {
+        this.store = store;
+        this.origin = origin;
+        this.fence = fence;
+    }
+
+    /**
+     * Hands the remaining range over as a cursor; the spliterator is empty afterwards.
+     */
+    public TransactionCursor cursor() {
+        TransactionCursor cursor = store.slice(origin, fence);
+        origin = fence;
+        return cursor;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Transaction> action) {
+        if (origin >= fence) {
+            return false;
+        }
+        action.accept(store.get(origin++));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Transaction> action) {
+        TransactionCursor cursor = cursor();
+        while (cursor.next()) {
+            action.accept(cursor.materialize());
+        }
+    }
+
+    /**
+     * Splits off the first half of the remaining range, keeping the second.
+     */
+    @Override
+    public TransactionSpliterator trySplit() {
+        int middle = (origin + fence) >>> 1;
+        if (middle - origin < MIN_SPLIT_SIZE) {
+            return null;
+        }
+        TransactionSpliterator prefix = new TransactionSpliterator(store, origin, middle);
+        origin = middle;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - origin;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+    }
+}
@@ -0,0 +1,106 @@
+package kofer.store;
+
+import kofer.model.Transaction;
+import kofer.util.TransactionType;
+
+import java.util.List;
+
+/**
+ * Holds the transactions of a {@link DataStore}. Implementations decide whether
+ * records live on the heap or are decoded lazily from a backing file.
+ */
+public interface TransactionStore {
+
+    int size();
+
+    Transaction get(int index);
+
+    /**
+     * Adds a transaction. Implementations that own their persistence make it
+     * durable before returning.
+     */
+    void append(Transaction transaction);
+
+    TransactionCursor cursor();
+
+    /**
+     * Opens a cursor over the transactions dated between the two epoch days, inclusive, in position
+     * order: the records of {@link #cursor()} that lie in the range, in the same order, whatever the
+     * storage layout. Implementations that know the date bounds of their storage skip whatever lies outside.
+     */
+    default TransactionCursor cursor(int fromEpochDay, int toEpochDay) {
+        return new RangeCursor(cursor(), fromEpochDay, toEpochDay);
+    }
+
+    /**
+     * Opens a cursor over the transactions dated between the two epoch days, inclusive, newest
+     * first: latest date first, and records of the same day in the reverse of the order added.
+     * The order is the same whatever the storage layout.
+     */
+    TransactionCursor newestFirst(int fromEpochDay, int toEpochDay);
+
+    /**
+     * Opens a cursor over the records at positions {@code start}, inclusive, to {@code end}, exclusive,
+     * in position order. Cursors over disjoint slices may be read from different threads at once,
+     * as long as no record is appended meanwhile. The default materializes every record.
+     */
+    default TransactionCursor slice(int start, int end) {
+        return new SliceCursor(this, start, end);
+    }
+
+    /**
+     * Sums the amounts of one transaction type dated between the two epoch days, inclusive.
+     *
+     * @return the exact total in cents.
+     */
+    default long total(TransactionType type, int fromEpochDay, int toEpochDay) {
+        long total = 0;
+        TransactionCursor cursor = cursor(fromEpochDay, toEpochDay);
+        while (cursor.next()) {
+            if (cursor.type() == type) {
+                total += cursor.amountCents();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return the position of every record ordered by date and then position, to be saved with the
+     * snapshot, or null if this store keeps no date index.
+     */
+    default int[] dateOrder() {
+        return null;
+    }
+
+    /**
+     * Adopts an order saved from {@link #dateOrder()} for the records at the start of the store,
+     * so that the date index need not be sorted again. Stores without a date index ignore it.
+     */
+    default void restoreDateOrder(int[] positions) {
+    }
+
+    /**
+     * @return a read-only list view. For lazily decoded stores, elements are created on access.
+     */
+    List<Transaction> asList();
+
+    /**
+     * Switches group-commit mode on or off for stores that persist their own records.
+     * While on, appends are buffered and made durable together by {@link #commit()};
+     * turning it off commits.
+     */
+    default void setGroupCommit(boolean groupCommit) {
+    }
+
+    /**
+     * Makes all appends buffered in group-commit mode durable.
+     */
+    default void commit() {
+    }
+
+    /**
+     * @return true if {@link #append(Transaction)} persists the record itself,
+     *         so the owner must not journal it or include it in the snapshot.
+     */
+    boolean isSelfPersisting();
+}
@@ -0,0 +1,24 @@
+package kofer.store.legacy;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Read-only mirror of the serialized form of the original {@code kofer.store.DataStore}.
+ * Only used by {@link kofer.store.LegacySnapshotReader} to migrate {@code kofer.dat} files
+ * written with Java serialization. Field names and serialVersionUID must never change.
+ */
+public class DataStore implements Serializable {
+    private static final long serialVersionUID = 2190039566703415709L;
+
+    private List<Transaction> transactions;
+    private List<Loan> loans;
+
+    public List<Transaction> getTransactions() {
+        return transactions;
+    }
+
+    public List<Loan> getLoans() {
+        return loans;
+    }
+}
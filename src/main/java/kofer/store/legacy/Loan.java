@@ -0,0 +1,32 @@
+package kofer.store.legacy;
+
+import kofer.util.Money;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-only mirror of the serialized form of {@code kofer.model.Loan}.
+ */
+public class Loan implements Serializable {
+    private static final long serialVersionUID = 2758295095055282461L;
+
+    private String id;
+    private String lenderName;
+    private double amountBorrowed;
+    private double amountRepaid;
+    private LocalDate dateBorrowed;
+    private String description;
+    private List<Repayment> repayments;
+    private boolean isClosed;
+
+    public kofer.model.Loan toModel() {
+        List<kofer.model.Repayment> converted = new ArrayList<>();
+        if (repayments != null) {
+            repayments.forEach(repayment -> converted.add(repayment.toModel()));
+        }
+        return new kofer.model.Loan(id, lenderName, Money.fromDouble(amountBorrowed), dateBorrowed, description, converted, isClosed);
+    }
+}
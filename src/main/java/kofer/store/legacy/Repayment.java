@@ -0,0 +1,21 @@
+package kofer.store.legacy;
+
+import kofer.util.Money;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Read-only mirror of the serialized form of {@code kofer.model.Repayment}.
+ */
+public class Repayment implements Serializable {
+    private static final long serialVersionUID = -7926579446510215927L;
+
+    private double amount;
+    private LocalDate date;
+    private String note;
+
+    public kofer.model.Repayment toModel() {
+        return new kofer.model.Repayment(Money.fromDouble(amount), date, note);
+    }
+}
@@ -0,0 +1,25 @@
+package kofer.store.legacy;
+
+import kofer.util.Money;
+import kofer.util.TransactionType;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Read-only mirror of the serialized form of {@code kofer.model.Transaction}.
+ */
+public class Transaction implements Serializable {
+    private static final long serialVersionUID = 4572680722062221974L;
+
+    private String id;
+    private LocalDate date;
+    private Double amount;
+    private TransactionType type;
+    private String category;
+    private String description;
+
+    public kofer.model.Transaction toModel() {
+        return new kofer.model.Transaction(id, date, amount == null ? 0 : Money.fromDouble(amount), type, category, description);
+    }
+}
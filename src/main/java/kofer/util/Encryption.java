@@ -9,7 +9,6 @@ import javax.crypto.spec.SecretKeySpec;
 import java.io.*;
 import java.security.*;
 import java.security.spec.InvalidKeySpecException;
-import java.security.spec.KeySpec;
 
 /**
  * The Encryption class provides utility methods for securely encrypting
@@ -27,6 +26,8 @@ import java.security.spec.KeySpec;
  * Note:
  * - A unique salt and initialization vector (IV) are generated for each
  *   encryption and stored in the file alongside the encrypted data.
+ * - When a {@link KeySession} is used, the salt of an existing file is kept
+ *   on rewrite so its derived key can be reused; the IV is always fresh.
  * - Ensure the password used for encryption and decryption remains secure
  *   to maintain data confidentiality.
  *
@@ -36,17 +37,26 @@ import java.security.spec.KeySpec;
 public class Encryption {
 
     private static final int KEY_SIZE = 256;
-    private static final int IV_SIZE = 12;
-    private static final int SALT_SIZE = 16;
-    private static final int TAG_LENGTH = 128;
+    public static final int IV_SIZE = 12;
+    public static final int SALT_SIZE = 16;
+    public static final int TAG_SIZE = 16;
+    private static final int TAG_LENGTH = TAG_SIZE * 8;
     private static final int ITERATIONS = 65536;
     private static final String ALGORITHM = "AES/GCM/NoPadding";
 
     public static SecretKey getKeyFromPassword(String password, byte[] salt) throws NoSuchAlgorithmException, InvalidKeySpecException {
+        return getKeyFromPassword(password.toCharArray(), salt);
+    }
+
+    static SecretKey getKeyFromPassword(char[] password, byte[] salt) throws NoSuchAlgorithmException, InvalidKeySpecException {
         SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
-        KeySpec spec = new PBEKeySpec(password.toCharArray(), salt, ITERATIONS, KEY_SIZE);
-        SecretKey tmp = factory.generateSecret(spec);
-        return new SecretKeySpec(tmp.getEncoded(), "AES");
+        PBEKeySpec spec = new PBEKeySpec(password, salt, ITERATIONS, KEY_SIZE);
+        try {
+            SecretKey tmp = factory.generateSecret(spec);
+            return new SecretKeySpec(tmp.getEncoded(), "AES");
+        } finally {
+            spec.clearPassword();
+        }
     }
 
     public static byte[] generateSalt() {
@@ -55,13 +65,57 @@ public class Encryption {
         return salt;
     }
 
+    public static byte[] generateIv() {
+        byte[] iv = new byte[IV_SIZE];
+        new SecureRandom().nextBytes(iv);
+        return iv;
+    }
+
+    /**
+     * Encrypts one block of bytes with AES-GCM. The additional authenticated data is not
+     * encrypted but must be supplied unchanged to {@link #open} for the tag to verify.
+     *
+     * @return the ciphertext followed by the {@link #TAG_SIZE}-byte authentication tag.
+     */
+    public static byte[] seal(SecretKey key, byte[] iv, byte[] aad, byte[] data, int offset, int length) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(ALGORITHM);
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH, iv));
+        cipher.updateAAD(aad);
+        return cipher.doFinal(data, offset, length);
+    }
+
+    /**
+     * Decrypts and authenticates a block produced by {@link #seal}.
+     *
+     * @throws AEADBadTagException if the ciphertext, IV or additional data were altered or the key is wrong.
+     */
+    public static byte[] open(SecretKey key, byte[] iv, byte[] aad, byte[] sealed) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(ALGORITHM);
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH, iv));
+        cipher.updateAAD(aad);
+        return cipher.doFinal(sealed);
+    }
+
     public static void encryptToFile(Object data, String password, File outputFile) throws Exception {
         byte[] salt = generateSalt();
-        SecretKey key = getKeyFromPassword(password, salt);
+        encryptToFile(data, getKeyFromPassword(password, salt), salt, outputFile);
+    }
 
+    /**
+     * Encrypt using a key from an unlocked session. An existing file keeps its salt,
+     * so the session's cached key for it is reused instead of running PBKDF2 again.
+     */
+    public static void encryptToFile(Object data, KeySession session, File outputFile) throws Exception {
+        byte[] salt = readSalt(outputFile);
+        if (salt == null) {
+            salt = generateSalt();
+        }
+        encryptToFile(data, session.keyFor(salt), salt, outputFile);
+    }
+
+    private static void encryptToFile(Object data, SecretKey key, byte[] salt, File outputFile) throws Exception {
         Cipher cipher = Cipher.getInstance(ALGORITHM);
-        byte[] iv = new byte[IV_SIZE];
-        new SecureRandom().nextBytes(iv);
+        byte[] iv = generateIv();
         GCMParameterSpec spec = new GCMParameterSpec(TAG_LENGTH, iv);
         cipher.init(Cipher.ENCRYPT_MODE, key, spec);
 
@@ -78,10 +132,34 @@ public class Encryption {
     }
 
     public static Object decryptFromFile(String password, File inputFile) throws Exception {
+        byte[] salt = readSalt(inputFile);
+        return salt == null ? null : decryptFromFile(getKeyFromPassword(password, salt), inputFile);
+    }
+
+    /**
+     * Decrypt using a key from an unlocked session, deriving it only on the session's first use of this file's salt.
+     */
+    public static Object decryptFromFile(KeySession session, File inputFile) throws Exception {
+        byte[] salt = readSalt(inputFile);
+        return salt == null ? null : decryptFromFile(session.keyFor(salt), inputFile);
+    }
+
+    /**
+     * @return the salt stored at the start of an encrypted file, or null if there is no such file.
+     */
+    public static byte[] readSalt(File file) throws IOException {
+        if (!file.isFile() || file.length() < SALT_SIZE + IV_SIZE) {
+            return null;
+        }
+        try (FileInputStream fis = new FileInputStream(file)) {
+            return fis.readNBytes(SALT_SIZE);
+        }
+    }
+
+    private static Object decryptFromFile(SecretKey key, File inputFile) throws Exception {
         try (FileInputStream fis = new FileInputStream(inputFile)) {
-            byte[] salt = fis.readNBytes(SALT_SIZE);
+            fis.readNBytes(SALT_SIZE);
             byte[] iv = fis.readNBytes(IV_SIZE);
-            SecretKey key = getKeyFromPassword(password, salt);
 
             Cipher cipher = Cipher.getInstance(ALGORITHM);
             GCMParameterSpec spec = new GCMParameterSpec(TAG_LENGTH, iv);
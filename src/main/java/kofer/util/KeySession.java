@@ -0,0 +1,110 @@
+package kofer.util;
+
+import kofer.exception.KoferException;
+
+import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * An unlocked encryption session. PBKDF2 runs once per salt for the lifetime of the
+ * session and the derived AES keys are reused for every subsequent read and write,
+ * so repeated encrypted operations only pay for the cipher itself.
+ *
+ * Salts stay per file: {@link Encryption} keeps the salt already stored in a file
+ * when rewriting it and only draws a fresh IV, so one derivation serves every
+ * rewrite of that file. A session that is not used for {@link #getIdleTimeoutMillis()}
+ * wipes its password and keys and must be unlocked again.
+ */
+public class KeySession implements AutoCloseable {
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 5 * 60 * 1000;
+
+    private static final Timer EXPIRY_TIMER = new Timer("kofer-key-session-expiry", true);
+
+    private final long idleTimeoutMillis;
+    private final Map<ByteBuffer, SecretKey> keys = new HashMap<>();
+    private final TimerTask expiryCheck;
+    private char[] password;
+    private long lastUsed;
+
+    private KeySession(char[] password, long idleTimeoutMillis) {
+        this.password = password;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.lastUsed = System.currentTimeMillis();
+        this.expiryCheck = new TimerTask() {
+            @Override
+            public void run() {
+                expireIfIdle();
+            }
+        };
+        long period = Math.max(1000, Math.min(idleTimeoutMillis, 30_000));
+        EXPIRY_TIMER.schedule(expiryCheck, period, period);
+    }
+
+    public static KeySession unlock(String password) {
+        return unlock(password, DEFAULT_IDLE_TIMEOUT_MS);
+    }
+
+    public static KeySession unlock(String password, long idleTimeoutMillis) {
+        if (password == null || password.isEmpty()) {
+            throw new KoferException("A password is required to unlock encrypted data");
+        }
+        return new KeySession(password.toCharArray(), idleTimeoutMillis);
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public synchronized boolean isExpired() {
+        return password == null;
+    }
+
+    /**
+     * Returns the key for a file's salt, deriving it on first use in this session.
+     *
+     * @throws KoferException if the session has expired or been closed.
+     */
+    public synchronized SecretKey keyFor(byte[] salt) {
+        expireIfIdle();
+        if (password == null) {
+            throw new KoferException("Encryption session expired. Unlock again to continue.");
+        }
+        lastUsed = System.currentTimeMillis();
+
+        ByteBuffer saltKey = ByteBuffer.wrap(salt.clone());
+        SecretKey key = keys.get(saltKey);
+        if (key == null) {
+            try {
+                key = Encryption.getKeyFromPassword(password, salt);
+            } catch (Exception e) {
+                throw new KoferException("Failed to derive encryption key", e);
+            }
+            keys.put(saltKey, key);
+        }
+        return key;
+    }
+
+    /**
+     * Wipes the password and forgets all derived keys.
+     */
+    @Override
+    public synchronized void close() {
+        if (password != null) {
+            Arrays.fill(password, '\0');
+            password = null;
+        }
+        keys.clear();
+        expiryCheck.cancel();
+    }
+
+    private synchronized void expireIfIdle() {
+        if (password != null && System.currentTimeMillis() - lastUsed > idleTimeoutMillis) {
+            close();
+        }
+    }
+}
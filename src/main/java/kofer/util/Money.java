@@ -0,0 +1,95 @@
+package kofer.util;
+
+/**
+ * Money amounts are held as a {@code long} number of cents throughout the application.
+ * Sums of cents are exact and need no boxing, unlike sums of {@code double} or {@code Double}.
+ * This class converts between cents and their decimal text form, and from the
+ * {@code double} amounts found in data written by earlier versions.
+ */
+public final class Money {
+    public static final int CENTS_PER_UNIT = 100;
+
+    private Money() {
+    }
+
+    /**
+     * Parses a decimal amount such as {@code 123}, {@code 123.4} or {@code -50.00} into cents, exactly.
+     *
+     * @throws NumberFormatException if the text is not a plain decimal number with at most two
+     * fraction digits, or if it does not fit in a {@code long} number of cents.
+     */
+    public static long parse(String text) {
+        if (text == null) {
+            throw new NumberFormatException("Amount is missing");
+        }
+        String value = text.trim();
+        int length = value.length();
+        int i = 0;
+        boolean negative = false;
+        if (i < length && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+            negative = value.charAt(i) == '-';
+            i++;
+        }
+
+        int unitStart = i;
+        while (i < length && isDigit(value.charAt(i))) {
+            i++;
+        }
+        int unitDigits = i - unitStart;
+
+        long cents = 0;
+        int fractionDigits = 0;
+        if (i < length && value.charAt(i) == '.') {
+            i++;
+            while (i < length && isDigit(value.charAt(i))) {
+                if (++fractionDigits > 2) {
+                    throw new NumberFormatException("Amount has more than two decimal places: " + text);
+                }
+                cents = cents * 10 + (value.charAt(i) - '0');
+                i++;
+            }
+            if (fractionDigits == 1) {
+                cents *= 10;
+            }
+        }
+
+        if (i != length || unitDigits + fractionDigits == 0) {
+            throw new NumberFormatException("Not a decimal amount: " + text);
+        }
+        try {
+            long units = 0;
+            for (int digit = unitStart; digit < unitStart + unitDigits; digit++) {
+                units = Math.addExact(Math.multiplyExact(units, 10), value.charAt(digit) - '0');
+            }
+            long total = Math.addExact(Math.multiplyExact(units, CENTS_PER_UNIT), cents);
+            return negative ? -total : total;
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount is too large: " + text);
+        }
+    }
+
+    // ASCII only; Character.isDigit also accepts digits of other scripts
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Formats cents with exactly two decimals and no grouping, e.g. {@code -1234.50}.
+     */
+    public static String format(long cents) {
+        long abs = Math.abs(cents);
+        long fraction = abs % CENTS_PER_UNIT;
+        return (cents < 0 ? "-" : "") + abs / CENTS_PER_UNIT + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+
+    /**
+     * Rounds a {@code double} amount to the nearest cent. Only needed for data written as doubles.
+     */
+    public static long fromDouble(double amount) {
+        return Math.round(amount * CENTS_PER_UNIT);
+    }
+
+    public static double toDouble(long cents) {
+        return cents / (double) CENTS_PER_UNIT;
+    }
+}
@@ -0,0 +1,90 @@
+package kofer.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Interns names that repeat across many records, such as categories and lender names,
+ * as dense int ids. Each distinct name is held once and records keep only its id,
+ * so equality checks on these fields become int comparisons.
+ *
+ * Besides its exact id, every name belongs to a case-insensitive group identified by
+ * {@link #fold(int)}. Lookups that ignore case compare group ids instead of calling
+ * {@link String#equalsIgnoreCase(String)} on every record.
+ *
+ * Ids are only meaningful within one process; persisted data stores names or its own codes.
+ */
+public final class SymbolTable {
+    public static final int NO_SYMBOL = -1;
+
+    public static final SymbolTable CATEGORIES = new SymbolTable();
+    public static final SymbolTable LENDERS = new SymbolTable();
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final Map<String, Integer> foldedIds = new HashMap<>();
+    private volatile String[] names = new String[16];
+    private volatile int[] folds = new int[16];
+    private volatile int size;
+
+    /**
+     * @return the id of {@code name}, assigning the next id if it has not been seen yet,
+     * or {@link #NO_SYMBOL} for null.
+     */
+    public synchronized int intern(String name) {
+        if (name == null) {
+            return NO_SYMBOL;
+        }
+        Integer existing = ids.get(name);
+        if (existing != null) {
+            return existing;
+        }
+
+        int id = size;
+        if (id == names.length) {
+            names = Arrays.copyOf(names, id * 2);
+            folds = Arrays.copyOf(folds, id * 2);
+        }
+        names[id] = name;
+        folds[id] = foldedIds.computeIfAbsent(foldCase(name), key -> id);
+        ids.put(name, id);
+        size = id + 1;
+        return id;
+    }
+
+    /**
+     * @return the id of {@code name} without interning it, or {@link #NO_SYMBOL} if it is unknown.
+     */
+    public synchronized int lookup(String name) {
+        Integer id = name == null ? null : ids.get(name);
+        return id == null ? NO_SYMBOL : id;
+    }
+
+    /**
+     * @return the case-insensitive group of {@code name}, or {@link #NO_SYMBOL} if no name in that group is known.
+     */
+    public synchronized int lookupFolded(String name) {
+        Integer id = name == null ? null : foldedIds.get(foldCase(name));
+        return id == null ? NO_SYMBOL : id;
+    }
+
+    public String name(int id) {
+        return id == NO_SYMBOL ? null : names[id];
+    }
+
+    /**
+     * @return the case-insensitive group of the name with this id.
+     */
+    public int fold(int id) {
+        return id == NO_SYMBOL ? NO_SYMBOL : folds[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static String foldCase(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
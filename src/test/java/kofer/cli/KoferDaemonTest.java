@@ -0,0 +1,153 @@
+package kofer.cli;
+
+import kofer.store.KoferProcess;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Speaks the daemon protocol to a daemon running in its own process, as {@link DaemonClient} does.
+ */
+class KoferDaemonTest {
+    @TempDir
+    Path home;
+
+    private KoferProcess kofer;
+    private Process daemon;
+    private Path socket;
+
+    @BeforeEach
+    void startDaemon() throws Exception {
+        kofer = new KoferProcess(home);
+        socket = kofer.dataDirectory().resolve("daemon").resolve("kofer.sock");
+        daemon = kofer.start("daemon", "start");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (!Files.exists(socket)) {
+            assertTrue(daemon.isAlive() && System.nanoTime() < deadline, "the daemon did not start");
+            Thread.sleep(20);
+        }
+    }
+
+    @AfterEach
+    void stopDaemon() throws Exception {
+        if (daemon.isAlive()) {
+            daemon.destroy();
+            daemon.waitFor(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void answersWithTheOutputAndExitStatusOfTheCommand() throws Exception {
+        Response added = send("add", "transaction", "12.50", "food", "lunch at the café");
+        assertEquals(0, added.status);
+        assertTrue(added.out.contains("Transaction added successfully"), added.out);
+        assertEquals("", added.err);
+
+        Response failed = send("query", "amount >> 3");
+        assertEquals(1, failed.status);
+        assertTrue(failed.err.contains("Invalid query operator: '>>'"), failed.err);
+
+        Response unknown = send("frobnicate");
+        assertEquals(1, unknown.status);
+        assertTrue(unknown.err.contains("Unknown command: frobnicate"), unknown.err);
+    }
+
+    @Test
+    void theClientForwardsCommandsToTheLoadedStore() throws Exception {
+        kofer.run("add", "transaction", "-20", "fuel", "gas station");
+        assertTrue(send("list", "transactions").out.contains("gas station"));
+        assertTrue(kofer.run("list", "transactions").contains("gas station"));
+
+        Response start = send("daemon", "start");
+        assertEquals(1, start.status);
+        assertTrue(start.err.contains("A daemon is already running"), start.err);
+    }
+
+    @Test
+    void dropsMalformedConnectionsAndKeepsServing() throws Exception {
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+            assertEquals(KoferDaemon.READY, in.readByte());
+        }
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+            assertEquals(KoferDaemon.READY, in.readByte());
+            DataOutputStream out = new DataOutputStream(Channels.newOutputStream(channel));
+            out.writeInt(Integer.MAX_VALUE);
+            out.flush();
+            assertEquals(-1, in.read());
+        }
+
+        assertEquals(0, send("summary").status);
+    }
+
+    @Test
+    void stopsOnRequestAndRemovesItsSocket() throws Exception {
+        assertTrue(kofer.run("daemon", "stop").contains("Daemon stopped."));
+
+        assertTrue(daemon.waitFor(30, TimeUnit.SECONDS));
+        assertEquals(0, daemon.exitValue());
+        assertFalse(Files.exists(socket));
+        assertTrue(kofer.run("summary").contains("Financial Summary"));
+    }
+
+    private Response send(String... args) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+            assertEquals(KoferDaemon.READY, in.readByte());
+
+            ByteArrayOutputStream request = new ByteArrayOutputStream();
+            DataOutputStream encoded = new DataOutputStream(request);
+            encoded.writeInt(args.length);
+            for (String arg : args) {
+                encoded.writeUTF(arg);
+            }
+            DataOutputStream out = new DataOutputStream(Channels.newOutputStream(channel));
+            out.writeInt(request.size());
+            request.writeTo(out);
+            out.flush();
+
+            ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+            ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+            while (true) {
+                byte stream = in.readByte();
+                int length = in.readInt();
+                if (stream == KoferDaemon.EXIT) {
+                    return new Response(stdout.toString(StandardCharsets.UTF_8), stderr.toString(StandardCharsets.UTF_8), length);
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                (stream == KoferDaemon.STDERR ? stderr : stdout).write(bytes);
+            }
+        }
+    }
+
+    private static final class Response {
+        final String out;
+        final String err;
+        final int status;
+
+        Response(String out, String err, int status) {
+            this.out = out;
+            this.err = err;
+            this.status = status;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package kofer.query;
+
+import kofer.exception.ValidationException;
+import kofer.model.Transaction;
+import kofer.store.HeapTransactionStore;
+import kofer.store.TransactionCursor;
+import kofer.util.TransactionType;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class QueryParserTest {
+    private static final LocalDate DAY = LocalDate.of(2024, 1, 10);
+
+    @Test
+    void parsesComparisonsIntoTheirCanonicalForm() {
+        assertEquals("type = debit and category = grocery and amount > 50.00 and date >= 2024-01-01",
+                QueryParser.parse("type=debit and category=grocery and amount>50 and date>=2024-01-01").toString());
+        assertEquals("amount = 0.50", QueryParser.parse("AMOUNT == .5").toString());
+        assertEquals("category != \"eating out\"", QueryParser.parse("Category != 'eating out'").toString());
+        assertEquals("category = \"say \\\"hi\\\"\"", QueryParser.parse("category = \"say \\\"hi\\\"\"").toString());
+    }
+
+    @Test
+    void andBindsTighterThanOr() {
+        Expression expression = QueryParser.parse("type=credit or amount<10 and category=food");
+        assertInstanceOf(Expression.Or.class, expression);
+        assertEquals("type = credit or amount < 10.00 and category = food", expression.toString());
+
+        Expression grouped = QueryParser.parse("(type=credit or amount<10) AND category=food");
+        assertEquals(2, grouped.conjuncts().size());
+        assertEquals("(type = credit or amount < 10.00) and category = food", grouped.toString());
+        assertEquals("not (not (type = loan))", QueryParser.parse("not not type=loan").toString());
+    }
+
+    @Test
+    void nestedConjunctionsAreFlattened() {
+        Expression expression = QueryParser.parse("(amount>1 and amount<5) and (date=2024-01-10 and type=debit)");
+        assertEquals(4, expression.conjuncts().size());
+    }
+
+    @Test
+    void compiledQueriesReadTheCursor() {
+        HeapTransactionStore store = new HeapTransactionStore(new ArrayList<>());
+        store.append(new Transaction("t-1", DAY, 1200, TransactionType.DEBIT, "food", "lunch"));
+        store.append(new Transaction("t-2", DAY.plusDays(1), 5000, TransactionType.CREDIT, "salary", null));
+        store.append(new Transaction("t-3", DAY.plusDays(2), 800, TransactionType.DEBIT, "fuel", null));
+
+        assertEquals(List.of("t-1", "t-3"), matches(store, "type=debit"));
+        assertEquals(List.of("t-2", "t-3"), matches(store, "date>2024-01-10"));
+        assertEquals(List.of("t-1"), matches(store, "amount>=12 and not category=fuel and type=debit"));
+        assertEquals(List.of("t-2", "t-3"), matches(store, "amount > 40 or category = fuel"));
+        assertEquals(List.of(), matches(store, "category = \"no such category\""));
+        assertEquals(List.of("t-1", "t-2", "t-3"), matches(store, "category != \"no such category\""));
+    }
+
+    @Test
+    void reportsWhereAQueryIsMalformed() {
+        assertMessage("Invalid query: expected a value but found the end of the query", "amount >");
+        assertMessage("Invalid query: expected ')' but found the end of the query", "(type=debit");
+        assertMessage("Invalid query: expected 'and', 'or' or the end of the query but found 'amount' at position 12",
+                "type=debit amount>1");
+        assertMessage("Invalid query field: 'and'. Expected: type, category, amount or date", "and type=debit");
+        assertMessage("Invalid query: unterminated quote at position 10", "category='food");
+        assertMessage("Operator '<' is not supported for category; use = or !=", "category<food");
+        assertThrows(ValidationException.class, () -> QueryParser.parse(" "));
+        for (String query : new String[]{"amount >> 3", "size = 3", "type = refund", "amount = 1.234", "date = 2024-13-01"}) {
+            assertThrows(ValidationException.class, () -> QueryParser.parse(query), query);
+        }
+    }
+
+    private static void assertMessage(String message, String query) {
+        assertEquals(message, assertThrows(ValidationException.class, () -> QueryParser.parse(query)).getMessage());
+    }
+
+    private static List<String> matches(HeapTransactionStore store, String query) {
+        Predicate<TransactionCursor> filter = QueryParser.parse(query).compile();
+        List<String> ids = new ArrayList<>();
+        TransactionCursor cursor = store.cursor();
+        while (cursor.next()) {
+            if (filter.test(cursor)) {
+                ids.add(cursor.materialize().getId());
+            }
+        }
+        return ids;
+    }
+}
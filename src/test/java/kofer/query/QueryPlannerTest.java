@@ -0,0 +1,82 @@
+package kofer.query;
+
+import kofer.store.KoferProcess;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Plans queries over a store opened by the CLI, since the planner reads the store's rollup.
+ */
+class QueryPlannerTest {
+    @TempDir
+    Path home;
+
+    private KoferProcess kofer;
+
+    @BeforeEach
+    void importSample() throws Exception {
+        Path csv = home.resolve("sample.csv");
+        Files.write(csv, List.of(
+                "date,amount,category,description",
+                "2024-01-05,-12.50,food,lunch",
+                "2024-01-06,-40.00,fuel,gas",
+                "2024-01-20,-8.25,food,coffee",
+                "2024-02-01,2500.00,salary,pay",
+                "2024-02-03,-60.00,food,groceries"));
+        kofer = new KoferProcess(home);
+        kofer.run("import", "csv", csv.toString());
+    }
+
+    @Test
+    void dateComparisonsBecomeTheIndexRange() throws Exception {
+        List<String> plan = explain("date >= 2024-01-06 and date < 2024-02-01 and amount > 10");
+
+        assertEquals("Scan:     date index from 2024-01-06 to 2024-01-31", plan.get(1));
+        assertEquals("Filter:   amount > 10.00", plan.get(2));
+        assertEquals("Transactions matching date >= 2024-01-06 and date < 2024-02-01 and amount > 10.00 (1):", plan.get(4));
+    }
+
+    @Test
+    void categoryEqualitiesArePrunedByTheRollup() throws Exception {
+        List<String> plan = explain("category = food and type = debit");
+
+        assertEquals("Scan:     all transactions", plan.get(1));
+        assertEquals("Pruned:   3 day ranges holding the category and type, from the daily rollup", plan.get(2));
+        assertEquals("Filter:   category = food and type = debit", plan.get(3));
+        assertTrue(plan.get(5).endsWith("(3):"), plan.get(5));
+        assertTrue(plan.get(7).contains("lunch") && plan.get(8).contains("coffee") && plan.get(9).contains("groceries"),
+                String.join("\n", plan));
+    }
+
+    @Test
+    void contradictionsReadNothing() throws Exception {
+        for (String query : new String[]{"category = food and category = fuel", "category = rent",
+                "date > 2024-02-01 and date < 2024-01-01", "type = credit and type = debit and amount > 1"}) {
+            List<String> plan = explain(query);
+            assertEquals("Scan:     none, no record can match", plan.get(1), query);
+            assertTrue(plan.contains("No transactions found."), query);
+        }
+    }
+
+    @Test
+    void disjunctionsAreLeftToTheFilter() throws Exception {
+        List<String> plan = explain("category = fuel or date = 2024-02-01");
+
+        assertEquals("Scan:     all transactions", plan.get(1));
+        assertEquals("Filter:   category = fuel or date = 2024-02-01", plan.get(2));
+        assertTrue(plan.get(4).endsWith("(2):"), plan.get(4));
+    }
+
+    private List<String> explain(String query) throws Exception {
+        List<String> lines = kofer.run("query", "--explain", query).lines().toList();
+        return lines.subList(lines.indexOf("Query:    " + QueryParser.parse(query)), lines.size());
+    }
+}
@@ -0,0 +1,41 @@
+package kofer.store;
+
+import kofer.exception.DataAccessException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AtomicFileWriterTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void replacesTheFile() throws IOException {
+        Path target = directory.resolve("data");
+        AtomicFileWriter.write(target, out -> out.write("old".getBytes()));
+        AtomicFileWriter.write(target, out -> out.write("new".getBytes()));
+
+        assertEquals("new", Files.readString(target));
+        assertFalse(Files.exists(directory.resolve("data.tmp")));
+    }
+
+    @Test
+    void keepsTheOldFileWhenWritingFails() throws IOException {
+        Path target = directory.resolve("data");
+        AtomicFileWriter.write(target, out -> out.write("old".getBytes()));
+
+        assertThrows(DataAccessException.class, () -> AtomicFileWriter.write(target, out -> {
+            out.write("partial".getBytes());
+            throw new IOException("disk full");
+        }));
+        assertEquals("old", Files.readString(target));
+        assertFalse(Files.exists(directory.resolve("data.tmp")));
+    }
+}
@@ -0,0 +1,76 @@
+package kofer.store;
+
+import kofer.model.Transaction;
+import kofer.util.TransactionType;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ColumnarTransactionStoreTest {
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+
+    @Test
+    void keepsEveryFieldWhileGrowingPastItsCapacity() {
+        List<Transaction> added = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            added.add(new Transaction(START.plusDays(i % 400), i * 7L - 100,
+                    i % 2 == 0 ? TransactionType.DEBIT : TransactionType.CREDIT, "category " + i % 9,
+                    i % 5 == 0 ? null : "row " + i + " " + "x".repeat(i % 70)));
+        }
+        ColumnarTransactionStore store = new ColumnarTransactionStore(16);
+        added.forEach(store::append);
+
+        assertEquals(added.size(), store.size());
+        for (int i = 0; i < added.size(); i++) {
+            assertEquals(MappedTransactionStoreTest.describe(List.of(added.get(i))),
+                    MappedTransactionStoreTest.describe(List.of(store.get(i))));
+        }
+        assertTrue(store.getOffHeapBytes() > 5000L * 41);
+    }
+
+    @Test
+    void cursorsReadTheColumnsWithoutMaterializing() {
+        ColumnarTransactionStore store = new ColumnarTransactionStore();
+        store.append(new Transaction(START, 1250, TransactionType.DEBIT, "food", "lunch"));
+        store.append(new Transaction(START.plusDays(1), 990, TransactionType.CREDIT, "salary", null));
+
+        TransactionCursor cursor = store.cursor();
+        assertTrue(cursor.next());
+        assertEquals(START.toEpochDay(), cursor.epochDay());
+        assertEquals(1250, cursor.amountCents());
+        assertEquals(TransactionType.DEBIT, cursor.type());
+        assertEquals("food", cursor.category());
+        assertTrue(cursor.next());
+        assertEquals("salary", cursor.category());
+        assertEquals(null, cursor.materialize().getDescription());
+        assertEquals(false, cursor.next());
+    }
+
+    @Test
+    void totalsFollowTheRange() {
+        ColumnarTransactionStore store = new ColumnarTransactionStore();
+        for (int i = 0; i < 100; i++) {
+            store.append(new Transaction(START.plusDays(i), 100, TransactionType.CREDIT, "food", null));
+        }
+
+        assertEquals(10_000, store.total(TransactionType.CREDIT, Integer.MIN_VALUE, Integer.MAX_VALUE));
+        assertEquals(1_000, store.total(TransactionType.CREDIT, (int) START.plusDays(10).toEpochDay(),
+                (int) START.plusDays(19).toEpochDay()));
+        assertEquals(0, store.total(TransactionType.DEBIT, Integer.MIN_VALUE, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void rejectsIndexesOutsideTheStore() {
+        ColumnarTransactionStore store = new ColumnarTransactionStore();
+        store.append(new Transaction(START, 1, TransactionType.CREDIT, "food", null));
+
+        assertThrows(IndexOutOfBoundsException.class, () -> store.get(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> store.get(-1));
+    }
+}
@@ -0,0 +1,82 @@
+package kofer.store;
+
+import kofer.model.Transaction;
+import kofer.util.TransactionType;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DateIndexTest {
+    private static final int[] DAYS = {30, 10, 20, 10, 40, 5};
+
+    @Test
+    void ordersByDateAndThenPosition() {
+        DateIndex index = new DateIndex(position -> DAYS[position]);
+        index.refresh(DAYS.length);
+
+        assertArrayEquals(new int[]{5, 1, 3, 2, 0, 4}, index.positions());
+        assertArrayEquals(new int[]{0, 1, 2, 3}, index.positions(10, 30));
+        assertArrayEquals(new int[0], index.positions(41, 50));
+    }
+
+    @Test
+    void mergesRecordsAppendedOutOfOrder() {
+        DateIndex index = new DateIndex(position -> DAYS[position]);
+        index.refresh(3);
+        assertArrayEquals(new int[]{1, 2, 0}, index.positions());
+
+        index.refresh(DAYS.length);
+        assertArrayEquals(new int[]{5, 1, 3, 2, 0, 4}, index.positions());
+    }
+
+    @Test
+    void restoresASavedOrderWithoutSorting() {
+        AtomicInteger reads = new AtomicInteger();
+        DateIndex index = new DateIndex(position -> {
+            reads.incrementAndGet();
+            return DAYS[position];
+        });
+        index.restore(new int[]{1, 3, 2, 0});
+        index.refresh(DAYS.length);
+
+        assertEquals(DAYS.length, reads.get());
+        assertArrayEquals(new int[]{5, 1, 3, 2, 0, 4}, index.positions());
+    }
+
+    @Test
+    void indexesAgainWhenTheSavedOrderDoesNotFit() {
+        for (int[] saved : new int[][]{{0, 1, 2, 3}, {1, 1, 2, 0}, {1, 3, 2, 9}, {1, 3, 2, 0, 4, 5, 6}}) {
+            DateIndex index = new DateIndex(position -> DAYS[position]);
+            index.restore(saved);
+            index.refresh(DAYS.length);
+            assertArrayEquals(new int[]{5, 1, 3, 2, 0, 4}, index.positions());
+        }
+    }
+
+    @Test
+    void theSnapshotCarriesTheDateOrder() throws Exception {
+        LocalDate start = LocalDate.of(2024, 1, 1);
+        HeapTransactionStore store = new HeapTransactionStore(new ArrayList<>());
+        for (int day : DAYS) {
+            store.append(new Transaction(start.plusDays(day), 100, TransactionType.DEBIT, "food", null));
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new SnapshotWriter(bytes).write(new Snapshot(store.asList(), List.of(), 0, null, null, null, store.dateOrder()));
+        Snapshot read = new SnapshotReader(new ByteArrayInputStream(bytes.toByteArray())).read();
+        assertArrayEquals(new int[]{5, 1, 3, 2, 0, 4}, read.getDateOrder());
+
+        bytes.reset();
+        new SnapshotWriter(bytes).write(new Snapshot(store.asList(), List.of(), 0));
+        assertNull(new SnapshotReader(new ByteArrayInputStream(bytes.toByteArray())).read().getDateOrder());
+    }
+}
@@ -0,0 +1,110 @@
+package kofer.store;
+
+import kofer.model.Transaction;
+import kofer.util.TransactionType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DateRangeCursorTest {
+    private static final LocalDate START = LocalDate.of(2022, 1, 1);
+
+    @TempDir
+    Path segments;
+
+    @Test
+    void listsThePositionOrderInEveryStorageMode() {
+        List<Transaction> added = sample();
+        List<TransactionStore> stores = List.of(
+                new HeapTransactionStore(new ArrayList<>()),
+                new ColumnarTransactionStore(),
+                new MappedTransactionStore(segments, PartitionScheme.MONTH));
+        for (TransactionStore store : stores) {
+            added.forEach(store::append);
+        }
+
+        int[][] ranges = {
+                {day(100), day(200)},
+                {day(31), day(31)},
+                {Integer.MIN_VALUE, day(50)},
+                {day(350), Integer.MAX_VALUE},
+                {Integer.MIN_VALUE, Integer.MAX_VALUE},
+                {day(500), day(600)}};
+        for (TransactionStore store : stores) {
+            String mode = store.getClass().getSimpleName();
+            for (int[] range : ranges) {
+                List<Integer> positions = new ArrayList<>();
+                List<String> ids = new ArrayList<>();
+                TransactionCursor cursor = store.cursor(range[0], range[1]);
+                while (cursor.next()) {
+                    positions.add(cursor.position());
+                    ids.add(cursor.materialize().getId());
+                }
+                assertEquals(inRange(store.cursor(), range[0], range[1]), ids, mode);
+                for (int i = 1; i < positions.size(); i++) {
+                    assertTrue(positions.get(i) > positions.get(i - 1), mode);
+                }
+                if (!store.isSelfPersisting()) {
+                    assertEquals(added.stream().filter(t -> t.getDate().toEpochDay() >= range[0]
+                            && t.getDate().toEpochDay() <= range[1]).map(Transaction::getId).toList(), ids, mode);
+                }
+            }
+        }
+    }
+
+    @Test
+    void recordsAppendedAfterARangeQueryAreFound() {
+        HeapTransactionStore store = new HeapTransactionStore(new ArrayList<>());
+        store.append(new Transaction(START.plusDays(5), 100, TransactionType.DEBIT, "food", "first"));
+        assertEquals(List.of("first"), descriptions(store.cursor(day(0), day(10))));
+
+        store.append(new Transaction(START.plusDays(2), 100, TransactionType.DEBIT, "food", "older"));
+        store.append(new Transaction(START.plusDays(8), 100, TransactionType.DEBIT, "food", "newer"));
+        assertEquals(List.of("first", "older", "newer"), descriptions(store.cursor(day(0), day(10))));
+        assertEquals(List.of("first", "older"), descriptions(store.cursor(day(0), day(5))));
+        assertEquals(List.of("newer"), descriptions(store.cursor(day(6), day(10))));
+    }
+
+    /**
+     * Dates out of order, with several records on most days.
+     */
+    private static List<Transaction> sample() {
+        Random random = new Random(11);
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            transactions.add(new Transaction(START.plusDays(random.nextInt(400)), 1 + random.nextInt(10_000),
+                    random.nextBoolean() ? TransactionType.CREDIT : TransactionType.DEBIT, "food", "row " + i));
+        }
+        return transactions;
+    }
+
+    private static List<String> inRange(TransactionCursor cursor, int from, int to) {
+        List<String> ids = new ArrayList<>();
+        while (cursor.next()) {
+            if (cursor.epochDay() >= from && cursor.epochDay() <= to) {
+                ids.add(cursor.materialize().getId());
+            }
+        }
+        return ids;
+    }
+
+    private static List<String> descriptions(TransactionCursor cursor) {
+        List<String> descriptions = new ArrayList<>();
+        while (cursor.next()) {
+            descriptions.add(cursor.materialize().getDescription());
+        }
+        return descriptions;
+    }
+
+    private static int day(int offset) {
+        return (int) START.plusDays(offset).toEpochDay();
+    }
+}
@@ -0,0 +1,39 @@
+package kofer.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EncryptedJournalTest {
+    @TempDir
+    Path home;
+
+    @Test
+    void encryptedAddAppendsToTheJournalWithoutRewritingTheSnapshot() throws Exception {
+        KoferProcess kofer = new KoferProcess(home).withEnvironment(DataStore.PASSPHRASE_ENV, "test passphrase");
+        kofer.run("add", "transaction", "10", "food", "first");
+        Path dataFile = kofer.dataDirectory().resolve("kofer.db");
+        Path journalFile = kofer.dataDirectory().resolve(Journal.JOURNAL_FILE_NAME);
+        assertTrue(EncryptedContainer.isEncrypted(dataFile));
+        byte[] snapshot = Files.readAllBytes(dataFile);
+        FileTime modified = Files.getLastModifiedTime(dataFile);
+        long journalLength = Files.size(journalFile);
+
+        kofer.run("add", "transaction", "20", "food", "second secret");
+
+        assertArrayEquals(snapshot, Files.readAllBytes(dataFile));
+        assertEquals(modified, Files.getLastModifiedTime(dataFile));
+        assertTrue(Files.size(journalFile) > journalLength);
+        assertFalse(new String(Files.readAllBytes(journalFile), StandardCharsets.ISO_8859_1).contains("second secret"));
+        assertTrue(kofer.run("list", "transactions").contains("second secret"));
+    }
+}
@@ -0,0 +1,227 @@
+package kofer.store;
+
+import kofer.exception.DataAccessException;
+import kofer.model.Loan;
+import kofer.model.Repayment;
+import kofer.model.Transaction;
+import kofer.util.TransactionType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JournalTest {
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 1);
+
+    @TempDir
+    Path directory;
+
+    private Path path() {
+        return directory.resolve(Journal.JOURNAL_FILE_NAME);
+    }
+
+    @Test
+    void replaysEveryRecordType() {
+        Journal journal = new Journal(path(), 0);
+        Transaction transaction = new Transaction("t-1", DAY, 1234, TransactionType.DEBIT, "food", null);
+        Loan loan = new Loan("l-1", "Bank", 500_00, DAY, "car");
+        journal.appendTransaction(transaction);
+        journal.appendLoan(loan);
+        journal.appendRepayment("l-1", new Repayment(100_00, DAY.plusDays(1), "first"));
+        journal.appendLoanClosed("l-1");
+        journal.appendRollupDelta(new Transaction("t-2", DAY, 99, TransactionType.CREDIT, "salary", "not journaled"));
+
+        assertEquals(List.of(
+                "transaction t-1 2024-03-01 1234 DEBIT food null",
+                "loan l-1 Bank 50000 2024-03-01 car",
+                "repayment l-1 10000 2024-03-02 first",
+                "closed l-1",
+                "rollup 2024-03-01 salary CREDIT 99"), replay(new Journal(path(), 0), 0));
+    }
+
+    @Test
+    void replaysStringsLongerThan65535Bytes() {
+        String description = "é".repeat(40_000);
+        new Journal(path(), 0).appendTransaction(new Transaction("t-1", DAY, 1, TransactionType.CREDIT, "food", description));
+
+        assertEquals(List.of("transaction t-1 2024-03-01 1 CREDIT food " + description), replay(new Journal(path(), 0), 0));
+    }
+
+    @Test
+    void skipsRecordsAlreadyInTheSnapshot() {
+        Journal journal = new Journal(path(), 0);
+        journal.appendLoanClosed("a");
+        journal.appendLoanClosed("b");
+        journal.appendLoanClosed("c");
+
+        Journal reopened = new Journal(path(), 0);
+        assertEquals(List.of("closed c"), replay(reopened, 2));
+        assertEquals(3, reopened.getLastSequence());
+        assertEquals(3, reopened.getEntryCount());
+    }
+
+    @Test
+    void writesGroupCommitRecordsOnlyOnCommit() throws IOException {
+        Journal journal = new Journal(path(), 0);
+        journal.setGroupCommit(true);
+        journal.appendLoanClosed("a");
+        journal.appendLoanClosed("b");
+        assertEquals(2, journal.getPendingCount());
+        assertFalse(Files.exists(path()));
+
+        journal.commit();
+        assertEquals(0, journal.getPendingCount());
+        assertEquals(List.of("closed a", "closed b"), replay(new Journal(path(), 0), 0));
+    }
+
+    @Test
+    void truncatesATornTail() throws IOException {
+        Journal journal = new Journal(path(), 0);
+        journal.appendLoanClosed("a");
+        long intact = Files.size(path());
+        journal.appendLoanClosed("b");
+        truncate(Files.size(path()) - 3);
+
+        Journal reopened = new Journal(path(), 0);
+        assertEquals(List.of("closed a"), replay(reopened, 0));
+        assertEquals(intact, Files.size(path()));
+
+        reopened.appendLoanClosed("c");
+        assertEquals(List.of("closed a", "closed c"), replay(new Journal(path(), 0), 0));
+    }
+
+    @Test
+    void truncatesARecordWithABadChecksum() throws IOException {
+        Journal journal = new Journal(path(), 0);
+        journal.appendLoanClosed("a");
+        long intact = Files.size(path());
+        journal.appendLoanClosed("b");
+        byte[] bytes = Files.readAllBytes(path());
+        bytes[bytes.length - 6] ^= 1;
+        Files.write(path(), bytes);
+
+        assertEquals(List.of("closed a"), replay(new Journal(path(), 0), 0));
+        assertEquals(intact, Files.size(path()));
+    }
+
+    @Test
+    void treatsADamagedLengthAsATornTail() throws IOException {
+        new Journal(path(), 0).appendLoanClosed("a");
+        long intact = Files.size(path());
+
+        for (int length : new int[]{-5, Integer.MAX_VALUE}) {
+            try (FileChannel channel = FileChannel.open(path(), StandardOpenOption.APPEND)) {
+                channel.write(ByteBuffer.allocate(Integer.BYTES + 16).putInt(length).flip());
+            }
+            assertEquals(List.of("closed a"), replay(new Journal(path(), 0), 0));
+            assertEquals(intact, Files.size(path()));
+        }
+    }
+
+    @Test
+    void readOnlyReplayLeavesTheFileAlone() throws IOException {
+        new Journal(path(), 0).appendLoanClosed("a");
+        truncate(Files.size(path()) - 1);
+        long damaged = Files.size(path());
+
+        Journal readOnly = new Journal(path(), 0, true);
+        assertEquals(List.of(), replay(readOnly, 0));
+        assertEquals(damaged, Files.size(path()));
+        assertThrows(DataAccessException.class, () -> readOnly.appendLoanClosed("b"));
+    }
+
+    @Test
+    void resetDiscardsAllRecords() throws IOException {
+        Journal journal = new Journal(path(), 0);
+        journal.appendLoanClosed("a");
+        journal.reset();
+
+        assertEquals(0, journal.getEntryCount());
+        assertEquals(0, Files.size(path()));
+        assertEquals(1, journal.getLastSequence());
+    }
+
+    @Test
+    void sealsRecordsWhenGivenAKey() throws IOException {
+        SecretKey key = key(0);
+        new Journal(path(), 0, false, () -> key).appendLoanClosed("secret-loan");
+
+        assertFalse(new String(Files.readAllBytes(path()), StandardCharsets.ISO_8859_1).contains("secret-loan"));
+        Journal reopened = new Journal(path(), 0, false, () -> key);
+        assertEquals(List.of("closed secret-loan"), replay(reopened, 0));
+        assertEquals(0, reopened.getPlaintextCount());
+
+        assertThrows(DataAccessException.class, () -> replay(new Journal(path(), 0, false, () -> key(1)), 0));
+        assertThrows(DataAccessException.class, () -> replay(new Journal(path(), 0), 0));
+    }
+
+    @Test
+    void countsPlaintextRecordsForAKeyedJournal() {
+        new Journal(path(), 0).appendLoanClosed("a");
+
+        Journal keyed = new Journal(path(), 0, false, () -> key(0));
+        assertEquals(List.of("closed a"), replay(keyed, 0));
+        assertEquals(1, keyed.getPlaintextCount());
+    }
+
+    private static SecretKey key(int seed) {
+        byte[] bytes = new byte[32];
+        bytes[0] = (byte) seed;
+        return new SecretKeySpec(bytes, "AES");
+    }
+
+    private void truncate(long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(path(), StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+        }
+    }
+
+    private static List<String> replay(Journal journal, long afterSequence) {
+        List<String> events = new ArrayList<>();
+        journal.replay(afterSequence, new Journal.Replayer() {
+            @Override
+            public void transactionAdded(Transaction t) {
+                events.add("transaction " + t.getId() + " " + t.getDate() + " " + t.getAmountCents() + " "
+                        + t.getType() + " " + t.getCategory() + " " + t.getDescription());
+            }
+
+            @Override
+            public void loanAdded(Loan loan) {
+                events.add("loan " + loan.getId() + " " + loan.getLenderName() + " " + loan.getAmountBorrowedCents()
+                        + " " + loan.getDateBorrowed() + " " + loan.getDescription());
+            }
+
+            @Override
+            public void repaymentAdded(String loanId, Repayment repayment) {
+                events.add("repayment " + loanId + " " + repayment.getAmountCents() + " " + repayment.getDate()
+                        + " " + repayment.getNote());
+            }
+
+            @Override
+            public void loanClosed(String loanId) {
+                events.add("closed " + loanId);
+            }
+
+            @Override
+            public void rollupDelta(LocalDate date, String category, TransactionType type, long amountCents) {
+                events.add("rollup " + date + " " + category + " " + type + " " + amountCents);
+            }
+        });
+        return events;
+    }
+}
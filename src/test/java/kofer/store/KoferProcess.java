@@ -0,0 +1,66 @@
+package kofer.store;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the CLI in a separate JVM with its own home directory. The data file paths are fixed
+ * when {@link DataStore} is loaded and the passphrase is only read from the environment,
+ * so tests of whole commands cannot run in the test JVM.
+ */
+public final class KoferProcess {
+    private final Path home;
+    private final Map<String, String> environment = new HashMap<>();
+
+    public KoferProcess(Path home) {
+        this.home = home;
+    }
+
+    public KoferProcess withEnvironment(String name, String value) {
+        environment.put(name, value);
+        return this;
+    }
+
+    public Path dataDirectory() {
+        return home.resolve(".kofer");
+    }
+
+    /**
+     * Runs one command and asserts that it succeeds.
+     *
+     * @return everything the command printed.
+     */
+    public String run(String... args) throws IOException, InterruptedException {
+        Process process = start(args);
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertTrue(process.waitFor(60, TimeUnit.SECONDS), output);
+        assertEquals(0, process.exitValue(), output);
+        return output;
+    }
+
+    /**
+     * Starts one command without waiting for it, with its error output merged into its output.
+     */
+    public Process start(String... args) throws IOException {
+        List<String> command = new ArrayList<>(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Dfile.encoding=UTF-8",
+                "-Duser.home=" + home,
+                "-cp", System.getProperty("java.class.path"),
+                "kofer.Main"));
+        command.addAll(List.of(args));
+        ProcessBuilder builder = new ProcessBuilder(command).redirectErrorStream(true);
+        builder.environment().keySet().removeIf(name -> name.startsWith("KOFER_"));
+        builder.environment().putAll(environment);
+        return builder.start();
+    }
+}
@@ -0,0 +1,82 @@
+package kofer.store;
+
+import kofer.model.Loan;
+import kofer.model.Transaction;
+import kofer.util.TransactionType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@code baseline-kofer.dat} was written with Java serialization by the original
+ * {@code kofer.store.DataStore}, holding three transactions and two loans.
+ */
+class LegacyMigrationTest {
+    @TempDir
+    Path home;
+
+    private static Path baselineFile() throws Exception {
+        return Path.of(LegacyMigrationTest.class.getResource("baseline-kofer.dat").toURI());
+    }
+
+    @Test
+    void readsTheBaselineSerializedStore() throws Exception {
+        Snapshot snapshot = new LegacySnapshotReader().read(baselineFile().toFile());
+
+        List<Transaction> transactions = snapshot.getTransactions();
+        assertEquals(3, transactions.size());
+        Transaction pay = transactions.get(0);
+        assertEquals("c2abd52a-324e-4022-841f-575e0fadd3e6", pay.getId());
+        assertEquals(LocalDate.of(2024, 1, 5), pay.getDate());
+        assertEquals(123456, pay.getAmountCents());
+        assertEquals(TransactionType.CREDIT, pay.getType());
+        assertEquals("salary", pay.getCategory());
+        assertEquals("January pay", pay.getDescription());
+        assertEquals(10, transactions.get(1).getAmountCents());
+        assertNull(transactions.get(1).getDescription());
+        assertEquals(1999, transactions.get(2).getAmountCents());
+        assertEquals("café", transactions.get(2).getDescription());
+
+        List<Loan> loans = snapshot.getLoans();
+        assertEquals(2, loans.size());
+        Loan open = loans.get(0);
+        assertEquals("Bank", open.getLenderName());
+        assertEquals(100_000, open.getAmountBorrowedCents());
+        assertEquals(25_025, open.getAmountRepaidCents());
+        assertEquals(1, open.getRepayments().size());
+        assertEquals("first", open.getRepayments().get(0).getNote());
+        assertFalse(open.isClosed());
+        assertTrue(loans.get(1).isClosed());
+        assertEquals(0, loans.get(1).getRemainingCents());
+
+        assertEquals(0, snapshot.getJournalSequence());
+    }
+
+    @Test
+    void migratesOnTheFirstWriteAndKeepsTheOldFileAside() throws Exception {
+        KoferProcess kofer = new KoferProcess(home);
+        Files.createDirectories(kofer.dataDirectory());
+        Files.copy(baselineFile(), kofer.dataDirectory().resolve("kofer.dat"));
+
+        kofer.run("add", "transaction", "1", "food", "after migration");
+
+        assertTrue(Files.exists(kofer.dataDirectory().resolve("kofer.db")));
+        assertTrue(Files.exists(kofer.dataDirectory().resolve("kofer.dat.migrated")));
+        assertFalse(Files.exists(kofer.dataDirectory().resolve("kofer.dat")));
+        String transactions = kofer.run("list", "transactions");
+        assertTrue(transactions.contains("January pay"), transactions);
+        assertTrue(transactions.contains("café"), transactions);
+        assertTrue(transactions.contains("after migration"), transactions);
+        String loans = kofer.run("list", "loans");
+        assertTrue(loans.contains("Bank") && loans.contains("Alice"), loans);
+    }
+}
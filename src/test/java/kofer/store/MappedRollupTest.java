@@ -0,0 +1,37 @@
+package kofer.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedRollupTest {
+    @TempDir
+    Path home;
+
+    @Test
+    void mappedAddsJournalTheirRollupInsteadOfRewritingTheSnapshot() throws Exception {
+        KoferProcess kofer = new KoferProcess(home).withEnvironment("KOFER_STORAGE", "mapped");
+        kofer.run("add", "transaction", "10", "food", "first");
+        Path dataFile = kofer.dataDirectory().resolve("kofer.db");
+        byte[] snapshot = Files.readAllBytes(dataFile);
+        FileTime modified = Files.getLastModifiedTime(dataFile);
+
+        kofer.run("add", "transaction", "20", "food", "second");
+        kofer.run("add", "transaction", "-5", "fuel", "third");
+
+        assertArrayEquals(snapshot, Files.readAllBytes(dataFile));
+        assertEquals(modified, Files.getLastModifiedTime(dataFile));
+        String report = kofer.run("report", "monthly");
+        assertTrue(report.contains("food") && report.contains("30.00"), report);
+        assertTrue(report.contains("fuel") && report.contains("5.00"), report);
+        String rebuilt = kofer.run("rebuild", "aggregates");
+        assertTrue(rebuilt.contains("Aggregates verified"), rebuilt);
+    }
+}
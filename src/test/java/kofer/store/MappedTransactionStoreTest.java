@@ -0,0 +1,158 @@
+package kofer.store;
+
+import kofer.exception.DataAccessException;
+import kofer.model.Transaction;
+import kofer.util.TransactionType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedTransactionStoreTest {
+    private static final LocalDate START = LocalDate.of(2023, 11, 20);
+
+    @TempDir
+    Path segments;
+
+    @Test
+    void reopensWithEveryFieldIntact() {
+        List<Transaction> added = sample(300);
+        MappedTransactionStore store = new MappedTransactionStore(segments, PartitionScheme.MONTH);
+        added.forEach(store::append);
+
+        MappedTransactionStore reopened = new MappedTransactionStore(segments, PartitionScheme.MONTH);
+        assertEquals(added.size(), reopened.size());
+        assertEquals(describe(added), describe(reopened.asList()));
+    }
+
+    @Test
+    void writesOnePartitionPerPeriod() {
+        MappedTransactionStore store = new MappedTransactionStore(segments, PartitionScheme.MONTH);
+        sample(300).forEach(store::append);
+
+        assertEquals(3, store.getPartitionCount());
+        assertTrue(Files.exists(segments.resolve("transactions-2023-11.seg")));
+        assertTrue(Files.exists(segments.resolve("transactions-2024-01.seg")));
+    }
+
+    @Test
+    void totalsMatchAScanForAnyRange() {
+        List<Transaction> added = sample(300);
+        MappedTransactionStore store = new MappedTransactionStore(segments, PartitionScheme.MONTH);
+        added.forEach(store::append);
+        MappedTransactionStore reopened = new MappedTransactionStore(segments, PartitionScheme.MONTH);
+
+        int[][] ranges = {
+                {Integer.MIN_VALUE, Integer.MAX_VALUE},
+                {epochDay(2023, 12, 1), epochDay(2023, 12, 31)},
+                {epochDay(2023, 11, 25), epochDay(2024, 1, 3)},
+                {epochDay(2025, 1, 1), Integer.MAX_VALUE}};
+        for (int[] range : ranges) {
+            for (TransactionType type : TransactionType.values()) {
+                long expected = added.stream()
+                        .filter(t -> t.getType() == type && inRange(t, range[0], range[1]))
+                        .mapToLong(Transaction::getAmountCents).sum();
+                assertEquals(expected, reopened.total(type, range[0], range[1]));
+            }
+        }
+    }
+
+    @Test
+    void boundedCursorsReturnOnlyTheRange() {
+        List<Transaction> added = sample(300);
+        MappedTransactionStore store = new MappedTransactionStore(segments, PartitionScheme.DAY);
+        added.forEach(store::append);
+
+        int from = epochDay(2023, 12, 10);
+        int to = epochDay(2023, 12, 12);
+        List<Transaction> found = new ArrayList<>();
+        TransactionCursor cursor = store.cursor(from, to);
+        while (cursor.next()) {
+            assertTrue(cursor.epochDay() >= from && cursor.epochDay() <= to);
+            found.add(cursor.materialize());
+        }
+        assertEquals(describe(added.stream().filter(t -> inRange(t, from, to)).toList()), describe(found));
+    }
+
+    @Test
+    void groupCommittedRecordsBecomeVisibleOnCommit() {
+        MappedTransactionStore store = new MappedTransactionStore(segments, PartitionScheme.MONTH);
+        store.append(transaction(0, 100));
+        store.setGroupCommit(true);
+        store.append(transaction(1, 200));
+        store.append(transaction(40, 300));
+
+        assertEquals(1, new MappedTransactionStore(segments, PartitionScheme.MONTH).size());
+        store.commit();
+        assertEquals(3, new MappedTransactionStore(segments, PartitionScheme.MONTH).size());
+    }
+
+    @Test
+    void keepsExistingPartitionsWhenTheSchemeChanges() {
+        MappedTransactionStore monthly = new MappedTransactionStore(segments, PartitionScheme.MONTH);
+        monthly.append(transaction(0, 100));
+
+        MappedTransactionStore daily = new MappedTransactionStore(segments, PartitionScheme.DAY);
+        daily.append(transaction(1, 200));
+        assertEquals(2, daily.size());
+        assertEquals(300, daily.total(TransactionType.CREDIT, Integer.MIN_VALUE, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void rejectsASegmentOfAnotherVersion() throws IOException {
+        new MappedTransactionStore(segments, PartitionScheme.MONTH).append(transaction(0, 100));
+        Path segment = segments.resolve("transactions-2023-11.seg");
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Short.BYTES).putShort((short) 7).flip(), 4);
+        }
+
+        assertThrows(DataAccessException.class, () -> new MappedTransactionStore(segments, PartitionScheme.MONTH));
+    }
+
+    private static List<Transaction> sample(int count) {
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            transactions.add(new Transaction(START.plusDays((i * 37) % 60), 1 + i * 13L,
+                    i % 3 == 0 ? TransactionType.DEBIT : TransactionType.CREDIT,
+                    "category " + i % 5, i % 4 == 0 ? null : "row " + i));
+        }
+        return transactions;
+    }
+
+    private static Transaction transaction(int day, long cents) {
+        return new Transaction(START.plusDays(day), cents, TransactionType.CREDIT, "food", null);
+    }
+
+    private static boolean inRange(Transaction transaction, int from, int to) {
+        long day = transaction.getDate().toEpochDay();
+        return day >= from && day <= to;
+    }
+
+    private static int epochDay(int year, int month, int day) {
+        return (int) LocalDate.of(year, month, day).toEpochDay();
+    }
+
+    /**
+     * Every field of every record, ordered by id so that stores with different orders compare equal.
+     */
+    static List<String> describe(List<Transaction> transactions) {
+        return transactions.stream()
+                .sorted(Comparator.comparing(Transaction::getId))
+                .map(t -> t.getId() + " " + t.getDate() + " " + t.getAmountCents() + " " + t.getType() + " "
+                        + t.getCategory() + " " + t.getDescription())
+                .toList();
+    }
+}
@@ -0,0 +1,76 @@
+package kofer.store;
+
+import kofer.model.Transaction;
+import kofer.util.TransactionType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class NewestFirstTest {
+    private static final LocalDate START = LocalDate.of(2021, 1, 1);
+
+    @TempDir
+    Path segments;
+
+    @Test
+    void listsTheSameOrderInEveryStorageMode() {
+        List<Transaction> added = sample();
+        List<TransactionStore> stores = List.of(
+                new HeapTransactionStore(new ArrayList<>()),
+                new ColumnarTransactionStore(),
+                new MappedTransactionStore(segments, PartitionScheme.MONTH));
+        for (TransactionStore store : stores) {
+            added.forEach(store::append);
+        }
+
+        int from = (int) START.plusDays(100).toEpochDay();
+        int to = (int) START.plusDays(200).toEpochDay();
+        for (TransactionStore store : stores) {
+            String mode = store.getClass().getSimpleName();
+            assertEquals(expected(added, Integer.MIN_VALUE, Integer.MAX_VALUE),
+                    ids(store.newestFirst(Integer.MIN_VALUE, Integer.MAX_VALUE)), mode);
+            assertEquals(expected(added, from, to), ids(store.newestFirst(from, to)), mode);
+        }
+    }
+
+    /**
+     * Dates out of order, with several records on most days.
+     */
+    private static List<Transaction> sample() {
+        Random random = new Random(7);
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            transactions.add(new Transaction(START.plusDays(random.nextInt(400)), 1 + random.nextInt(10_000),
+                    random.nextBoolean() ? TransactionType.CREDIT : TransactionType.DEBIT, "food", "row " + i));
+        }
+        return transactions;
+    }
+
+    /**
+     * Latest date first, and the last added first within a day.
+     */
+    private static List<String> expected(List<Transaction> added, int from, int to) {
+        List<Transaction> newestFirst = new ArrayList<>(added);
+        Collections.reverse(newestFirst);
+        newestFirst.removeIf(t -> t.getDate().toEpochDay() < from || t.getDate().toEpochDay() > to);
+        newestFirst.sort(Comparator.comparing(Transaction::getDate).reversed());
+        return newestFirst.stream().map(Transaction::getId).toList();
+    }
+
+    private static List<String> ids(TransactionCursor cursor) {
+        List<String> ids = new ArrayList<>();
+        while (cursor.next()) {
+            ids.add(cursor.materialize().getId());
+        }
+        return ids;
+    }
+}
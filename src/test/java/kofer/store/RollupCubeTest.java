@@ -0,0 +1,100 @@
+package kofer.store;
+
+import kofer.model.Transaction;
+import kofer.util.SymbolTable;
+import kofer.util.TransactionType;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RollupCubeTest {
+    private static final LocalDate START = LocalDate.of(2023, 12, 15);
+
+    @Test
+    void rowsMatchASumOverTheRecords() {
+        List<Transaction> transactions = sample();
+        RollupCube cube = cubeOf(transactions);
+
+        int from = (int) START.plusDays(20).toEpochDay();
+        int to = (int) START.plusDays(50).toEpochDay();
+        for (RollupCube.Row row : cube.rows(RollupCube.Period.DAILY, from, to)) {
+            for (TransactionType type : TransactionType.values()) {
+                List<Transaction> matching = transactions.stream()
+                        .filter(t -> t.getDate().equals(row.getPeriodStart()) && t.getCategoryId() == row.getCategoryId()
+                                && t.getType() == type)
+                        .toList();
+                assertEquals(matching.stream().mapToLong(Transaction::getAmountCents).sum(), row.getTotal(type));
+                assertEquals(matching.size(), row.getCount(type));
+            }
+        }
+        assertEquals(transactions.stream().filter(t -> t.getDate().toEpochDay() >= from && t.getDate().toEpochDay() <= to).count(),
+                cube.rows(RollupCube.Period.DAILY, from, to).stream().mapToLong(RollupCube.Row::getCount).sum());
+    }
+
+    @Test
+    void monthlyRowsCoverWholeMonths() {
+        List<Transaction> transactions = sample();
+        RollupCube cube = cubeOf(transactions);
+
+        int food = SymbolTable.CATEGORIES.intern("food");
+        List<RollupCube.Row> rows = cube.rows(RollupCube.Period.MONTHLY,
+                (int) LocalDate.of(2024, 1, 20).toEpochDay(), (int) LocalDate.of(2024, 1, 20).toEpochDay(), food);
+        assertEquals(1, rows.size());
+        assertEquals(LocalDate.of(2024, 1, 1), rows.get(0).getPeriodStart());
+        long expected = transactions.stream()
+                .filter(t -> t.getCategoryId() == food && t.getDate().getMonthValue() == 1 && t.getType() == TransactionType.DEBIT)
+                .mapToLong(Transaction::getAmountCents).sum();
+        assertEquals(expected, rows.get(0).getTotal(TransactionType.DEBIT));
+    }
+
+    @Test
+    void incrementalAddsMatchABuildFromTheStore() {
+        List<Transaction> transactions = sample();
+        HeapTransactionStore store = new HeapTransactionStore(new ArrayList<>());
+        transactions.forEach(store::append);
+
+        RollupCube built = RollupCube.of(store.cursor());
+        assertEquals(cubeOf(transactions), built);
+        assertEquals(transactions.size(), built.getTransactionCount());
+    }
+
+    @Test
+    void survivesASnapshotRoundTrip() throws IOException {
+        RollupCube cube = cubeOf(sample());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        cube.write(new DataOutputStream(bytes), id -> id);
+
+        RollupCube read = RollupCube.read(ByteBuffer.wrap(bytes.toByteArray()), code -> code);
+        assertEquals(cube, read);
+        assertEquals(cube.getBucketCount(RollupCube.Period.MONTHLY), read.getBucketCount(RollupCube.Period.MONTHLY));
+    }
+
+    private static RollupCube cubeOf(List<Transaction> transactions) {
+        RollupCube cube = new RollupCube();
+        for (Transaction t : transactions) {
+            cube.add((int) t.getDate().toEpochDay(), t.getCategoryId(), t.getType(), t.getAmountCents());
+        }
+        return cube;
+    }
+
+    private static List<Transaction> sample() {
+        Random random = new Random(11);
+        String[] categories = {"food", "fuel", "rent", "salary"};
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 1500; i++) {
+            transactions.add(new Transaction(START.plusDays(random.nextInt(90)), 1 + random.nextInt(50_000),
+                    random.nextBoolean() ? TransactionType.DEBIT : TransactionType.CREDIT,
+                    categories[random.nextInt(categories.length)], null));
+        }
+        return transactions;
+    }
+}
@@ -0,0 +1,114 @@
+package kofer.store;
+
+import kofer.exception.ValidationException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchIndexTest {
+    @TempDir
+    Path home;
+
+    @Test
+    void splitsQueriesIntoLowerCaseTerms() {
+        assertEquals("coffee shop", SearchQuery.parse(List.of("Coffee-Shop")).toString());
+        assertEquals("e mail*", SearchQuery.parse(List.of("e-mail*")).toString());
+        assertEquals("café 2024", SearchQuery.parse(List.of("CAFÉ", "2024")).toString());
+        assertThrows(ValidationException.class, () -> SearchQuery.parse(List.of("!!", "*")));
+
+        List<String> terms = new ArrayList<>();
+        SearchQuery.forEachTerm("  Rent, March/2024 ", terms::add);
+        assertEquals(List.of("rent", "march", "2024"), terms);
+    }
+
+    @Test
+    void matchesTextsDirectly() {
+        SearchQuery query = SearchQuery.parse(List.of("bank", "car*"));
+        assertTrue(query.matches(List.of("Bank of Kofer", "new cars")));
+        assertFalse(query.matches(List.of("Bank of Kofer", "a new scar")));
+        assertTrue(query.matchesAny("Carpool"));
+        assertFalse(query.matchesAny(null));
+    }
+
+    @Test
+    void findsRecordsHoldingEveryTerm() {
+        SearchIndex index = new SearchIndex();
+        index.add(0, "food", "Lunch at the café");
+        index.add(1, "food", "coffee beans");
+        index.add(2, "fuel", "Coffee on the road");
+        index.add(4, null, null);
+
+        assertEquals(5, index.getDocumentCount());
+        assertArrayEquals(new int[]{1, 2}, search(index, "coffee"));
+        assertArrayEquals(new int[]{1}, search(index, "coffee", "food"));
+        assertArrayEquals(new int[]{0, 1, 2}, search(index, "c*"));
+        assertArrayEquals(new int[]{0}, search(index, "CAFÉ"));
+        assertArrayEquals(new int[0], search(index, "coffee", "lunch"));
+        assertArrayEquals(new int[0], search(index, "tea"));
+        assertThrows(IllegalArgumentException.class, () -> index.add(3, "food", "late"));
+    }
+
+    @Test
+    void aReadIndexKeepsGrowingAndIsWrittenAgain() throws Exception {
+        SearchIndex index = new SearchIndex();
+        index.add(0, "food", "coffee");
+        index.add(1, "rent", "march");
+
+        SearchIndex read = SearchIndex.read(encode(index));
+        assertEquals(2, read.getDocumentCount());
+        assertArrayEquals(new int[]{0}, search(read, "coffee"));
+
+        read.add(2, "food", "coffee again");
+        read.add(3, "fun", null);
+        assertArrayEquals(new int[]{0, 2}, search(read, "coffee"));
+        assertArrayEquals(new int[]{0, 2, 3}, search(read, "f*"));
+
+        SearchIndex reread = SearchIndex.read(encode(read));
+        assertEquals(4, reread.getDocumentCount());
+        assertArrayEquals(new int[]{0, 2}, search(reread, "coffee"));
+        assertArrayEquals(new int[]{1}, search(reread, "march", "rent"));
+        assertArrayEquals(new int[]{2}, search(reread, "again"));
+    }
+
+    @Test
+    void searchCommandUsesTheSavedIndex() throws Exception {
+        KoferProcess kofer = new KoferProcess(home);
+        Path csv = home.resolve("sample.csv");
+        Files.write(csv, List.of(
+                "date,amount,category,description",
+                "2024-01-05,-12.50,food,Lunch at the café",
+                "2024-01-06,-40.00,fuel,Gas station",
+                "2024-01-20,-8.25,food,coffee"));
+        kofer.run("import", "csv", csv.toString());
+        kofer.run("add", "transaction", "-3", "food", "Coffee to go");
+
+        String found = kofer.run("search", "coffee");
+        assertTrue(found.contains("Transactions matching 'coffee' (2):"), found);
+        assertTrue(found.contains("coffee") && found.contains("Coffee to go"), found);
+        assertTrue(kofer.run("search", "caf*", "food").contains("Lunch at the café"));
+        assertTrue(kofer.run("search", "rent").contains("No transactions or loans found."));
+    }
+
+    private static int[] search(SearchIndex index, String... words) {
+        return index.search(SearchQuery.parse(List.of(words)));
+    }
+
+    private static ByteBuffer encode(SearchIndex index) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.write(new DataOutputStream(bytes));
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+}
@@ -0,0 +1,66 @@
+package kofer.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SummaryHeaderTest {
+    private static final Pattern LOAN_ID = Pattern.compile("Loan ID: (\\S+)");
+
+    @TempDir
+    Path home;
+
+    @Test
+    void summaryFoldsTheJournalIntoTheHeaderTotals() throws Exception {
+        KoferProcess kofer = new KoferProcess(home);
+        assertJournaledSummaryMatchesACheckpoint(kofer);
+    }
+
+    @Test
+    void summaryFoldsASealedJournalIntoTheHeaderTotals() throws Exception {
+        KoferProcess kofer = new KoferProcess(home).withEnvironment(DataStore.PASSPHRASE_ENV, "test passphrase");
+        assertJournaledSummaryMatchesACheckpoint(kofer);
+    }
+
+    @Test
+    void summaryOfARepaymentToACheckpointedLoanLoadsTheStore() throws Exception {
+        KoferProcess kofer = new KoferProcess(home);
+        String loanId = loanId(kofer.run("add", "loan", "500", "Bank", "car"));
+        kofer.run("rebuild", "aggregates");
+        kofer.run("repay", "loan", loanId, "125.50", "first");
+
+        String summary = kofer.run("summary");
+        assertTrue(summary.contains("Total Repaid: $125.50"), summary);
+        assertTrue(summary.contains("Total Remaining: $374.50"), summary);
+    }
+
+    private void assertJournaledSummaryMatchesACheckpoint(KoferProcess kofer) throws Exception {
+        kofer.run("add", "transaction", "100", "salary", "pay");
+        kofer.run("add", "transaction", "-30.25", "food", "groceries");
+        String loanId = loanId(kofer.run("add", "loan", "500", "Bank", "car"));
+        kofer.run("repay", "loan", loanId, "200", "first");
+        assertTrue(Files.size(kofer.dataDirectory().resolve(Journal.JOURNAL_FILE_NAME)) > 0);
+
+        String journaled = kofer.run("summary");
+        assertTrue(journaled.contains("Total Income (Credit): $100.00"), journaled);
+        assertTrue(journaled.contains("Total Expenses (Debit): $30.25"), journaled);
+        assertTrue(journaled.contains("Total Remaining: $300.00"), journaled);
+
+        kofer.run("rebuild", "aggregates");
+        assertEquals(0, Files.size(kofer.dataDirectory().resolve(Journal.JOURNAL_FILE_NAME)));
+        assertEquals(journaled, kofer.run("summary"));
+    }
+
+    private static String loanId(String output) {
+        Matcher matcher = LOAN_ID.matcher(output);
+        assertTrue(matcher.find(), output);
+        return matcher.group(1);
+    }
+}
@@ -0,0 +1,70 @@
+package kofer.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MoneyTest {
+
+    @Test
+    void parsesDecimalAmountsExactly() {
+        assertEquals(12300, Money.parse("123"));
+        assertEquals(12340, Money.parse("123.4"));
+        assertEquals(12345, Money.parse("123.45"));
+        assertEquals(-5000, Money.parse("-50.00"));
+        assertEquals(150, Money.parse("+1.5"));
+        assertEquals(50, Money.parse(".5"));
+        assertEquals(100, Money.parse("1."));
+        assertEquals(1, Money.parse(" 0.01 "));
+        assertEquals(10, Money.parse("0.1"), "0.1 has no exact double but is exactly 10 cents");
+    }
+
+    @Test
+    void parsesTheLargestAmountThatFits() {
+        assertEquals(Long.MAX_VALUE, Money.parse("92233720368547758.07"));
+        assertEquals(-Long.MAX_VALUE, Money.parse("-92233720368547758.07"));
+    }
+
+    @Test
+    void rejectsAmountsTooLargeForCents() {
+        for (String text : new String[]{"99999999999999999999", "92233720368547758.08", "92233720368547759",
+                "1" + "0".repeat(40)}) {
+            NumberFormatException e = assertThrows(NumberFormatException.class, () -> Money.parse(text), text);
+            assertEquals("Amount is too large: " + text, e.getMessage());
+        }
+    }
+
+    @Test
+    void rejectsTextThatIsNotAPlainDecimal() {
+        for (String text : new String[]{"", " ", "-", ".", "1.234", "1e3", "12a", "1,000.00", "--1", "١٢", "NaN"}) {
+            assertThrows(NumberFormatException.class, () -> Money.parse(text), text);
+        }
+        assertThrows(NumberFormatException.class, () -> Money.parse(null));
+    }
+
+    @Test
+    void formatsWithTwoDecimals() {
+        assertEquals("0.00", Money.format(0));
+        assertEquals("0.05", Money.format(5));
+        assertEquals("1.50", Money.format(150));
+        assertEquals("-1234.50", Money.format(-123450));
+        assertEquals("-0.01", Money.format(-1));
+        assertEquals("92233720368547758.07", Money.format(Long.MAX_VALUE));
+    }
+
+    @Test
+    void formatAndParseRoundTrip() {
+        for (long cents : new long[]{0, 1, -1, 99, 100, 12345, -987654321, Long.MAX_VALUE, -Long.MAX_VALUE}) {
+            assertEquals(cents, Money.parse(Money.format(cents)));
+        }
+    }
+
+    @Test
+    void roundsDoublesToTheNearestCent() {
+        assertEquals(10, Money.fromDouble(0.1));
+        assertEquals(30, Money.fromDouble(0.1 + 0.2));
+        assertEquals(-1999, Money.fromDouble(-19.99));
+        assertEquals(0.3, Money.toDouble(30));
+    }
+}